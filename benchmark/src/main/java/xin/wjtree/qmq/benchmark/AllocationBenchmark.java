@@ -0,0 +1,81 @@
+package xin.wjtree.qmq.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.QmqTemplate;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.internal.DefaultMessageSendStateListener;
+import xin.wjtree.qmq.internal.QmqBeanCodec;
+import xin.wjtree.qmq.internal.QmqSendHandle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送链路每次操作分配的内存，需要配合 -prof gc 运行，比较 gc.alloc.rate.norm
+ * <ul>
+ *     <li>message：只生成消息、装载属性并发送，作为基准</li>
+ *     <li>templateSend、handleSend：不设置标签、延迟、监听器时，分配的内存应与 message 相同</li>
+ *     <li>builderSend：按次设置标签，额外分配一个构建器</li>
+ * </ul>
+ * @author Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+    private StubMessageProducer producer;
+
+    private QmqTemplate template;
+
+    private QmqSendHandle handle;
+
+    private QmqBeanCodec codec;
+
+    private Object bean;
+
+    @Setup
+    public void setup() {
+        QmqProperties properties = new QmqProperties();
+        properties.getSubject().put("order", "real.order");
+        producer = new StubMessageProducer();
+        template = new QmqTemplate(producer, properties);
+        handle = template.handle("order");
+
+        bean = BenchmarkBeans.create(16);
+        codec = QmqBeanCodec.forClass(bean.getClass());
+    }
+
+    @Benchmark
+    public void message() {
+        BaseMessage message = (BaseMessage) producer.generateMessage("real.order");
+        codec.encode(bean, message);
+        producer.sendMessage(message, DefaultMessageSendStateListener.INSTANCE);
+    }
+
+    @Benchmark
+    public void templateSend() {
+        template.subject("order").send(bean);
+    }
+
+    @Benchmark
+    public void handleSend() {
+        handle.send(bean);
+    }
+
+    @Benchmark
+    public void builderSend() {
+        template.subject("order").tag("created").send(bean);
+    }
+}
@@ -0,0 +1,88 @@
+package xin.wjtree.qmq.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.internal.QmqBeanCodec;
+import xin.wjtree.qmq.internal.QmqPayloadCodec;
+import xin.wjtree.qmq.internal.QmqPayloadCodecs;
+import xin.wjtree.qmq.internal.QmqUtil;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体类转换的耗时，按属性数量对比转换为 Map、逐个装载消息属性及各编解码器整体编码
+ * @author Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanConversionBenchmark {
+    @Param({"4", "16", "64"})
+    private int fieldCount;
+
+    private Object bean;
+
+    private QmqBeanCodec beanCodec;
+
+    private QmqPayloadCodec binaryCodec;
+
+    private QmqPayloadCodec jsonCodec;
+
+    private BaseMessage encoded;
+
+    @Setup
+    public void setup() {
+        bean = BenchmarkBeans.create(fieldCount);
+        beanCodec = QmqBeanCodec.forClass(bean.getClass());
+        binaryCodec = QmqPayloadCodecs.forName("binary");
+        jsonCodec = QmqPayloadCodecs.forName("json");
+
+        encoded = new BaseMessage("1", "benchmark");
+        beanCodec.encode(bean, encoded);
+    }
+
+    @Benchmark
+    public Map<String, Object> beanToMap() {
+        return QmqUtil.beanToMap(bean);
+    }
+
+    @Benchmark
+    public BaseMessage encodeProperties() {
+        BaseMessage message = new BaseMessage("1", "benchmark");
+        beanCodec.encode(bean, message);
+        return message;
+    }
+
+    @Benchmark
+    public BaseMessage encodeBinary() {
+        BaseMessage message = new BaseMessage("1", "benchmark");
+        binaryCodec.encode(bean, message);
+        return message;
+    }
+
+    @Benchmark
+    public BaseMessage encodeJson() {
+        BaseMessage message = new BaseMessage("1", "benchmark");
+        jsonCodec.encode(bean, message);
+        return message;
+    }
+
+    @Benchmark
+    public Object decodeProperties() {
+        return beanCodec.decode(encoded);
+    }
+}
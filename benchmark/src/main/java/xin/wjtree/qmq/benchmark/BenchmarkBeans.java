@@ -0,0 +1,233 @@
+package xin.wjtree.qmq.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * 基准测试使用的实体类，属性类型依次为 String、int、long、double、boolean、Date、BigDecimal、LocalDateTime
+ * @author Wang
+ */
+public final class BenchmarkBeans {
+    private BenchmarkBeans() {
+    }
+
+    /**
+     * 创建指定属性数量的实体类
+     * @param fieldCount 属性数量，可选 4、16、64
+     * @return 实体类
+     */
+    public static Object create(int fieldCount) {
+        switch (fieldCount) {
+            case 4:
+                return Bean4.create();
+            case 16:
+                return Bean16.create();
+            case 64:
+                return Bean64.create();
+            default:
+                throw new IllegalArgumentException("Unsupported field count: " + fieldCount);
+        }
+    }
+
+    /**
+     * 4 个属性的实体类
+     */
+    public static class Bean4 {
+        public String field0;
+        public int field1;
+        public long field2;
+        public double field3;
+
+        static Bean4 create() {
+            Bean4 bean = new Bean4();
+            bean.field0 = "value-0";
+            bean.field1 = 1;
+            bean.field2 = 2L * 1000003L;
+            bean.field3 = 3 * 1.5D;
+            return bean;
+        }
+    }
+
+    /**
+     * 16 个属性的实体类
+     */
+    public static class Bean16 {
+        public String field0;
+        public int field1;
+        public long field2;
+        public double field3;
+        public boolean field4;
+        public Date field5;
+        public BigDecimal field6;
+        public LocalDateTime field7;
+        public String field8;
+        public int field9;
+        public long field10;
+        public double field11;
+        public boolean field12;
+        public Date field13;
+        public BigDecimal field14;
+        public LocalDateTime field15;
+
+        static Bean16 create() {
+            Bean16 bean = new Bean16();
+            bean.field0 = "value-0";
+            bean.field1 = 1;
+            bean.field2 = 2L * 1000003L;
+            bean.field3 = 3 * 1.5D;
+            bean.field4 = 4 % 2 == 0;
+            bean.field5 = new Date(1600000000000L + 5);
+            bean.field6 = BigDecimal.valueOf(6, 2);
+            bean.field7 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(7);
+            bean.field8 = "value-8";
+            bean.field9 = 9;
+            bean.field10 = 10L * 1000003L;
+            bean.field11 = 11 * 1.5D;
+            bean.field12 = 12 % 2 == 0;
+            bean.field13 = new Date(1600000000000L + 13);
+            bean.field14 = BigDecimal.valueOf(14, 2);
+            bean.field15 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(15);
+            return bean;
+        }
+    }
+
+    /**
+     * 64 个属性的实体类
+     */
+    public static class Bean64 {
+        public String field0;
+        public int field1;
+        public long field2;
+        public double field3;
+        public boolean field4;
+        public Date field5;
+        public BigDecimal field6;
+        public LocalDateTime field7;
+        public String field8;
+        public int field9;
+        public long field10;
+        public double field11;
+        public boolean field12;
+        public Date field13;
+        public BigDecimal field14;
+        public LocalDateTime field15;
+        public String field16;
+        public int field17;
+        public long field18;
+        public double field19;
+        public boolean field20;
+        public Date field21;
+        public BigDecimal field22;
+        public LocalDateTime field23;
+        public String field24;
+        public int field25;
+        public long field26;
+        public double field27;
+        public boolean field28;
+        public Date field29;
+        public BigDecimal field30;
+        public LocalDateTime field31;
+        public String field32;
+        public int field33;
+        public long field34;
+        public double field35;
+        public boolean field36;
+        public Date field37;
+        public BigDecimal field38;
+        public LocalDateTime field39;
+        public String field40;
+        public int field41;
+        public long field42;
+        public double field43;
+        public boolean field44;
+        public Date field45;
+        public BigDecimal field46;
+        public LocalDateTime field47;
+        public String field48;
+        public int field49;
+        public long field50;
+        public double field51;
+        public boolean field52;
+        public Date field53;
+        public BigDecimal field54;
+        public LocalDateTime field55;
+        public String field56;
+        public int field57;
+        public long field58;
+        public double field59;
+        public boolean field60;
+        public Date field61;
+        public BigDecimal field62;
+        public LocalDateTime field63;
+
+        static Bean64 create() {
+            Bean64 bean = new Bean64();
+            bean.field0 = "value-0";
+            bean.field1 = 1;
+            bean.field2 = 2L * 1000003L;
+            bean.field3 = 3 * 1.5D;
+            bean.field4 = 4 % 2 == 0;
+            bean.field5 = new Date(1600000000000L + 5);
+            bean.field6 = BigDecimal.valueOf(6, 2);
+            bean.field7 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(7);
+            bean.field8 = "value-8";
+            bean.field9 = 9;
+            bean.field10 = 10L * 1000003L;
+            bean.field11 = 11 * 1.5D;
+            bean.field12 = 12 % 2 == 0;
+            bean.field13 = new Date(1600000000000L + 13);
+            bean.field14 = BigDecimal.valueOf(14, 2);
+            bean.field15 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(15);
+            bean.field16 = "value-16";
+            bean.field17 = 17;
+            bean.field18 = 18L * 1000003L;
+            bean.field19 = 19 * 1.5D;
+            bean.field20 = 20 % 2 == 0;
+            bean.field21 = new Date(1600000000000L + 21);
+            bean.field22 = BigDecimal.valueOf(22, 2);
+            bean.field23 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(23);
+            bean.field24 = "value-24";
+            bean.field25 = 25;
+            bean.field26 = 26L * 1000003L;
+            bean.field27 = 27 * 1.5D;
+            bean.field28 = 28 % 2 == 0;
+            bean.field29 = new Date(1600000000000L + 29);
+            bean.field30 = BigDecimal.valueOf(30, 2);
+            bean.field31 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(31);
+            bean.field32 = "value-32";
+            bean.field33 = 33;
+            bean.field34 = 34L * 1000003L;
+            bean.field35 = 35 * 1.5D;
+            bean.field36 = 36 % 2 == 0;
+            bean.field37 = new Date(1600000000000L + 37);
+            bean.field38 = BigDecimal.valueOf(38, 2);
+            bean.field39 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(39);
+            bean.field40 = "value-40";
+            bean.field41 = 41;
+            bean.field42 = 42L * 1000003L;
+            bean.field43 = 43 * 1.5D;
+            bean.field44 = 44 % 2 == 0;
+            bean.field45 = new Date(1600000000000L + 45);
+            bean.field46 = BigDecimal.valueOf(46, 2);
+            bean.field47 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(47);
+            bean.field48 = "value-48";
+            bean.field49 = 49;
+            bean.field50 = 50L * 1000003L;
+            bean.field51 = 51 * 1.5D;
+            bean.field52 = 52 % 2 == 0;
+            bean.field53 = new Date(1600000000000L + 53);
+            bean.field54 = BigDecimal.valueOf(54, 2);
+            bean.field55 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(55);
+            bean.field56 = "value-56";
+            bean.field57 = 57;
+            bean.field58 = 58L * 1000003L;
+            bean.field59 = 59 * 1.5D;
+            bean.field60 = 60 % 2 == 0;
+            bean.field61 = new Date(1600000000000L + 61);
+            bean.field62 = BigDecimal.valueOf(62, 2);
+            bean.field63 = LocalDateTime.of(2021, 8, 1, 0, 0).plusSeconds(63);
+            return bean;
+        }
+    }
+}
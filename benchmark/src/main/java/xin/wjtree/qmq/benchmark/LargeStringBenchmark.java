@@ -0,0 +1,64 @@
+package xin.wjtree.qmq.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xin.wjtree.qmq.constant.QmqHelper;
+import xin.wjtree.qmq.internal.QmqUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按字符串长度及字符类型对比超大字符串判断的耗时，getBytes 为生成字节数组的对照组
+ * @author Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LargeStringBenchmark {
+    /**
+     * 字符数
+     */
+    @Param({"64", "4096", "16384", "32768", "1048576"})
+    private int length;
+
+    /**
+     * 字符类型，ascii 每个字符 1 个字节，cjk 每个字符 3 个字节
+     */
+    @Param({"ascii", "cjk"})
+    private String charset;
+
+    private String value;
+
+    @Setup
+    public void setup() {
+        char c = "ascii".equals(charset) ? 'a' : '中';
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(c);
+        }
+        value = builder.toString();
+    }
+
+    @Benchmark
+    public boolean isLargeString() {
+        return QmqUtil.isLargeString(value);
+    }
+
+    @Benchmark
+    public boolean getBytes() {
+        return value.getBytes(StandardCharsets.UTF_8).length >= QmqHelper.LARGE_STRING_BYTES;
+    }
+}
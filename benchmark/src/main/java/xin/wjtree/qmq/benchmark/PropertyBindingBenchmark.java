@@ -0,0 +1,89 @@
+package xin.wjtree.qmq.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.constant.QmqExecutorType;
+import xin.wjtree.qmq.internal.QmqPropertyBinders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按属性值类型装载单个消息属性的耗时
+ * @author Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyBindingBenchmark {
+    @Param({"String", "Integer", "Long", "Double", "Boolean", "Date", "BigDecimal", "LocalDateTime", "Instant", "UUID",
+            "Enum"})
+    private String type;
+
+    private Object value;
+
+    @Setup
+    public void setup() {
+        switch (type) {
+            case "String":
+                value = "benchmark-value";
+                break;
+            case "Integer":
+                value = 123456;
+                break;
+            case "Long":
+                value = 1234567890123L;
+                break;
+            case "Double":
+                value = 12345.678D;
+                break;
+            case "Boolean":
+                value = Boolean.TRUE;
+                break;
+            case "Date":
+                value = new Date(1600000000000L);
+                break;
+            case "BigDecimal":
+                value = new BigDecimal("12345.6789");
+                break;
+            case "LocalDateTime":
+                value = LocalDateTime.of(2021, 8, 1, 12, 30, 45);
+                break;
+            case "Instant":
+                value = Instant.ofEpochMilli(1600000000000L);
+                break;
+            case "UUID":
+                value = new UUID(1L, 2L);
+                break;
+            case "Enum":
+                value = QmqExecutorType.VIRTUAL;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+    }
+
+    @Benchmark
+    public BaseMessage bind() {
+        BaseMessage message = new BaseMessage("1", "benchmark");
+        QmqPropertyBinders.bind(message, "key", value);
+        return message;
+    }
+}
@@ -0,0 +1,79 @@
+package xin.wjtree.qmq.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xin.wjtree.qmq.QmqTemplate;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.internal.QmqSendBuilder;
+import xin.wjtree.qmq.internal.QmqSendHandle;
+import xin.wjtree.qmq.internal.QmqUtil;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 {@link QmqTemplate} 完整发送一条消息的耗时，发送者不连接服务端，直接回调成功
+ * @author Wang
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendBenchmark {
+    @Param({"4", "16", "64"})
+    private int fieldCount;
+
+    @Param({"properties", "binary"})
+    private String payloadCodec;
+
+    private QmqTemplate template;
+
+    private Object bean;
+
+    private Map<String, Object> map;
+
+    private QmqSendHandle handle;
+
+    @Setup
+    public void setup() {
+        QmqProperties properties = new QmqProperties();
+        properties.getSubject().put("order", "real.order");
+        properties.getTemplate().setPayloadCodec(payloadCodec);
+        template = new QmqTemplate(new StubMessageProducer(), properties);
+
+        bean = BenchmarkBeans.create(fieldCount);
+        map = QmqUtil.beanToMap(bean);
+        handle = template.handle("order");
+    }
+
+    @Benchmark
+    public QmqSendBuilder subject() {
+        return template.subject("order");
+    }
+
+    @Benchmark
+    public void sendBean() {
+        template.subject("order").send(bean);
+    }
+
+    @Benchmark
+    public void sendMap() {
+        template.subject("order").send(map);
+    }
+
+    @Benchmark
+    public void handleSendBean() {
+        handle.send(bean);
+    }
+}
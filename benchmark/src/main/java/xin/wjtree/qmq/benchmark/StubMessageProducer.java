@@ -0,0 +1,38 @@
+package xin.wjtree.qmq.benchmark;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.base.BaseMessage;
+
+/**
+ * 不连接服务端的消息发送者，发送时在当前线程直接回调成功，只统计发送次数
+ * @author Wang
+ */
+public class StubMessageProducer implements MessageProducer {
+    private long sequence;
+
+    private long sent;
+
+    @Override
+    public Message generateMessage(String subject) {
+        return new BaseMessage(Long.toString(++sequence), subject);
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        sent++;
+    }
+
+    @Override
+    public void sendMessage(Message message, MessageSendStateListener listener) {
+        sent++;
+        if (listener != null) {
+            listener.onSuccess(message);
+        }
+    }
+
+    public long getSent() {
+        return sent;
+    }
+}
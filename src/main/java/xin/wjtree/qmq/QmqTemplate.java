@@ -3,15 +3,35 @@ package xin.wjtree.qmq;
 import org.springframework.util.StringUtils;
 import qunar.tc.qmq.MessageProducer;
 import xin.wjtree.qmq.autoconfigure.QmqProperties;
-import xin.wjtree.qmq.internal.DefaultQmqSendBuilder;
+import xin.wjtree.qmq.constant.QmqHelper;
+import xin.wjtree.qmq.internal.FlowControlMessageProducer;
+import xin.wjtree.qmq.internal.OutboxMessageProducer;
 import xin.wjtree.qmq.internal.QmqException;
+import xin.wjtree.qmq.internal.QmqOutboxRelay;
+import xin.wjtree.qmq.internal.QmqPayloadCodec;
+import xin.wjtree.qmq.internal.QmqPayloadCodecs;
+import xin.wjtree.qmq.internal.QmqProducerPools;
 import xin.wjtree.qmq.internal.QmqSendBuilder;
+import xin.wjtree.qmq.internal.QmqSendHandle;
+import xin.wjtree.qmq.internal.QmqSendMetrics;
+import xin.wjtree.qmq.internal.QmqSpillLog;
+import xin.wjtree.qmq.internal.QmqTimingWheel;
+import xin.wjtree.qmq.internal.SpillLogMessageProducer;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * QMQ 消息发送模板
  * @author Wang
  */
-public class QmqTemplate {
+public class QmqTemplate implements Closeable {
     /**
      * 消息发送者
      */
@@ -22,9 +42,91 @@ public class QmqTemplate {
      */
     private final QmqProperties qmqProperties;
 
+    /**
+     * 实际用于发送消息的发送者，启用本地溢出日志、流量控制或事务发件箱时包装 messageProducer
+     */
+    private final MessageProducer sendProducer;
+
+    /**
+     * 消息发送者池，未配置时为空
+     */
+    private final QmqProducerPools producerPools;
+
+    /**
+     * 池名称 -> 实际用于发送消息的发送者，每个池单独包装，流量控制按池计数
+     */
+    private final Map<String, MessageProducer> poolSendProducers = new HashMap<>();
+
+    /**
+     * 池名称 -> 流量控制发送者，默认的消息发送者使用 {@link QmqHelper#DEFAULT_POOL_NAME}，未启用流量控制时为空
+     */
+    private final Map<String, FlowControlMessageProducer> flowControls = new LinkedHashMap<>();
+
+    /**
+     * 消息发送指标记录器
+     */
+    private final QmqSendMetrics sendMetrics;
+
+    /**
+     * 主题发送句柄缓存，键为调用方传入的主题名称或主题别名；
+     * 未配置的主题最多缓存 {@link QmqHelper#MAX_CACHED_HANDLES} 个，避免动态生成的主题名称使缓存无限增长
+     */
+    private final ConcurrentMap<String, QmqSendHandle> handles = new ConcurrentHashMap<>();
+
+    /**
+     * 本地延迟时间轮，未启用本地延迟时为空
+     */
+    private final QmqTimingWheel timingWheel;
+
+    /**
+     * 当前模板启用压缩的主题名称及压缩阈值，创建发送句柄时传入，不影响其他模板
+     */
+    private final Map<String, Integer> compressThresholds = new HashMap<>();
+
     public QmqTemplate(MessageProducer messageProducer, QmqProperties qmqProperties) {
+        this(messageProducer, qmqProperties, QmqSendMetrics.NOOP);
+    }
+
+    public QmqTemplate(MessageProducer messageProducer, QmqProperties qmqProperties, QmqSendMetrics sendMetrics) {
+        this(messageProducer, qmqProperties, sendMetrics, null);
+    }
+
+    public QmqTemplate(MessageProducer messageProducer, QmqProperties qmqProperties, QmqSendMetrics sendMetrics,
+            QmqSpillLog spillLog) {
+        this(messageProducer, qmqProperties, sendMetrics, spillLog, null);
+    }
+
+    public QmqTemplate(MessageProducer messageProducer, QmqProperties qmqProperties, QmqSendMetrics sendMetrics,
+            QmqSpillLog spillLog, QmqOutboxRelay outboxRelay) {
+        this(messageProducer, qmqProperties, sendMetrics, spillLog, outboxRelay, null);
+    }
+
+    public QmqTemplate(MessageProducer messageProducer, QmqProperties qmqProperties, QmqSendMetrics sendMetrics,
+            QmqSpillLog spillLog, QmqOutboxRelay outboxRelay, QmqProducerPools producerPools) {
         this.messageProducer = messageProducer;
         this.qmqProperties = qmqProperties;
+        this.sendMetrics = sendMetrics;
+        this.producerPools = producerPools;
+
+        QmqProperties.Producer prop = qmqProperties.getProducer();
+        this.sendProducer = decorate(QmqHelper.DEFAULT_POOL_NAME, messageProducer, prop, spillLog, outboxRelay);
+        // 配置了 spring.qmq.producer.pools 时，池中的主题使用池的消息发送者
+        if (producerPools != null) {
+            producerPools.getPools().forEach((name, producer) -> poolSendProducers.put(name,
+                    decorate(name, producer, prop, spillLog, outboxRelay)));
+        }
+
+        // spring.qmq.producer.local-delay-threshold-millis 大于 0 时，短延迟消息保存在本地时间轮中
+        this.timingWheel = prop.getLocalDelayThresholdMillis() > 0 ?
+                new QmqTimingWheel(prop.getLocalDelayTickMillis(), "qmq-delay-wheel") : null;
+
+        // 为 spring.qmq.template.compress-subjects 中的主题启用压缩，主题别名转换为主题名称
+        QmqProperties.Template template = qmqProperties.getTemplate();
+        for (String subject : template.getCompressSubjects()) {
+            String propVal = qmqProperties.getSubject().get(subject);
+            String resolved = StringUtils.hasText(propVal) ? propVal : subject;
+            compressThresholds.put(resolved, template.getCompressThresholdBytes());
+        }
     }
 
     /**
@@ -33,23 +135,140 @@ public class QmqTemplate {
      * @see QmqProperties.Template#getDefaultSubject()
      */
     public QmqSendBuilder subject() {
-        return new DefaultQmqSendBuilder(messageProducer, qmqProperties.getTemplate().getDefaultSubject());
+        return handle();
     }
 
     /**
-     * 设置消息发送主题
+     * 设置消息发送主题，返回缓存的主题发送句柄，设置标签、延迟或监听器时才创建新的构建器
      * @param subject 主题名称
      * @return {@link QmqSendBuilder}
      */
     public QmqSendBuilder subject(String subject) {
-        if (StringUtils.isEmpty(subject)) {
+        return handle(subject);
+    }
+
+    /**
+     * 获取默认主题的发送句柄
+     * @return {@link QmqSendHandle}
+     * @see QmqProperties.Template#getDefaultSubject()
+     */
+    public QmqSendHandle handle() {
+        return handle(qmqProperties.getTemplate().getDefaultSubject());
+    }
+
+    /**
+     * 获取主题的发送句柄，首次获取时解析主题别名、编解码器、默认标签及默认延迟，之后直接返回缓存的句柄
+     * @param subject 主题名称或主题别名
+     * @return {@link QmqSendHandle}
+     */
+    public QmqSendHandle handle(String subject) {
+        if (!StringUtils.hasText(subject)) {
             throw new QmqException("消息发送主题不能为空");
         }
+        QmqSendHandle handle = handles.get(subject);
+        if (handle != null) {
+            return handle;
+        }
+        if (handles.size() < QmqHelper.MAX_CACHED_HANDLES || isConfigured(subject)) {
+            return handles.computeIfAbsent(subject, this::createHandle);
+        }
+        // 缓存已满时不再缓存未配置的主题，每次创建新的句柄
+        return createHandle(subject);
+    }
+
+    /**
+     * 判断主题是否为配置过的主题别名、主题名称或默认主题，或者配置了标签、延迟、编解码器、压缩等主题级属性
+     * @param subject 主题名称或主题别名
+     * @return true or false
+     */
+    private boolean isConfigured(String subject) {
+        QmqProperties.Template prop = qmqProperties.getTemplate();
+        return qmqProperties.getSubject().containsKey(subject) || qmqProperties.getSubject().containsValue(subject)
+                || subject.equals(prop.getDefaultSubject()) || prop.getDefaultTags().containsKey(subject)
+                || prop.getDefaultDelayMillis().containsKey(subject) || prop.getPayloadCodecs().containsKey(subject)
+                || prop.getCompressSubjects().contains(subject);
+    }
 
+    /**
+     * 创建主题发送句柄
+     * @param subject 主题名称或主题别名
+     * @return {@link QmqSendHandle}
+     */
+    private QmqSendHandle createHandle(String subject) {
         // 尝试获取 spring.qmq.subject.[主题名称] 的键值对
         String propVal = qmqProperties.getSubject().get(subject);
         // 如果属性文件中有匹配的主题，则使用配置文件中的；否则直接使用入参名称作为主题名称
-        return new DefaultQmqSendBuilder(messageProducer, StringUtils.hasText(propVal) ? propVal : subject);
+        String resolved = StringUtils.hasText(propVal) ? propVal : subject;
+
+        QmqProperties.Template prop = qmqProperties.getTemplate();
+        QmqSendHandle handle = new QmqSendHandle(getSendProducer(resolved), resolved, qmqProperties.getProducer(),
+                sendMetrics, getPayloadCodec(subject, resolved), timingWheel,
+                compressThresholds.getOrDefault(resolved, 0));
+        String tag = prop.getDefaultTags().get(subject);
+        if (!StringUtils.hasText(tag)) {
+            tag = prop.getDefaultTags().get(resolved);
+        }
+        Long delayMillis = prop.getDefaultDelayMillis().get(subject);
+        if (delayMillis == null) {
+            delayMillis = prop.getDefaultDelayMillis().get(resolved);
+        }
+        if (StringUtils.hasText(tag)) {
+            handle = handle.withTag(tag);
+        }
+        if (delayMillis != null && delayMillis > 0) {
+            handle = handle.withDelay(delayMillis, TimeUnit.MILLISECONDS);
+        }
+        return handle;
+    }
+
+    /**
+     * 包装消息发送者
+     * @param name 池名称
+     * @param producer 消息发送者
+     * @param prop 消息发送者配置
+     * @param spillLog 本地溢出日志，可以为空
+     * @param outboxRelay 事务发件箱转发器，可以为空
+     * @return 实际用于发送消息的发送者
+     */
+    private MessageProducer decorate(String name, MessageProducer producer, QmqProperties.Producer prop,
+            QmqSpillLog spillLog, QmqOutboxRelay outboxRelay) {
+        // 配置了本地溢出日志时，发送失败的消息写入溢出日志
+        producer = spillLog != null ? new SpillLogMessageProducer(producer, spillLog) : producer;
+
+        // spring.qmq.producer.max-in-flight 大于 0 时启用流量控制
+        if (prop.getMaxInFlight() > 0) {
+            FlowControlMessageProducer flowControl = new FlowControlMessageProducer(producer, prop, spillLog);
+            flowControls.put(name, flowControl);
+            producer = flowControl;
+        }
+
+        // 启用事务发件箱时，Spring 事务中发送的消息先写入发件箱
+        return outboxRelay != null ? new OutboxMessageProducer(producer, outboxRelay) : producer;
+    }
+
+    /**
+     * 获取主题实际用于发送消息的发送者，主题属于消息发送者池时使用池的发送者
+     * @param subject 主题名称
+     * @return {@link MessageProducer}
+     */
+    private MessageProducer getSendProducer(String subject) {
+        String pool = producerPools != null ? producerPools.getPoolName(subject) : null;
+        return pool != null ? poolSendProducers.get(pool) : sendProducer;
+    }
+
+    /**
+     * 获取主题对应的消息内容编解码器，依次匹配主题别名、主题名称，未配置时使用默认的编解码器
+     * @param alias 主题别名
+     * @param subject 主题名称
+     * @return {@link QmqPayloadCodec}
+     */
+    private QmqPayloadCodec getPayloadCodec(String alias, String subject) {
+        QmqProperties.Template prop = qmqProperties.getTemplate();
+        String name = prop.getPayloadCodecs().get(alias);
+        if (!StringUtils.hasText(name)) {
+            name = prop.getPayloadCodecs().getOrDefault(subject, prop.getPayloadCodec());
+        }
+        return QmqPayloadCodecs.forName(name);
     }
 
     public MessageProducer getMessageProducer() {
@@ -59,4 +278,30 @@ public class QmqTemplate {
     public QmqProperties getQmqProperties() {
         return qmqProperties;
     }
-}
\ No newline at end of file
+
+    public QmqSendMetrics getSendMetrics() {
+        return sendMetrics;
+    }
+
+    public QmqProducerPools getProducerPools() {
+        return producerPools;
+    }
+
+    /**
+     * 获取各池的流量控制发送者
+     * @return 池名称 -> 流量控制发送者，未启用流量控制时为空
+     */
+    public Map<String, FlowControlMessageProducer> getFlowControls() {
+        return Collections.unmodifiableMap(flowControls);
+    }
+
+    /**
+     * 关闭本地延迟时间轮，未到期的消息改用服务端延迟立即发送，在 {@link MessageProducer} 销毁前由容器调用
+     */
+    @Override
+    public void close() {
+        if (timingWheel != null) {
+            timingWheel.close();
+        }
+    }
+}
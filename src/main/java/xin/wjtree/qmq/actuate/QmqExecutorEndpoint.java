@@ -0,0 +1,58 @@
+package xin.wjtree.qmq.actuate;
+
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import xin.wjtree.qmq.consumer.QmqConsumerExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * QMQ 消费线程池端点，查看运行状态及运行时调整线程池大小
+ * <ul>
+ *     <li>GET /actuator/qmqexecutor：查看所有消费线程池</li>
+ *     <li>GET /actuator/qmqexecutor/{name}：查看指定消费线程池</li>
+ *     <li>POST /actuator/qmqexecutor/{name}：调整指定消费线程池，请求体可包含 corePoolSize、maxPoolSize、queueCapacity</li>
+ * </ul>
+ * @author Wang
+ */
+@Endpoint(id = "qmqexecutor")
+public class QmqExecutorEndpoint {
+    private final ListableBeanFactory beanFactory;
+
+    public QmqExecutorEndpoint(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> executors() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        getExecutors().forEach((name, executor) -> result.put(name, executor.getStatistics()));
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> executor(@Selector String name) {
+        QmqConsumerExecutor executor = getExecutors().get(name);
+        return executor != null ? executor.getStatistics() : null;
+    }
+
+    @WriteOperation
+    public Map<String, Object> resize(@Selector String name, @Nullable Integer corePoolSize,
+            @Nullable Integer maxPoolSize, @Nullable Integer queueCapacity) {
+        QmqConsumerExecutor executor = getExecutors().get(name);
+        if (executor == null) {
+            return null;
+        }
+        executor.resize(corePoolSize, maxPoolSize, queueCapacity);
+        return executor.getStatistics();
+    }
+
+    private Map<String, QmqConsumerExecutor> getExecutors() {
+        return beanFactory.getBeansOfType(QmqConsumerExecutor.class);
+    }
+}
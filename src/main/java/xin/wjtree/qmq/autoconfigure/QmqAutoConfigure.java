@@ -1,77 +1,235 @@
 package xin.wjtree.qmq.autoconfigure;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.concurrent.ThreadPoolExecutorFactoryBean;
+import org.springframework.util.StringUtils;
 import qunar.tc.qmq.MessageConsumer;
 import qunar.tc.qmq.MessageProducer;
 import qunar.tc.qmq.producer.MessageProducerProvider;
 import xin.wjtree.qmq.QmqTemplate;
+import xin.wjtree.qmq.actuate.QmqExecutorEndpoint;
+import xin.wjtree.qmq.constant.QmqExecutorType;
 import xin.wjtree.qmq.constant.QmqHelper;
+import xin.wjtree.qmq.consumer.QmqConsumerExecutor;
+import xin.wjtree.qmq.consumer.QmqIdempotentCache;
+import xin.wjtree.qmq.consumer.QmqIdempotentStore;
+import xin.wjtree.qmq.consumer.QmqListenerAnnotationBeanPostProcessor;
+import xin.wjtree.qmq.consumer.QmqThreadPoolExecutorFactoryBean;
+import xin.wjtree.qmq.consumer.QmqVirtualThreadExecutor;
+import xin.wjtree.qmq.embedded.QmqEmbeddedBroker;
+import xin.wjtree.qmq.internal.QmqJsonPayloadCodec;
+import xin.wjtree.qmq.internal.QmqOutbox;
+import xin.wjtree.qmq.internal.QmqOutboxRelay;
+import xin.wjtree.qmq.internal.QmqPayloadCodec;
+import xin.wjtree.qmq.internal.QmqPayloadCodecs;
+import xin.wjtree.qmq.internal.QmqProducerPools;
+import xin.wjtree.qmq.internal.QmqSendMetrics;
+import xin.wjtree.qmq.internal.QmqSpillLog;
+import xin.wjtree.qmq.internal.QmqSpillLogReplayer;
+import xin.wjtree.qmq.internal.SpillLogMessageProducer;
+import xin.wjtree.qmq.metrics.MicrometerQmqSendMetrics;
+import xin.wjtree.qmq.metrics.QmqConsumerExecutorMetrics;
+import xin.wjtree.qmq.metrics.QmqFlowControlMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Wang
  */
 @Configuration
-@ConditionalOnProperty(prefix = "spring.qmq", name = "meta-server")
+@Conditional(QmqAutoConfigure.OnQmqEnabledCondition.class)
 @EnableConfigurationProperties(QmqProperties.class)
+@AutoConfigureAfter(name = {
+        "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+        "org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration",
+        "org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration"})
 public class QmqAutoConfigure {
     private static final Logger log = LoggerFactory.getLogger(QmqAutoConfigure.class);
 
     @Bean
     @ConditionalOnMissingBean(MessageProducer.class)
+    @ConditionalOnProperty(prefix = "spring.qmq", name = "mode", havingValue = "server", matchIfMissing = true)
     public MessageProducer messageProducer(QmqProperties properties) {
         // 获取消息生产者配置
         QmqProperties.Producer prop = properties.getProducer();
 
         // 实例化消息生产者对象
+        MessageProducerProvider producer = createProducer(properties, prop.getMaxQueueSize(), prop.getSendThreads(),
+                prop.getSendBatch());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Init MessageProducer Success, appCode: {}, metaServer: {}, maxQueueSize: {}, "
+                            + "sendThreads: {}, sendBatch: {}, sendTryCount: {}, syncSend: {}, sendTimeoutMillis: {}",
+                    properties.getAppCode(), properties.getMetaServer(), prop.getMaxQueueSize(), prop.getSendThreads(),
+                    prop.getSendBatch(), prop.getSendTryCount(), prop.isSyncSend(), prop.getSendTimeoutMillis());
+        }
+        return producer;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(QmqProducerPools.class)
+    @ConditionalOnProperty(prefix = "spring.qmq", name = "mode", havingValue = "server", matchIfMissing = true)
+    @Conditional(OnProducerPoolsCondition.class)
+    public QmqProducerPools qmqProducerPools(QmqProperties properties) {
+        QmqProducerPools pools = new QmqProducerPools();
+        try {
+            properties.getProducer().getPools().forEach((name, prop) -> {
+                // 主题别名转换为主题名称
+                List<String> subjects = new ArrayList<>(prop.getSubjects().size());
+                for (String subject : prop.getSubjects()) {
+                    String propVal = properties.getSubject().get(subject);
+                    subjects.add(StringUtils.hasText(propVal) ? propVal : subject);
+                }
+
+                // 每个池单独实例化消息生产者对象，容器不管理其生命周期，需要手动初始化
+                MessageProducerProvider producer = createProducer(properties, prop.getMaxQueueSize(),
+                        prop.getSendThreads(), prop.getSendBatch());
+                try {
+                    producer.init();
+                    pools.addPool(name, producer, subjects);
+                } catch (RuntimeException ex) {
+                    producer.destroy();
+                    throw ex;
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Init MessageProducer Pool Success, name: {}, subjects: {}, maxQueueSize: {}, "
+                                    + "sendThreads: {}, sendBatch: {}", name, subjects, prop.getMaxQueueSize(),
+                            prop.getSendThreads(), prop.getSendBatch());
+                }
+            });
+        } catch (RuntimeException ex) {
+            // 创建失败时 Bean 不会注册到容器，已初始化的池需要手动销毁
+            pools.destroy();
+            throw ex;
+        }
+        return pools;
+    }
+
+    /**
+     * 实例化消息生产者对象
+     * @param properties 自动配置属性
+     * @param maxQueueSize 异步发送队列大小
+     * @param sendThreads 发送线程数
+     * @param sendBatch 每次发送时最大批量大小
+     * @return {@link MessageProducerProvider}
+     */
+    private static MessageProducerProvider createProducer(QmqProperties properties, int maxQueueSize,
+            int sendThreads, int sendBatch) {
         MessageProducerProvider producer = new MessageProducerProvider();
         // appCode & metaServer address
         producer.setAppCode(properties.getAppCode());
         producer.setMetaServer(properties.getMetaServer());
         // 异步发送队列大小，默认10000
-        producer.setMaxQueueSize(prop.getMaxQueueSize());
+        producer.setMaxQueueSize(maxQueueSize);
         // 发送线程数，默认3
-        producer.setSendThreads(prop.getSendThreads());
+        producer.setSendThreads(sendThreads);
         // 默认每次发送时最大批量大小，默认30
-        producer.setSendBatch(prop.getSendBatch());
+        producer.setSendBatch(sendBatch);
         // 如果消息发送失败，重试次数，默认10
-        producer.setSendTryCount(prop.getSendTryCount());
-
-        if (log.isDebugEnabled()) {
-            log.debug("Init MessageProducer Success, appCode: {}, metaServer: {}, maxQueueSize: {}, "
-                            + "sendThreads: {}, sendBatch: {}, sendTryCount: {}", properties.getAppCode(),
-                    properties.getMetaServer(), prop.getMaxQueueSize(), prop.getSendThreads(), prop.getSendBatch(),
-                    prop.getSendTryCount());
-        }
+        producer.setSendTryCount(properties.getProducer().getSendTryCount());
         return producer;
     }
 
     @Bean
     @ConditionalOnMissingBean(QmqTemplate.class)
     @ConditionalOnBean(MessageProducer.class)
-    public QmqTemplate qmqTemplate(MessageProducer producer, QmqProperties properties) {
+    public QmqTemplate qmqTemplate(MessageProducer producer, QmqProperties properties,
+            ObjectProvider<QmqSendMetrics> sendMetrics, ObjectProvider<QmqSpillLog> spillLog,
+            ObjectProvider<QmqOutboxRelay> outboxRelay, ObjectProvider<QmqProducerPools> producerPools) {
+        QmqSendMetrics metrics = sendMetrics.getIfAvailable(() -> QmqSendMetrics.NOOP);
+        QmqOutboxRelay relay = outboxRelay.getIfAvailable();
+        QmqProducerPools pools = producerPools.getIfAvailable();
         if (log.isDebugEnabled()) {
-            log.debug("Init QmqTemplate Success, defaultSubject: {}", properties.getTemplate().getDefaultSubject());
+            log.debug("Init QmqTemplate Success, defaultSubject: {}, metricsEnabled: {}, outboxEnabled: {}, "
+                            + "producerPools: {}", properties.getTemplate().getDefaultSubject(), metrics.isEnabled(),
+                    relay != null, pools != null ? pools.getPools().keySet() : null);
         }
-        return new QmqTemplate(producer, properties);
+        return new QmqTemplate(producer, properties, metrics, spillLog.getIfAvailable(), relay, pools);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean(QmqSpillLog.class)
+    @ConditionalOnProperty(prefix = "spring.qmq.producer", name = "spill-log-dir")
+    public QmqSpillLog qmqSpillLog(QmqProperties properties) {
+        QmqProperties.Producer prop = properties.getProducer();
+        QmqSpillLog spillLog = new QmqSpillLog(prop.getSpillLogDir(), prop.getSpillLogSegmentBytes());
+        if (log.isDebugEnabled()) {
+            log.debug("Init QmqSpillLog Success, directory: {}, segmentBytes: {}",
+                    spillLog.getDirectory().getAbsolutePath(), prop.getSpillLogSegmentBytes());
+        }
+        return spillLog;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(QmqSpillLogReplayer.class)
+    @ConditionalOnProperty(prefix = "spring.qmq.producer", name = "spill-log-dir")
+    public QmqSpillLogReplayer qmqSpillLogReplayer(MessageProducer producer, QmqSpillLog spillLog,
+            QmqProperties properties, ObjectProvider<QmqProducerPools> producerPools) {
+        QmqProperties.Producer prop = properties.getProducer();
+        // 配置了消息发送者池时，按主题使用池的消息发送者补发
+        QmqProducerPools pools = producerPools.getIfAvailable();
+        MessageProducer replayProducer = pools != null ? pools.routing(producer) : producer;
+        // 补发失败时通知发送失败，补发线程据此判断服务端是否可用
+        return new QmqSpillLogReplayer(new SpillLogMessageProducer(replayProducer, spillLog, false),
+                prop.getSpillLogReplayBatch(), prop.getSpillLogReplayIntervalMillis(), prop.getSendTimeoutMillis());
     }
 
     @Bean(QmqHelper.EXECUTOR_NAME)
     @ConditionalOnMissingBean(name = QmqHelper.EXECUTOR_NAME)
-    @ConditionalOnBean(MessageConsumer.class)
+    @ConditionalOnProperty(prefix = "spring.qmq.consumer", name = "executor-type", havingValue = "virtual")
+    @Conditional({OnConsumerCondition.class, OnVirtualThreadCondition.class})
+    public QmqVirtualThreadExecutor qmqVirtualThreadExecutor(QmqProperties properties) {
+        // 获取消息接收者配置
+        QmqProperties.Consumer prop = properties.getConsumer();
+
+        // 每个消息一个虚拟线程，适合 I/O 密集型消费者，可选限制最大并发数
+        QmqVirtualThreadExecutor executor = new QmqVirtualThreadExecutor(prop.getThreadNamePrefix(),
+                prop.getVirtualMaxConcurrency());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Init Virtual Thread Executor Success, maxConcurrency: {}, threadNamePrefix: {}",
+                    prop.getVirtualMaxConcurrency(), prop.getThreadNamePrefix());
+        }
+        return executor;
+    }
+
+    @Bean(QmqHelper.EXECUTOR_NAME)
+    @ConditionalOnMissingBean(name = QmqHelper.EXECUTOR_NAME)
+    @Conditional(OnConsumerCondition.class)
     public ThreadPoolExecutorFactoryBean threadPoolExecutorFactoryBean(QmqProperties properties) {
         // 获取消息接收者配置
         QmqProperties.Consumer prop = properties.getConsumer();
 
-        // 设置消费者线程池
-        ThreadPoolExecutorFactoryBean bean = new ThreadPoolExecutorFactoryBean();
+        if (prop.getExecutorType() == QmqExecutorType.VIRTUAL) {
+            log.warn("Virtual threads are not supported by the current JDK, fall back to platform thread pool");
+        }
+
+        // 设置消费者线程池，支持运行状态统计及运行时调整大小
+        ThreadPoolExecutorFactoryBean bean = new QmqThreadPoolExecutorFactoryBean();
         bean.setCorePoolSize(prop.getCorePoolSize());
         bean.setMaxPoolSize(prop.getMaxPoolSize());
         bean.setQueueCapacity(prop.getQueueCapacity());
@@ -84,4 +242,221 @@ public class QmqAutoConfigure {
         }
         return bean;
     }
-}
\ No newline at end of file
+
+    @Bean
+    @ConditionalOnMissingBean(QmqIdempotentCache.class)
+    @Conditional(OnConsumerCondition.class)
+    public QmqIdempotentCache qmqIdempotentCache(QmqProperties properties, ObjectProvider<QmqIdempotentStore> store) {
+        QmqProperties.Consumer prop = properties.getConsumer();
+        QmqIdempotentCache cache = new QmqIdempotentCache(prop.getIdempotentCacheSize(), prop.getIdempotentTtlMillis(),
+                store.getIfAvailable());
+        if (log.isDebugEnabled()) {
+            log.debug("Init QmqIdempotentCache Success, capacity: {}, ttlMillis: {}, store: {}", cache.getCapacity(),
+                    prop.getIdempotentTtlMillis(), store.getIfAvailable());
+        }
+        return cache;
+    }
+
+    /**
+     * 存在 Micrometer MeterRegistry 时记录消息发送指标
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    static class QmqMetricsConfigure {
+        @Bean
+        @ConditionalOnMissingBean(QmqSendMetrics.class)
+        public QmqSendMetrics qmqSendMetrics(MeterRegistry registry) {
+            if (log.isDebugEnabled()) {
+                log.debug("Init QmqSendMetrics Success, registry: {}", registry.getClass().getName());
+            }
+            return new MicrometerQmqSendMetrics(registry);
+        }
+
+        @Bean
+        public SmartInitializingSingleton qmqConsumerExecutorMetricsBinder(MeterRegistry registry,
+                ListableBeanFactory beanFactory) {
+            // 所有单例初始化完成后，绑定全部消费线程池的指标
+            return () -> beanFactory.getBeansOfType(QmqConsumerExecutor.class)
+                    .forEach((name, executor) -> new QmqConsumerExecutorMetrics(name, executor).bindTo(registry));
+        }
+
+        @Bean
+        public SmartInitializingSingleton qmqFlowControlMetricsBinder(MeterRegistry registry,
+                ObjectProvider<QmqTemplate> templates) {
+            // 所有单例初始化完成后，绑定消息发送模板中各池的流量控制指标
+            return () -> templates.orderedStream().forEach(template -> template.getFlowControls()
+                    .forEach((pool, flowControl) -> new QmqFlowControlMetrics(pool, flowControl).bindTo(registry)));
+        }
+    }
+
+    /**
+     * 所有单例初始化完成后，注册容器中自定义的消息内容编解码器，同名时覆盖内置的编解码器
+     * @param payloadCodecs 自定义的编解码器
+     * @return {@link SmartInitializingSingleton}
+     */
+    @Bean
+    public SmartInitializingSingleton qmqPayloadCodecRegistrar(ObjectProvider<QmqPayloadCodec> payloadCodecs) {
+        return () -> payloadCodecs.orderedStream().forEach(codec -> {
+            QmqPayloadCodecs.register(codec);
+            if (log.isDebugEnabled()) {
+                log.debug("Register QmqPayloadCodec Success, name: {}, type: {}", codec.getName(),
+                        codec.getClass().getName());
+            }
+        });
+    }
+
+    /**
+     * 存在 Jackson ObjectMapper 时，json 编解码器使用容器中的 ObjectMapper
+     */
+    @Configuration
+    @ConditionalOnClass(name = "com.fasterxml.jackson.databind.ObjectMapper")
+    @ConditionalOnBean(type = "com.fasterxml.jackson.databind.ObjectMapper")
+    static class QmqJsonPayloadCodecConfigure {
+        @Bean
+        @ConditionalOnMissingBean(QmqJsonPayloadCodec.class)
+        public QmqJsonPayloadCodec qmqJsonPayloadCodec(ObjectMapper objectMapper) {
+            return new QmqJsonPayloadCodec(objectMapper);
+        }
+    }
+
+    /**
+     * 启用事务发件箱时，使用容器中的 JdbcTemplate 读写发件箱表
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.jdbc.core.JdbcTemplate")
+    @ConditionalOnBean(type = "org.springframework.jdbc.core.JdbcTemplate")
+    @ConditionalOnProperty(prefix = "spring.qmq.outbox", name = "enabled", havingValue = "true")
+    static class QmqOutboxConfigure {
+        @Bean
+        @ConditionalOnMissingBean(QmqOutbox.class)
+        public QmqOutbox qmqOutbox(JdbcTemplate jdbcTemplate, QmqProperties properties) {
+            QmqProperties.Outbox prop = properties.getOutbox();
+            return new QmqOutbox(jdbcTemplate, prop.getTableName(), prop.getDeadLetterTableName());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(QmqOutboxRelay.class)
+        @ConditionalOnBean(MessageProducer.class)
+        public QmqOutboxRelay qmqOutboxRelay(MessageProducer producer, QmqOutbox outbox, QmqProperties properties,
+                ObjectProvider<QmqProducerPools> producerPools) {
+            QmqProperties.Outbox prop = properties.getOutbox();
+            QmqProducerPools pools = producerPools.getIfAvailable();
+            if (log.isDebugEnabled()) {
+                log.debug("Init QmqOutboxRelay Success, table: {}, relayBatchSize: {}, relayIntervalMillis: {}, "
+                                + "maxAttempts: {}, maxBackoffMillis: {}, deadLetterTable: {}", outbox.getTableName(),
+                        prop.getRelayBatchSize(), prop.getRelayIntervalMillis(), prop.getMaxAttempts(),
+                        prop.getMaxBackoffMillis(), outbox.getDeadLetterTableName());
+            }
+            // 转发失败的消息保留在发件箱中重试，不经过本地溢出日志
+            return new QmqOutboxRelay(outbox, pools != null ? pools.routing(producer) : producer,
+                    prop.getRelayBatchSize(), prop.getRelayIntervalMillis(),
+                    properties.getProducer().getSendTimeoutMillis(), prop.getMaxAttempts(), prop.getMaxBackoffMillis());
+        }
+    }
+
+    /**
+     * 扫描 QmqListener 注解，后置处理器需要尽早创建，因此使用静态方法
+     * @return {@link QmqListenerAnnotationBeanPostProcessor}
+     */
+    @Bean
+    @ConditionalOnMissingBean(QmqListenerAnnotationBeanPostProcessor.class)
+    public static QmqListenerAnnotationBeanPostProcessor qmqListenerAnnotationBeanPostProcessor() {
+        return new QmqListenerAnnotationBeanPostProcessor();
+    }
+
+    /**
+     * 配置了 spring.qmq.meta-server 或 spring.qmq.mode 为 embedded 时匹配
+     */
+    static class OnQmqEnabledCondition extends AnyNestedCondition {
+        OnQmqEnabledCondition() {
+            super(ConfigurationPhase.PARSE_CONFIGURATION);
+        }
+
+        @ConditionalOnProperty(prefix = "spring.qmq", name = "meta-server")
+        static class OnMetaServer {
+        }
+
+        @ConditionalOnProperty(prefix = "spring.qmq", name = "mode", havingValue = "embedded")
+        static class OnEmbedded {
+        }
+    }
+
+    /**
+     * 通过 @EnableQmq 启用了消费者模式，或使用内嵌模式时匹配
+     */
+    static class OnConsumerCondition extends AnyNestedCondition {
+        OnConsumerCondition() {
+            super(ConfigurationPhase.REGISTER_BEAN);
+        }
+
+        @ConditionalOnBean(MessageConsumer.class)
+        static class OnMessageConsumer {
+        }
+
+        @ConditionalOnBean(QmqEmbeddedBroker.class)
+        static class OnEmbeddedBroker {
+        }
+    }
+
+    /**
+     * 内嵌模式使用进程内的内存代理，不连接 QMQ 服务端
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "spring.qmq", name = "mode", havingValue = "embedded")
+    static class QmqEmbeddedConfigure {
+        @Bean(destroyMethod = "close")
+        @ConditionalOnMissingBean(QmqEmbeddedBroker.class)
+        public QmqEmbeddedBroker qmqEmbeddedBroker(QmqProperties properties) {
+            QmqProperties.Embedded prop = properties.getEmbedded();
+            if (log.isDebugEnabled()) {
+                log.debug("Init QmqEmbeddedBroker Success, sendLatencyMillis: {}, sendFailureRate: {}, "
+                                + "retryDelayMillis: {}, maxRetries: {}", prop.getSendLatencyMillis(),
+                        prop.getSendFailureRate(), prop.getRetryDelayMillis(), prop.getMaxRetries());
+            }
+            return new QmqEmbeddedBroker(prop, properties.getProducer().getMaxQueueSize());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(MessageProducer.class)
+        public MessageProducer qmqEmbeddedMessageProducer(QmqEmbeddedBroker broker) {
+            return broker.getProducer();
+        }
+    }
+
+    /**
+     * 配置了 spring.qmq.producer.pools 时匹配
+     */
+    static class OnProducerPoolsCondition implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return Binder.get(context.getEnvironment())
+                    .bind("spring.qmq.producer.pools", Bindable.mapOf(String.class, QmqProperties.Pool.class))
+                    .map(pools -> !pools.isEmpty())
+                    .orElse(false);
+        }
+    }
+
+    /**
+     * 当前 JDK 支持虚拟线程时匹配
+     */
+    static class OnVirtualThreadCondition implements Condition {
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            return QmqVirtualThreadExecutor.isSupported();
+        }
+    }
+
+    /**
+     * 存在 Spring Boot Actuator 时注册消费线程池端点
+     */
+    @Configuration
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    static class QmqEndpointConfigure {
+        @Bean
+        @ConditionalOnMissingBean(QmqExecutorEndpoint.class)
+        public QmqExecutorEndpoint qmqExecutorEndpoint(ListableBeanFactory beanFactory) {
+            return new QmqExecutorEndpoint(beanFactory);
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package xin.wjtree.qmq.autoconfigure;
 
+import xin.wjtree.qmq.constant.QmqExecutorType;
 import xin.wjtree.qmq.constant.QmqHelper;
+import xin.wjtree.qmq.constant.QmqMode;
+import xin.wjtree.qmq.constant.QmqOverflowPolicy;
+import xin.wjtree.qmq.internal.QmqPayloadCodecs;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,6 +29,11 @@ public class QmqProperties {
      */
     private String metaServer = QmqHelper.DEFAULT_META_SERVER;
 
+    /**
+     * QMQ 运行模式，默认 server；embedded 使用进程内的内存代理，不需要 meta-server
+     */
+    private QmqMode mode = QmqMode.SERVER;
+
     /**
      * QMQ 消费者主题
      */
@@ -48,6 +60,16 @@ public class QmqProperties {
      */
     private final Consumer consumer = new Consumer();
 
+    /**
+     * QMQ 内嵌模式配置，仅 mode 为 embedded 时生效
+     */
+    private final Embedded embedded = new Embedded();
+
+    /**
+     * QMQ 事务发件箱配置
+     */
+    private final Outbox outbox = new Outbox();
+
     public String getAppCode() {
         return StringUtils.hasText(appCode) ? appCode : QmqHelper.DEFAULT_APP_CODE;
     }
@@ -64,6 +86,14 @@ public class QmqProperties {
         this.metaServer = metaServer;
     }
 
+    public QmqMode getMode() {
+        return mode == null ? QmqMode.SERVER : mode;
+    }
+
+    public void setMode(QmqMode mode) {
+        this.mode = mode;
+    }
+
     public Map<String, String> getSubject() {
         return subject;
     }
@@ -92,6 +122,14 @@ public class QmqProperties {
         return consumer;
     }
 
+    public Embedded getEmbedded() {
+        return embedded;
+    }
+
+    public Outbox getOutbox() {
+        return outbox;
+    }
+
     /**
      * QMQ 消息发送者配置
      */
@@ -117,15 +155,86 @@ public class QmqProperties {
         private Integer sendTryCount = QmqHelper.DEFAULT_SEND_TRY_COUNT;
 
         /**
-         * 发送消息超时时间，单位：毫秒，默认 5 秒超时；源代码中没有 set 方法，未生效
+         * 同步发送消息时等待发送结果的超时时间，单位：毫秒，默认 5 秒超时
          */
         private Long sendTimeoutMillis = QmqHelper.DEFAULT_SEND_TIMEOUT_MILLIS;
 
         /**
-         * 是否同步发送，默认使用异步发送；源代码中没有 set 方法，未生效
+         * 是否同步发送，默认使用异步发送；开启后 QmqSendBuilder.send 会阻塞等待发送结果
          */
         private boolean syncSend = false;
 
+        /**
+         * 未收到回调的消息数量上限，默认 0 表示不启用流量控制
+         */
+        private Integer maxInFlight = QmqHelper.DEFAULT_MAX_IN_FLIGHT;
+
+        /**
+         * 是否按回调耗时及失败自适应调整未收到回调的消息数量上限，默认 false；需同时配置 maxInFlight
+         */
+        private boolean adaptiveInFlight = false;
+
+        /**
+         * 自适应流量控制的未收到回调消息数量下限，默认 100
+         */
+        private Integer minInFlight = QmqHelper.DEFAULT_MIN_IN_FLIGHT;
+
+        /**
+         * 自适应流量控制的目标回调耗时，平均耗时超过该值时减小上限，默认 100，单位：毫秒
+         */
+        private Long targetAckLatencyMillis = QmqHelper.DEFAULT_TARGET_ACK_LATENCY_MILLIS;
+
+        /**
+         * 未收到回调的消息数量达到上限时的处理策略，默认 BLOCK
+         */
+        private QmqOverflowPolicy overflowPolicy = QmqOverflowPolicy.BLOCK;
+
+        /**
+         * BLOCK 策略等待发送许可、CALLER_RUNS 策略等待发送结果的超时时间，单位：毫秒，默认 5 秒
+         */
+        private Long overflowTimeoutMillis = QmqHelper.DEFAULT_SEND_TIMEOUT_MILLIS;
+
+        /**
+         * SPILL 策略的溢出队列大小，默认 10000
+         */
+        private Integer spillQueueSize = QmqHelper.DEFAULT_SPILL_QUEUE_SIZE;
+
+        /**
+         * 本地溢出日志目录，默认为空表示不启用；启用后发送失败或溢出的消息写入该目录，由后台补发
+         */
+        private String spillLogDir;
+
+        /**
+         * 本地溢出日志分段大小，默认 64MB，单位：字节
+         */
+        private Integer spillLogSegmentBytes = QmqHelper.DEFAULT_SPILL_LOG_SEGMENT_BYTES;
+
+        /**
+         * 本地溢出日志每批补发的消息数量，默认 100
+         */
+        private Integer spillLogReplayBatch = QmqHelper.DEFAULT_SPILL_LOG_REPLAY_BATCH;
+
+        /**
+         * 本地溢出日志补发间隔，默认 1000，单位：毫秒
+         */
+        private Long spillLogReplayIntervalMillis = QmqHelper.DEFAULT_SPILL_LOG_REPLAY_INTERVAL_MILLIS;
+
+        /**
+         * 本地延迟阈值，默认 0 表示不启用，单位：毫秒；延迟不超过该值的消息保存在进程内的时间轮中，到期后再发送，
+         * 超过该值的消息仍使用服务端的延迟队列
+         */
+        private Long localDelayThresholdMillis = QmqHelper.DEFAULT_LOCAL_DELAY_THRESHOLD_MILLIS;
+
+        /**
+         * 本地延迟时间轮的刻度，即本地延迟的精度，默认 10，单位：毫秒
+         */
+        private Long localDelayTickMillis = QmqHelper.DEFAULT_LOCAL_DELAY_TICK_MILLIS;
+
+        /**
+         * 独立的消息发送者池，键为池名称；池中的主题使用单独的发送队列及发送线程，未配置的主题使用默认的消息发送者
+         */
+        private Map<String, Pool> pools = new LinkedHashMap<>();
+
         public Integer getMaxQueueSize() {
             return maxQueueSize != null && maxQueueSize > 0 ? maxQueueSize : QmqHelper.DEFAULT_MAX_QUEUE_SIZE;
         }
@@ -164,7 +273,6 @@ public class QmqProperties {
                     QmqHelper.DEFAULT_SEND_TIMEOUT_MILLIS;
         }
 
-        @Deprecated
         public void setSendTimeoutMillis(Long sendTimeoutMillis) {
             this.sendTimeoutMillis = sendTimeoutMillis;
         }
@@ -173,10 +281,186 @@ public class QmqProperties {
             return syncSend;
         }
 
-        @Deprecated
         public void setSyncSend(boolean syncSend) {
             this.syncSend = syncSend;
         }
+
+        public Integer getMaxInFlight() {
+            return maxInFlight != null && maxInFlight > 0 ? maxInFlight : QmqHelper.DEFAULT_MAX_IN_FLIGHT;
+        }
+
+        public void setMaxInFlight(Integer maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public boolean isAdaptiveInFlight() {
+            return adaptiveInFlight;
+        }
+
+        public void setAdaptiveInFlight(boolean adaptiveInFlight) {
+            this.adaptiveInFlight = adaptiveInFlight;
+        }
+
+        public Integer getMinInFlight() {
+            return minInFlight != null && minInFlight > 0 ? minInFlight : QmqHelper.DEFAULT_MIN_IN_FLIGHT;
+        }
+
+        public void setMinInFlight(Integer minInFlight) {
+            this.minInFlight = minInFlight;
+        }
+
+        public Long getTargetAckLatencyMillis() {
+            return targetAckLatencyMillis != null && targetAckLatencyMillis > 0 ? targetAckLatencyMillis :
+                    QmqHelper.DEFAULT_TARGET_ACK_LATENCY_MILLIS;
+        }
+
+        public void setTargetAckLatencyMillis(Long targetAckLatencyMillis) {
+            this.targetAckLatencyMillis = targetAckLatencyMillis;
+        }
+
+        public QmqOverflowPolicy getOverflowPolicy() {
+            return overflowPolicy != null ? overflowPolicy : QmqOverflowPolicy.BLOCK;
+        }
+
+        public void setOverflowPolicy(QmqOverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public Long getOverflowTimeoutMillis() {
+            return overflowTimeoutMillis != null && overflowTimeoutMillis > 0 ?
+                    overflowTimeoutMillis :
+                    QmqHelper.DEFAULT_SEND_TIMEOUT_MILLIS;
+        }
+
+        public void setOverflowTimeoutMillis(Long overflowTimeoutMillis) {
+            this.overflowTimeoutMillis = overflowTimeoutMillis;
+        }
+
+        public Integer getSpillQueueSize() {
+            return spillQueueSize != null && spillQueueSize > 0 ? spillQueueSize : QmqHelper.DEFAULT_SPILL_QUEUE_SIZE;
+        }
+
+        public void setSpillQueueSize(Integer spillQueueSize) {
+            this.spillQueueSize = spillQueueSize;
+        }
+
+        public String getSpillLogDir() {
+            return spillLogDir;
+        }
+
+        public void setSpillLogDir(String spillLogDir) {
+            this.spillLogDir = spillLogDir;
+        }
+
+        public Integer getSpillLogSegmentBytes() {
+            return spillLogSegmentBytes != null && spillLogSegmentBytes > 0 ? spillLogSegmentBytes
+                    : QmqHelper.DEFAULT_SPILL_LOG_SEGMENT_BYTES;
+        }
+
+        public void setSpillLogSegmentBytes(Integer spillLogSegmentBytes) {
+            this.spillLogSegmentBytes = spillLogSegmentBytes;
+        }
+
+        public Integer getSpillLogReplayBatch() {
+            return spillLogReplayBatch != null && spillLogReplayBatch > 0 ? spillLogReplayBatch
+                    : QmqHelper.DEFAULT_SPILL_LOG_REPLAY_BATCH;
+        }
+
+        public void setSpillLogReplayBatch(Integer spillLogReplayBatch) {
+            this.spillLogReplayBatch = spillLogReplayBatch;
+        }
+
+        public Long getSpillLogReplayIntervalMillis() {
+            return spillLogReplayIntervalMillis != null && spillLogReplayIntervalMillis > 0
+                    ? spillLogReplayIntervalMillis : QmqHelper.DEFAULT_SPILL_LOG_REPLAY_INTERVAL_MILLIS;
+        }
+
+        public void setSpillLogReplayIntervalMillis(Long spillLogReplayIntervalMillis) {
+            this.spillLogReplayIntervalMillis = spillLogReplayIntervalMillis;
+        }
+
+        public Long getLocalDelayThresholdMillis() {
+            return localDelayThresholdMillis != null && localDelayThresholdMillis > 0 ? localDelayThresholdMillis :
+                    QmqHelper.DEFAULT_LOCAL_DELAY_THRESHOLD_MILLIS;
+        }
+
+        public void setLocalDelayThresholdMillis(Long localDelayThresholdMillis) {
+            this.localDelayThresholdMillis = localDelayThresholdMillis;
+        }
+
+        public Long getLocalDelayTickMillis() {
+            return localDelayTickMillis != null && localDelayTickMillis > 0 ? localDelayTickMillis :
+                    QmqHelper.DEFAULT_LOCAL_DELAY_TICK_MILLIS;
+        }
+
+        public void setLocalDelayTickMillis(Long localDelayTickMillis) {
+            this.localDelayTickMillis = localDelayTickMillis;
+        }
+
+        public Map<String, Pool> getPools() {
+            return pools;
+        }
+
+        public void setPools(Map<String, Pool> pools) {
+            this.pools = pools;
+        }
+    }
+
+    /**
+     * QMQ 消息发送者池配置
+     */
+    public static class Pool {
+        /**
+         * 使用该池发送的主题名称或主题别名
+         */
+        private List<String> subjects = new ArrayList<>();
+
+        /**
+         * 异步发送队列大小，默认 10000
+         */
+        private Integer maxQueueSize = QmqHelper.DEFAULT_MAX_QUEUE_SIZE;
+
+        /**
+         * 发送线程数，默认 3
+         */
+        private Integer sendThreads = QmqHelper.DEFAULT_SEND_THREADS;
+
+        /**
+         * 默认每次发送时最大批量大小，默认 30
+         */
+        private Integer sendBatch = QmqHelper.DEFAULT_SEND_BATCH;
+
+        public List<String> getSubjects() {
+            return subjects;
+        }
+
+        public void setSubjects(List<String> subjects) {
+            this.subjects = subjects;
+        }
+
+        public Integer getMaxQueueSize() {
+            return maxQueueSize != null && maxQueueSize > 0 ? maxQueueSize : QmqHelper.DEFAULT_MAX_QUEUE_SIZE;
+        }
+
+        public void setMaxQueueSize(Integer maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        public Integer getSendThreads() {
+            return sendThreads != null && sendThreads > 0 ? sendThreads : QmqHelper.DEFAULT_SEND_THREADS;
+        }
+
+        public void setSendThreads(Integer sendThreads) {
+            this.sendThreads = sendThreads;
+        }
+
+        public Integer getSendBatch() {
+            return sendBatch != null && sendBatch > 0 ? sendBatch : QmqHelper.DEFAULT_SEND_BATCH;
+        }
+
+        public void setSendBatch(Integer sendBatch) {
+            this.sendBatch = sendBatch;
+        }
     }
 
     /**
@@ -189,6 +473,36 @@ public class QmqProperties {
          */
         private String defaultSubject = QmqHelper.DEFAULT_SUBJECT;
 
+        /**
+         * 默认的消息内容编解码器，默认 properties，可选 binary、json 或自定义编解码器名称
+         */
+        private String payloadCodec = QmqPayloadCodecs.PROPERTIES.getName();
+
+        /**
+         * 按主题指定消息内容编解码器，键为主题名称或主题别名，值为编解码器名称
+         */
+        private Map<String, String> payloadCodecs = new HashMap<>();
+
+        /**
+         * 启用压缩的主题名称或主题别名，字符串属性及整体序列化的消息内容达到压缩阈值时使用 Deflate 压缩
+         */
+        private List<String> compressSubjects = new ArrayList<>();
+
+        /**
+         * 压缩阈值，默认 32K，单位：字节
+         */
+        private int compressThresholdBytes = QmqHelper.DEFAULT_COMPRESS_THRESHOLD_BYTES;
+
+        /**
+         * 按主题指定默认的消息标签，键为主题名称或主题别名，值为消息标签
+         */
+        private Map<String, String> defaultTags = new HashMap<>();
+
+        /**
+         * 按主题指定默认的延迟时间，键为主题名称或主题别名，值为延迟时间，单位：毫秒
+         */
+        private Map<String, Long> defaultDelayMillis = new HashMap<>();
+
         public String getDefaultSubject() {
             return StringUtils.hasText(defaultSubject) ? defaultSubject : QmqHelper.DEFAULT_SUBJECT;
         }
@@ -196,6 +510,54 @@ public class QmqProperties {
         public void setDefaultSubject(String defaultSubject) {
             this.defaultSubject = defaultSubject;
         }
+
+        public String getPayloadCodec() {
+            return StringUtils.hasText(payloadCodec) ? payloadCodec : QmqPayloadCodecs.PROPERTIES.getName();
+        }
+
+        public void setPayloadCodec(String payloadCodec) {
+            this.payloadCodec = payloadCodec;
+        }
+
+        public Map<String, String> getPayloadCodecs() {
+            return payloadCodecs;
+        }
+
+        public void setPayloadCodecs(Map<String, String> payloadCodecs) {
+            this.payloadCodecs = payloadCodecs;
+        }
+
+        public List<String> getCompressSubjects() {
+            return compressSubjects;
+        }
+
+        public void setCompressSubjects(List<String> compressSubjects) {
+            this.compressSubjects = compressSubjects;
+        }
+
+        public int getCompressThresholdBytes() {
+            return compressThresholdBytes <= 0 ? QmqHelper.DEFAULT_COMPRESS_THRESHOLD_BYTES : compressThresholdBytes;
+        }
+
+        public void setCompressThresholdBytes(int compressThresholdBytes) {
+            this.compressThresholdBytes = compressThresholdBytes;
+        }
+
+        public Map<String, String> getDefaultTags() {
+            return defaultTags;
+        }
+
+        public void setDefaultTags(Map<String, String> defaultTags) {
+            this.defaultTags = defaultTags;
+        }
+
+        public Map<String, Long> getDefaultDelayMillis() {
+            return defaultDelayMillis;
+        }
+
+        public void setDefaultDelayMillis(Map<String, Long> defaultDelayMillis) {
+            this.defaultDelayMillis = defaultDelayMillis;
+        }
     }
 
     /**
@@ -222,6 +584,26 @@ public class QmqProperties {
          */
         private String threadNamePrefix = QmqHelper.DEFAULT_THREAD_NAME_PREFIX;
 
+        /**
+         * 消费线程池类型，默认 platform；virtual 需要 JDK 21 及以上版本，不支持时使用平台线程池
+         */
+        private QmqExecutorType executorType = QmqExecutorType.PLATFORM;
+
+        /**
+         * 虚拟线程消费线程池的最大并发数，默认 0 表示不限制，仅 executor-type 为 virtual 时生效
+         */
+        private Integer virtualMaxConcurrency = QmqHelper.DEFAULT_VIRTUAL_MAX_CONCURRENCY;
+
+        /**
+         * 消费幂等缓存容量，默认 65536，超出时淘汰最早过期的记录，仅 QmqListener 的 idempotent 为 true 时生效
+         */
+        private Integer idempotentCacheSize = QmqHelper.DEFAULT_IDEMPOTENT_CACHE_SIZE;
+
+        /**
+         * 消费幂等缓存过期时间，默认 10 分钟，单位：毫秒
+         */
+        private Long idempotentTtlMillis = QmqHelper.DEFAULT_IDEMPOTENT_TTL_MILLIS;
+
         public Integer getCorePoolSize() {
             return corePoolSize != null && corePoolSize > 0 ? corePoolSize : QmqHelper.DEFAULT_CORE_POOL_SIZE;
         }
@@ -253,5 +635,213 @@ public class QmqProperties {
         public void setThreadNamePrefix(String threadNamePrefix) {
             this.threadNamePrefix = threadNamePrefix;
         }
+
+        public QmqExecutorType getExecutorType() {
+            return executorType != null ? executorType : QmqExecutorType.PLATFORM;
+        }
+
+        public void setExecutorType(QmqExecutorType executorType) {
+            this.executorType = executorType;
+        }
+
+        public Integer getVirtualMaxConcurrency() {
+            return virtualMaxConcurrency != null && virtualMaxConcurrency > 0 ? virtualMaxConcurrency
+                    : QmqHelper.DEFAULT_VIRTUAL_MAX_CONCURRENCY;
+        }
+
+        public void setVirtualMaxConcurrency(Integer virtualMaxConcurrency) {
+            this.virtualMaxConcurrency = virtualMaxConcurrency;
+        }
+
+        public Integer getIdempotentCacheSize() {
+            return idempotentCacheSize != null && idempotentCacheSize > 0 ? idempotentCacheSize
+                    : QmqHelper.DEFAULT_IDEMPOTENT_CACHE_SIZE;
+        }
+
+        public void setIdempotentCacheSize(Integer idempotentCacheSize) {
+            this.idempotentCacheSize = idempotentCacheSize;
+        }
+
+        public Long getIdempotentTtlMillis() {
+            return idempotentTtlMillis != null && idempotentTtlMillis > 0 ? idempotentTtlMillis
+                    : QmqHelper.DEFAULT_IDEMPOTENT_TTL_MILLIS;
+        }
+
+        public void setIdempotentTtlMillis(Long idempotentTtlMillis) {
+            this.idempotentTtlMillis = idempotentTtlMillis;
+        }
+    }
+
+    /**
+     * QMQ 内嵌模式配置
+     */
+    public static class Embedded {
+        /**
+         * 发送延迟，模拟网络及服务端耗时，默认 0，单位：毫秒
+         */
+        private Long sendLatencyMillis = QmqHelper.DEFAULT_EMBEDDED_SEND_LATENCY_MILLIS;
+
+        /**
+         * 发送失败比例，取值 0 ~ 1，默认 0；按该比例随机回调发送失败，用于演练失败处理
+         */
+        private Double sendFailureRate = QmqHelper.DEFAULT_EMBEDDED_SEND_FAILURE_RATE;
+
+        /**
+         * 消费失败后的重试间隔，默认 1000，单位：毫秒
+         */
+        private Long retryDelayMillis = QmqHelper.DEFAULT_EMBEDDED_RETRY_DELAY_MILLIS;
+
+        /**
+         * 消费失败的最大重试次数，默认 16，超过后丢弃消息
+         */
+        private Integer maxRetries = QmqHelper.DEFAULT_EMBEDDED_MAX_RETRIES;
+
+        /**
+         * 调度线程数，负责发送回调、延迟消息及重试，默认 2
+         */
+        private Integer threads = QmqHelper.DEFAULT_EMBEDDED_THREADS;
+
+        public Long getSendLatencyMillis() {
+            return sendLatencyMillis != null && sendLatencyMillis > 0 ? sendLatencyMillis :
+                    QmqHelper.DEFAULT_EMBEDDED_SEND_LATENCY_MILLIS;
+        }
+
+        public void setSendLatencyMillis(Long sendLatencyMillis) {
+            this.sendLatencyMillis = sendLatencyMillis;
+        }
+
+        public Double getSendFailureRate() {
+            return sendFailureRate != null && sendFailureRate > 0 ? Math.min(sendFailureRate, 1D) :
+                    QmqHelper.DEFAULT_EMBEDDED_SEND_FAILURE_RATE;
+        }
+
+        public void setSendFailureRate(Double sendFailureRate) {
+            this.sendFailureRate = sendFailureRate;
+        }
+
+        public Long getRetryDelayMillis() {
+            return retryDelayMillis != null && retryDelayMillis > 0 ? retryDelayMillis :
+                    QmqHelper.DEFAULT_EMBEDDED_RETRY_DELAY_MILLIS;
+        }
+
+        public void setRetryDelayMillis(Long retryDelayMillis) {
+            this.retryDelayMillis = retryDelayMillis;
+        }
+
+        public Integer getMaxRetries() {
+            return maxRetries != null && maxRetries >= 0 ? maxRetries : QmqHelper.DEFAULT_EMBEDDED_MAX_RETRIES;
+        }
+
+        public void setMaxRetries(Integer maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public Integer getThreads() {
+            return threads != null && threads > 0 ? threads : QmqHelper.DEFAULT_EMBEDDED_THREADS;
+        }
+
+        public void setThreads(Integer threads) {
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * QMQ 事务发件箱配置
+     */
+    public static class Outbox {
+        /**
+         * 是否启用事务发件箱，默认 false；启用后在 Spring 事务中发送的消息先写入本地表，提交后由后台转发
+         */
+        private boolean enabled;
+
+        /**
+         * 发件箱表名，默认 qmq_outbox
+         */
+        private String tableName = QmqHelper.DEFAULT_OUTBOX_TABLE_NAME;
+
+        /**
+         * 每批转发的最大消息数量，默认 500
+         */
+        private Integer relayBatchSize = QmqHelper.DEFAULT_OUTBOX_RELAY_BATCH_SIZE;
+
+        /**
+         * 转发间隔，默认 1000，单位：毫秒；事务提交后会立即触发一次转发
+         */
+        private Long relayIntervalMillis = QmqHelper.DEFAULT_OUTBOX_RELAY_INTERVAL_MILLIS;
+
+        /**
+         * 最大转发次数，默认 10；配置了死信表时失败次数达到该值或无法反序列化的记录移入死信表，
+         * 未配置时记录错误日志并按最大退避时间继续重试
+         */
+        private Integer maxAttempts = QmqHelper.DEFAULT_OUTBOX_MAX_ATTEMPTS;
+
+        /**
+         * 失败重试的最大退避时间，默认 60000，单位：毫秒；退避时间从转发间隔开始每次失败翻倍
+         */
+        private Long maxBackoffMillis = QmqHelper.DEFAULT_OUTBOX_MAX_BACKOFF_MILLIS;
+
+        /**
+         * 死信表名，默认为空表示不移出任何记录，无法转发的记录保留在发件箱中
+         */
+        private String deadLetterTableName;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getTableName() {
+            return StringUtils.hasText(tableName) ? tableName : QmqHelper.DEFAULT_OUTBOX_TABLE_NAME;
+        }
+
+        public void setTableName(String tableName) {
+            this.tableName = tableName;
+        }
+
+        public Integer getRelayBatchSize() {
+            return relayBatchSize != null && relayBatchSize > 0 ? relayBatchSize :
+                    QmqHelper.DEFAULT_OUTBOX_RELAY_BATCH_SIZE;
+        }
+
+        public void setRelayBatchSize(Integer relayBatchSize) {
+            this.relayBatchSize = relayBatchSize;
+        }
+
+        public Long getRelayIntervalMillis() {
+            return relayIntervalMillis != null && relayIntervalMillis > 0 ? relayIntervalMillis :
+                    QmqHelper.DEFAULT_OUTBOX_RELAY_INTERVAL_MILLIS;
+        }
+
+        public void setRelayIntervalMillis(Long relayIntervalMillis) {
+            this.relayIntervalMillis = relayIntervalMillis;
+        }
+
+        public Integer getMaxAttempts() {
+            return maxAttempts != null && maxAttempts > 0 ? maxAttempts : QmqHelper.DEFAULT_OUTBOX_MAX_ATTEMPTS;
+        }
+
+        public void setMaxAttempts(Integer maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public Long getMaxBackoffMillis() {
+            return maxBackoffMillis != null && maxBackoffMillis > 0 ? maxBackoffMillis :
+                    QmqHelper.DEFAULT_OUTBOX_MAX_BACKOFF_MILLIS;
+        }
+
+        public void setMaxBackoffMillis(Long maxBackoffMillis) {
+            this.maxBackoffMillis = maxBackoffMillis;
+        }
+
+        public String getDeadLetterTableName() {
+            return StringUtils.hasText(deadLetterTableName) ? deadLetterTableName : null;
+        }
+
+        public void setDeadLetterTableName(String deadLetterTableName) {
+            this.deadLetterTableName = deadLetterTableName;
+        }
     }
-}
\ No newline at end of file
+}
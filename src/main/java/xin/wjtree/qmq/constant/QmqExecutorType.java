@@ -0,0 +1,16 @@
+package xin.wjtree.qmq.constant;
+
+/**
+ * 消费线程池类型
+ * @author Wang
+ */
+public enum QmqExecutorType {
+    /**
+     * 平台线程池，线程数及队列容量由 spring.qmq.consumer.* 配置
+     */
+    PLATFORM,
+    /**
+     * 每个任务一个虚拟线程，需要 JDK 21 及以上版本，不支持时使用平台线程池
+     */
+    VIRTUAL
+}
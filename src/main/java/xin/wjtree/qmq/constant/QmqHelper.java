@@ -55,6 +55,96 @@ public final class QmqHelper {
      */
     public static final long DEFAULT_SEND_TIMEOUT_MILLIS = 5000L;
 
+    /**
+     * 消息发送者属性：默认未收到回调的消息数量上限，0 表示不启用流量控制
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 0;
+
+    /**
+     * 消息发送者属性：自适应流量控制的未收到回调消息数量下限默认值
+     */
+    public static final int DEFAULT_MIN_IN_FLIGHT = 100;
+
+    /**
+     * 消息发送者属性：自适应流量控制的目标回调耗时默认值，单位：毫秒
+     */
+    public static final long DEFAULT_TARGET_ACK_LATENCY_MILLIS = 100L;
+
+    /**
+     * 消息发送者属性：默认消息发送者的池名称，用于指标标签，消息发送者池不能使用该名称
+     */
+    public static final String DEFAULT_POOL_NAME = "default";
+
+    /**
+     * 消息发送者属性：默认溢出队列大小
+     */
+    public static final int DEFAULT_SPILL_QUEUE_SIZE = 10000;
+
+    /**
+     * 消息发送者属性：本地溢出日志默认分段大小，单位：字节
+     */
+    public static final int DEFAULT_SPILL_LOG_SEGMENT_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * 消息发送者属性：本地溢出日志默认每批补发的消息数量
+     */
+    public static final int DEFAULT_SPILL_LOG_REPLAY_BATCH = 100;
+
+    /**
+     * 消息发送者属性：本地溢出日志默认补发间隔，单位：毫秒
+     */
+    public static final long DEFAULT_SPILL_LOG_REPLAY_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * 消息发送者属性：本地延迟阈值默认值，0 表示不启用，单位：毫秒
+     */
+    public static final long DEFAULT_LOCAL_DELAY_THRESHOLD_MILLIS = 0L;
+
+    /**
+     * 消息发送者属性：本地延迟时间轮默认刻度，单位：毫秒
+     */
+    public static final long DEFAULT_LOCAL_DELAY_TICK_MILLIS = 10L;
+
+    /**
+     * 消息发送者属性：字符串属性的最大字节数，超过时需使用 Message.setLargeString(key, value)
+     */
+    public static final int LARGE_STRING_BYTES = 32 * 1024;
+
+    /**
+     * 消息内容编解码器：整体序列化的消息内容属性名称
+     */
+    public static final String PAYLOAD_KEY = "_payload";
+
+    /**
+     * 消息内容编解码器：记录编解码器名称的属性名称
+     */
+    public static final String PAYLOAD_CODEC_KEY = "_codec";
+
+    /**
+     * 消息内容压缩：记录已压缩的属性名称的属性名称，多个名称以逗号分隔
+     */
+    public static final String COMPRESSED_KEY = "_compressed";
+
+    /**
+     * 消息发送模板属性：压缩阈值，单位：字节
+     */
+    public static final int DEFAULT_COMPRESS_THRESHOLD_BYTES = LARGE_STRING_BYTES;
+
+    /**
+     * 消息发送模板：缓存的主题发送句柄数量上限，超出后未配置的主题每次创建新的句柄，配置过的主题始终缓存
+     */
+    public static final int MAX_CACHED_HANDLES = 1024;
+
+    /**
+     * 消息发送指标：按主题区分的指标数量上限，超出后新的主题记录到 {@link #OTHER_METER_SUBJECT} 中
+     */
+    public static final int MAX_METER_SUBJECTS = 1024;
+
+    /**
+     * 消息发送指标：主题数量超出上限后使用的 subject 标签值
+     */
+    public static final String OTHER_METER_SUBJECT = "other";
+
     /**
      * 消息发送模板属性：默认消息发送主题
      */
@@ -84,4 +174,74 @@ public final class QmqHelper {
      * 消息接收者属性：默认消费线程池名称
      */
     public static final String EXECUTOR_NAME = "qmqExecutor";
+
+    /**
+     * 虚拟线程消费线程池默认最大并发数，0 表示不限制
+     */
+    public static final int DEFAULT_VIRTUAL_MAX_CONCURRENCY = 0;
+
+    /**
+     * 批量消费默认最长等待时间，单位：毫秒
+     */
+    public static final long DEFAULT_BATCH_WAIT_MILLIS = 100L;
+
+    /**
+     * 消费幂等缓存默认容量
+     */
+    public static final int DEFAULT_IDEMPOTENT_CACHE_SIZE = 65536;
+
+    /**
+     * 消费幂等缓存默认过期时间，单位：毫秒
+     */
+    public static final long DEFAULT_IDEMPOTENT_TTL_MILLIS = 10 * 60 * 1000L;
+
+    /**
+     * 内嵌模式属性：默认发送延迟，单位：毫秒
+     */
+    public static final long DEFAULT_EMBEDDED_SEND_LATENCY_MILLIS = 0L;
+
+    /**
+     * 内嵌模式属性：默认发送失败比例
+     */
+    public static final double DEFAULT_EMBEDDED_SEND_FAILURE_RATE = 0D;
+
+    /**
+     * 内嵌模式属性：默认消费失败后的重试间隔，单位：毫秒
+     */
+    public static final long DEFAULT_EMBEDDED_RETRY_DELAY_MILLIS = 1000L;
+
+    /**
+     * 内嵌模式属性：默认消费失败的最大重试次数
+     */
+    public static final int DEFAULT_EMBEDDED_MAX_RETRIES = 16;
+
+    /**
+     * 内嵌模式属性：默认调度线程数
+     */
+    public static final int DEFAULT_EMBEDDED_THREADS = 2;
+
+    /**
+     * 事务发件箱属性：默认表名
+     */
+    public static final String DEFAULT_OUTBOX_TABLE_NAME = "qmq_outbox";
+
+    /**
+     * 事务发件箱属性：默认每批转发的最大消息数量
+     */
+    public static final int DEFAULT_OUTBOX_RELAY_BATCH_SIZE = 500;
+
+    /**
+     * 事务发件箱属性：默认转发间隔，单位：毫秒
+     */
+    public static final long DEFAULT_OUTBOX_RELAY_INTERVAL_MILLIS = 1000L;
+
+    /**
+     * 事务发件箱属性：最大转发次数默认值，配置了死信表时失败次数达到该值的记录移入死信表
+     */
+    public static final int DEFAULT_OUTBOX_MAX_ATTEMPTS = 10;
+
+    /**
+     * 事务发件箱属性：失败重试的默认最大退避时间，单位：毫秒
+     */
+    public static final long DEFAULT_OUTBOX_MAX_BACKOFF_MILLIS = 60000L;
 }
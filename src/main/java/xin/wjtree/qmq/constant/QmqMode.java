@@ -0,0 +1,16 @@
+package xin.wjtree.qmq.constant;
+
+/**
+ * QMQ 运行模式
+ * @author Wang
+ */
+public enum QmqMode {
+    /**
+     * 连接 spring.qmq.meta-server 指定的 QMQ 服务端
+     */
+    SERVER,
+    /**
+     * 使用进程内的内存代理，不连接服务端，用于测试及压测
+     */
+    EMBEDDED
+}
@@ -0,0 +1,26 @@
+package xin.wjtree.qmq.constant;
+
+/**
+ * 未收到回调的消息数量达到上限时的处理策略
+ * @author Wang
+ */
+public enum QmqOverflowPolicy {
+    /**
+     * 阻塞等待发送许可，超时后抛出 QmqException
+     */
+    BLOCK,
+    /**
+     * 立即抛出 QmqException
+     */
+    FAIL_FAST,
+    /**
+     * 不占用发送许可直接提交，并在当前线程等待该消息的发送结果，以此降低调用方的发送速度；
+     * 不受 maxInFlight 限制，每个调用线程最多超出一条，等待超时后调用线程继续发送，持续过载时未收到回调的消息数量可能超过上限
+     */
+    CALLER_RUNS,
+    /**
+     * 暂存到溢出队列，有发送许可释放时按顺序补发；溢出队列已满时写入本地溢出日志并视为发送成功，
+     * 未配置本地溢出日志或写入失败时抛出 QmqException
+     */
+    SPILL
+}
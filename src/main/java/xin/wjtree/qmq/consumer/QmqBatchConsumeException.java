@@ -0,0 +1,35 @@
+package xin.wjtree.qmq.consumer;
+
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 批量消费部分失败，仅重试指定下标的消息，其余消息确认成功
+ * @author Wang
+ */
+public class QmqBatchConsumeException extends QmqException {
+    private static final long serialVersionUID = -2035176482941630752L;
+
+    /**
+     * 消费失败的消息在批次中的下标
+     */
+    private final Set<Integer> failedIndexes;
+
+    public QmqBatchConsumeException(Collection<Integer> failedIndexes) {
+        this(failedIndexes, null);
+    }
+
+    public QmqBatchConsumeException(Collection<Integer> failedIndexes, Throwable cause) {
+        super("QMQ 批量消费部分失败：" + failedIndexes, cause);
+        this.failedIndexes = failedIndexes != null ? Collections.unmodifiableSet(new HashSet<>(failedIndexes))
+                : Collections.emptySet();
+    }
+
+    public Set<Integer> getFailedIndexes() {
+        return failedIndexes;
+    }
+}
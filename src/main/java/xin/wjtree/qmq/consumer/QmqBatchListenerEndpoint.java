@@ -0,0 +1,234 @@
+package xin.wjtree.qmq.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import xin.wjtree.qmq.internal.QmqPayloadCodecs;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量消费的监听方法
+ * <ul>
+ *     <li>收到消息时关闭自动确认并加入当前批次，数量达到 batchSize 时在当前消费线程中调用监听方法</li>
+ *     <li>批次中第一条消息等待超过 batchWaitMillis 时，将批次提交到消费线程池处理</li>
+ *     <li>处理完成后逐条确认消息，解码失败或监听方法指定失败的消息单独重试</li>
+ *     <li>开启消费幂等时，批次中已处理过的消息直接确认成功，不传给监听方法</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqBatchListenerEndpoint extends QmqListenerEndpoint {
+    private static final Logger log = LoggerFactory.getLogger(QmqBatchListenerEndpoint.class);
+
+    /**
+     * 批量消费的最大消息数量
+     */
+    private final int batchSize;
+
+    /**
+     * 第一条消息的最长等待时间，单位：毫秒
+     */
+    private final long batchWaitMillis;
+
+    /**
+     * 批次超时定时器
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 当前批次，由 this 保护
+     */
+    private List<Message> batch;
+
+    /**
+     * 当前批次的超时任务，由 this 保护
+     */
+    private ScheduledFuture<?> timeout;
+
+    public QmqBatchListenerEndpoint(Object bean, Method method, Class<?> payloadType, String subject, String group,
+            String executorName, Executor executor, int batchSize, long batchWaitMillis,
+            ScheduledExecutorService scheduler) {
+        this(bean, method, payloadType, subject, group, executorName, executor, null, batchSize, batchWaitMillis,
+                scheduler);
+    }
+
+    public QmqBatchListenerEndpoint(Object bean, Method method, Class<?> payloadType, String subject, String group,
+            String executorName, Executor executor, QmqIdempotentCache idempotentCache, int batchSize,
+            long batchWaitMillis, ScheduledExecutorService scheduler) {
+        super(bean, method, payloadType, subject, group, executorName, executor, idempotentCache);
+        this.batchSize = batchSize;
+        this.batchWaitMillis = batchWaitMillis;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        // 处理完成批次后再逐条确认
+        message.autoAck(false);
+
+        List<Message> full = null;
+        synchronized (this) {
+            if (batch == null) {
+                List<Message> created = new ArrayList<>(batchSize);
+                batch = created;
+                timeout = scheduler.schedule(() -> flushOnTimeout(created), batchWaitMillis, TimeUnit.MILLISECONDS);
+            }
+            batch.add(message);
+            if (batch.size() >= batchSize) {
+                full = batch;
+                batch = null;
+                timeout.cancel(false);
+                timeout = null;
+            }
+        }
+
+        if (full != null) {
+            process(full);
+        }
+    }
+
+    /**
+     * 立即处理当前批次，应用关闭时调用
+     */
+    public void flush() {
+        List<Message> pending;
+        synchronized (this) {
+            pending = batch;
+            batch = null;
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+        }
+        if (pending != null) {
+            process(pending);
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getBatchWaitMillis() {
+        return batchWaitMillis;
+    }
+
+    /**
+     * 批次等待超时，提交到消费线程池处理
+     * @param expected 定时任务创建时的批次，已被处理时忽略
+     */
+    private void flushOnTimeout(List<Message> expected) {
+        synchronized (this) {
+            if (batch != expected) {
+                return;
+            }
+            batch = null;
+            timeout = null;
+        }
+
+        try {
+            getExecutor().execute(() -> process(expected));
+        } catch (RejectedExecutionException ex) {
+            // 消费线程池已满或已关闭，全部重试
+            ack(expected, null, 0L, ex);
+        }
+    }
+
+    /**
+     * 调用监听方法处理批次，并逐条确认消息
+     * @param messages 批次中的消息
+     */
+    private void process(List<Message> messages) {
+        long start = System.currentTimeMillis();
+
+        if (idempotentCache != null) {
+            messages = filterDuplicates(messages);
+            if (messages.isEmpty()) {
+                return;
+            }
+        }
+
+        // 解码失败的消息单独重试，不传给监听方法
+        List<Message> accepted = messages;
+        List<Object> arguments;
+        if (payloadType == null) {
+            arguments = Collections.unmodifiableList(new ArrayList<>(messages));
+        } else {
+            accepted = new ArrayList<>(messages.size());
+            arguments = new ArrayList<>(messages.size());
+            for (Message message : messages) {
+                try {
+                    arguments.add(QmqPayloadCodecs.decode(message, payloadType));
+                    accepted.add(message);
+                } catch (RuntimeException ex) {
+                    log.warn("QMQ batch message decode failed, messageId: {}, listener: {}", message.getMessageId(),
+                            getName(), ex);
+                    message.ack(System.currentTimeMillis() - start, ex);
+                }
+            }
+            if (accepted.isEmpty()) {
+                return;
+            }
+        }
+
+        Set<Integer> failedIndexes = null;
+        Throwable error = null;
+        try {
+            invoke(arguments);
+        } catch (QmqBatchConsumeException ex) {
+            failedIndexes = ex.getFailedIndexes();
+            error = ex.getCause() != null ? ex.getCause() : ex;
+        } catch (RuntimeException | Error ex) {
+            error = ex;
+        }
+        ack(accepted, failedIndexes, System.currentTimeMillis() - start, error);
+
+        if (idempotentCache != null) {
+            for (int i = 0; i < accepted.size(); i++) {
+                if (error == null || (failedIndexes != null && !failedIndexes.contains(i))) {
+                    idempotentCache.markProcessed(getSubject(), getGroup(), accepted.get(i).getMessageId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 确认并移除已处理过的消息
+     * @param messages 批次中的消息
+     * @return 未处理过的消息
+     */
+    private List<Message> filterDuplicates(List<Message> messages) {
+        List<Message> pending = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            if (isDuplicate(message)) {
+                message.ack(0L, null);
+            } else {
+                pending.add(message);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * 逐条确认消息
+     * @param messages 批次中的消息
+     * @param failedIndexes 失败的消息下标，为空时 error 不为空表示全部失败
+     * @param elapsed 处理耗时，单位：毫秒
+     * @param error 处理异常，为空表示全部成功
+     */
+    private static void ack(List<Message> messages, Set<Integer> failedIndexes, long elapsed, Throwable error) {
+        for (int i = 0; i < messages.size(); i++) {
+            boolean failed = error != null && (failedIndexes == null || failedIndexes.contains(i));
+            messages.get(i).ack(elapsed, failed ? error : null);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package xin.wjtree.qmq.consumer;
+
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * QMQ 消费线程池
+ * <ul>
+ *     <li>统计拒绝任务数、任务排队耗时及执行耗时</li>
+ *     <li>支持运行时调整核心线程数、最大线程数及队列容量</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqConsumerExecutor extends ThreadPoolExecutor {
+    /**
+     * 可调整容量的任务队列
+     */
+    private final QmqResizableQueue<Runnable> queue;
+
+    /**
+     * 被拒绝的任务数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * 执行完成的任务数，与 waitNanos、executionNanos 对应
+     */
+    private final LongAdder timedCount = new LongAdder();
+
+    /**
+     * 任务排队总耗时，单位：纳秒
+     */
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * 任务执行总耗时，单位：纳秒
+     */
+    private final LongAdder executionNanos = new LongAdder();
+
+    public QmqConsumerExecutor(int corePoolSize, int maxPoolSize, int keepAliveSeconds,
+            QmqResizableQueue<Runnable> queue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maxPoolSize, keepAliveSeconds, TimeUnit.SECONDS, queue, threadFactory, handler);
+        this.queue = queue;
+        // 统计被拒绝的任务数后，再交给原拒绝策略处理
+        setRejectedExecutionHandler((task, executor) -> {
+            rejectedCount.increment();
+            handler.rejectedExecution(task, executor);
+        });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(new TimedTask(command));
+    }
+
+    /**
+     * 调整线程池大小及队列容量，参数为空时保持原值
+     * @param corePoolSize 核心线程数
+     * @param maxPoolSize 最大线程数
+     * @param queueCapacity 队列容量
+     */
+    public synchronized void resize(Integer corePoolSize, Integer maxPoolSize, Integer queueCapacity) {
+        int core = corePoolSize != null ? corePoolSize : getCorePoolSize();
+        int max = maxPoolSize != null ? maxPoolSize : getMaximumPoolSize();
+        if (core <= 0 || max < core) {
+            throw new QmqException("QMQ 消费线程池参数错误，corePoolSize：" + core + "，maxPoolSize：" + max);
+        }
+
+        // 扩容时先调整最大线程数，缩容时先调整核心线程数，避免出现 core > max
+        if (max >= getMaximumPoolSize()) {
+            setMaximumPoolSize(max);
+            setCorePoolSize(core);
+        } else {
+            setCorePoolSize(core);
+            setMaximumPoolSize(max);
+        }
+        if (queueCapacity != null) {
+            queue.setCapacity(queueCapacity);
+        }
+    }
+
+    public int getQueueCapacity() {
+        return queue.getCapacity();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    public long getTimedCount() {
+        return timedCount.sum();
+    }
+
+    public long getWaitNanos() {
+        return waitNanos.sum();
+    }
+
+    public long getExecutionNanos() {
+        return executionNanos.sum();
+    }
+
+    /**
+     * 获取线程池运行状态
+     * @return 线程池运行状态
+     */
+    public Map<String, Object> getStatistics() {
+        long count = getTimedCount();
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("corePoolSize", getCorePoolSize());
+        statistics.put("maxPoolSize", getMaximumPoolSize());
+        statistics.put("poolSize", getPoolSize());
+        statistics.put("activeCount", getActiveCount());
+        statistics.put("queueSize", queue.size());
+        statistics.put("queueCapacity", queue.getCapacity());
+        statistics.put("completedTaskCount", getCompletedTaskCount());
+        statistics.put("rejectedCount", getRejectedCount());
+        statistics.put("avgWaitMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(getWaitNanos() / count) : 0L);
+        statistics.put("avgExecutionMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(getExecutionNanos() / count) :
+                0L);
+        return statistics;
+    }
+
+    /**
+     * 记录排队耗时及执行耗时的任务
+     */
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long submitNanos = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+            waitNanos.add(startNanos - submitNanos);
+            try {
+                task.run();
+            } finally {
+                executionNanos.add(System.nanoTime() - startNanos);
+                timedCount.increment();
+            }
+        }
+    }
+}
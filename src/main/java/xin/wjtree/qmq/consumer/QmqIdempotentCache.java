@@ -0,0 +1,240 @@
+package xin.wjtree.qmq.consumer;
+
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消费幂等缓存，记录最近处理成功的消息，QmqListener 的 idempotent 为 true 时在调用监听方法前检查
+ * <ul>
+ *     <li>主题、消费分组、消息ID 计算为 64 位指纹，保存在分段的 long 数组中，每条记录 16 字节，不创建对象</li>
+ *     <li>分段加锁，段内开放寻址，最多探测 8 个位置；没有空位时覆盖已过期或最早过期的记录，位置数量固定为容量的 2 倍</li>
+ *     <li>配置了 {@link QmqIdempotentStore} 时，缓存未命中再查询存储，处理成功后同时写入存储</li>
+ *     <li>不同消息的指纹相同时会被误判为已处理，概率约为 记录数 / 2^64，可忽略</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqIdempotentCache {
+    /**
+     * 分段数量
+     */
+    private static final int STRIPES = 16;
+
+    /**
+     * 段内最多探测的位置数量
+     */
+    private static final int PROBES = 8;
+
+    private final Stripe[] stripes;
+
+    /**
+     * 记录过期时间，单位：毫秒
+     */
+    private final long ttlMillis;
+
+    /**
+     * 持久化存储，为空表示只使用缓存
+     */
+    private final QmqIdempotentStore store;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder storeHitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    public QmqIdempotentCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, null);
+    }
+
+    public QmqIdempotentCache(int maxSize, long ttlMillis, QmqIdempotentStore store) {
+        if (maxSize <= 0 || ttlMillis <= 0) {
+            throw new QmqException("QMQ 消费幂等缓存的容量及过期时间必须大于 0");
+        }
+        // 位置数量取容量的 2 倍，负载不超过一半，避免探测窗口占满后过早覆盖；每段取 2 的幂，不小于 PROBES
+        long slots = Math.min(1 << 26, Math.max(1L, (maxSize * 2L - 1) / STRIPES));
+        int stripeSize = Math.max(PROBES, Integer.highestOneBit((int) slots) << 1);
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeSize);
+        }
+        this.ttlMillis = ttlMillis;
+        this.store = store;
+    }
+
+    /**
+     * 消息是否已处理，依次查询缓存、持久化存储
+     * @param subject 消息主题
+     * @param group 消费分组
+     * @param messageId 消息ID
+     * @return true or false
+     */
+    public boolean isProcessed(String subject, String group, String messageId) {
+        long fingerprint = fingerprint(subject, group, messageId);
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripe(fingerprint);
+        if (stripe.contains(fingerprint, now)) {
+            hitCount.increment();
+            return true;
+        }
+        if (store != null && store.isProcessed(subject, group, messageId)) {
+            storeHitCount.increment();
+            put(stripe, fingerprint, now);
+            return true;
+        }
+        missCount.increment();
+        return false;
+    }
+
+    /**
+     * 记录消息已处理，依次写入缓存、持久化存储
+     * @param subject 消息主题
+     * @param group 消费分组
+     * @param messageId 消息ID
+     */
+    public void markProcessed(String subject, String group, String messageId) {
+        long fingerprint = fingerprint(subject, group, messageId);
+        put(stripe(fingerprint), fingerprint, System.currentTimeMillis());
+        if (store != null) {
+            store.markProcessed(subject, group, messageId);
+        }
+    }
+
+    /**
+     * 获取缓存的位置数量，约为配置容量的 2 倍
+     * @return 位置数量
+     */
+    public int getCapacity() {
+        return stripes.length * stripes[0].keys.length;
+    }
+
+    /**
+     * 获取缓存命中次数
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * 获取缓存未命中、持久化存储命中的次数
+     * @return 命中次数
+     */
+    public long getStoreHitCount() {
+        return storeHitCount.sum();
+    }
+
+    /**
+     * 获取缓存及持久化存储均未命中的次数
+     * @return 未命中次数
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * 获取未过期即被覆盖的记录数量，持续增长时应调大 spring.qmq.consumer.idempotent-cache-size
+     * @return 记录数量
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private Stripe stripe(long fingerprint) {
+        return stripes[(int) (fingerprint >>> 32) & (STRIPES - 1)];
+    }
+
+    private void put(Stripe stripe, long fingerprint, long now) {
+        if (stripe.put(fingerprint, now + ttlMillis, now)) {
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * 计算 64 位指纹，0 保留表示空位
+     * @param subject 消息主题
+     * @param group 消费分组
+     * @param messageId 消息ID
+     * @return 指纹
+     */
+    static long fingerprint(String subject, String group, String messageId) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, subject);
+        hash = hash(hash, group);
+        hash = hash(hash, messageId);
+        // MurmurHash3 fmix64，打散低位
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1L;
+    }
+
+    /**
+     * FNV-1a，按字符累加，末尾加入长度区分不同的拼接方式
+     */
+    private static long hash(long hash, String value) {
+        int length = value != null ? value.length() : -1;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash ^ length) * 0x100000001b3L;
+    }
+
+    /**
+     * 缓存分段，keys 为 0 表示空位
+     */
+    private static final class Stripe {
+        private final long[] keys;
+
+        private final long[] expires;
+
+        private final int mask;
+
+        Stripe(int size) {
+            this.keys = new long[size];
+            this.expires = new long[size];
+            this.mask = size - 1;
+        }
+
+        synchronized boolean contains(long fingerprint, long now) {
+            int index = (int) fingerprint;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (index + i) & mask;
+                if (keys[slot] == fingerprint) {
+                    return expires[slot] > now;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 写入记录，已存在时更新过期时间，否则占用空位、已过期或最早过期的位置
+         * @return 是否覆盖了未过期的记录
+         */
+        synchronized boolean put(long fingerprint, long expireAt, long now) {
+            int index = (int) fingerprint;
+            int victim = -1;
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (index + i) & mask;
+                if (keys[slot] == fingerprint) {
+                    expires[slot] = expireAt;
+                    return false;
+                }
+                long expire = keys[slot] == 0L ? Long.MIN_VALUE : expires[slot];
+                if (expire < oldest) {
+                    oldest = expire;
+                    victim = slot;
+                }
+            }
+            boolean evicted = keys[victim] != 0L && oldest > now;
+            keys[victim] = fingerprint;
+            expires[victim] = expireAt;
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package xin.wjtree.qmq.consumer;
+
+/**
+ * 消费幂等记录的持久化存储，注册为 Bean 后由 {@link QmqIdempotentCache} 使用
+ * <ul>
+ *     <li>缓存未命中时才查询存储，查询到已处理的消息会写回缓存</li>
+ *     <li>消息处理成功后先写缓存再写存储，可使用数据库唯一索引、Redis SETNX 等实现</li>
+ *     <li>方法在消费线程中调用，需要线程安全</li>
+ * </ul>
+ * @author Wang
+ */
+public interface QmqIdempotentStore {
+    /**
+     * 消息是否已处理
+     * @param subject 消息主题
+     * @param group 消费分组
+     * @param messageId 消息ID
+     * @return true or false
+     */
+    boolean isProcessed(String subject, String group, String messageId);
+
+    /**
+     * 记录消息已处理
+     * @param subject 消息主题
+     * @param group 消费分组
+     * @param messageId 消息ID
+     */
+    void markProcessed(String subject, String group, String messageId);
+}
@@ -0,0 +1,63 @@
+package xin.wjtree.qmq.consumer;
+
+import xin.wjtree.qmq.constant.QmqHelper;
+
+import java.lang.annotation.*;
+
+/**
+ * 消息监听方法，方法必须只有一个 {@link qunar.tc.qmq.Message} 或实体类类型的参数
+ * <ul>
+ *     <li>参数为实体类时，通过 {@link xin.wjtree.qmq.internal.QmqPayloadCodecs#decode(qunar.tc.qmq.Message, Class)} 按消息记录的编解码器转换消息</li>
+ *     <li>subject、group 支持 ${} 占位符，并优先使用 spring.qmq.subject.*、spring.qmq.group.* 中配置的别名</li>
+ *     <li>concurrency 大于 0 时为该监听方法创建独立的消费线程池，避免处理缓慢的主题占满共享的 qmqExecutor</li>
+ *     <li>batchSize 大于 1 时开启批量消费，参数为 {@code List<Message>} 或 {@code List<实体类>}，
+ *     消息数量达到 batchSize 或等待超过 batchWaitMillis 时调用一次监听方法</li>
+ *     <li>idempotent 为 true 时通过 {@link QmqIdempotentCache} 跳过最近已处理成功的重复消息</li>
+ *     <li>需要通过 {@code @EnableQmq} 启用消费者模式</li>
+ * </ul>
+ * @author Wang
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QmqListener {
+    /**
+     * 消息主题或主题别名
+     * @return 消息主题
+     */
+    String subject();
+
+    /**
+     * 消费分组或分组别名
+     * @return 消费分组
+     */
+    String group();
+
+    /**
+     * 独立消费线程池的线程数，默认 0 表示使用共享的 qmqExecutor
+     * @return 线程数
+     */
+    int concurrency() default 0;
+
+    /**
+     * 批量消费的最大消息数量，默认 1 表示逐条消费
+     * <p>批量消费时按消息逐条确认：监听方法正常返回时全部确认成功，抛出异常时全部重试，
+     * 抛出 {@link QmqBatchConsumeException} 时仅重试其中指定的消息</p>
+     * @return 最大消息数量
+     */
+    int batchSize() default 1;
+
+    /**
+     * 批量消费时第一条消息的最长等待时间，默认 100，单位：毫秒
+     * @return 最长等待时间
+     */
+    long batchWaitMillis() default QmqHelper.DEFAULT_BATCH_WAIT_MILLIS;
+
+    /**
+     * 是否跳过最近已处理成功的重复消息，默认 false
+     * <p>按主题、消费分组、消息ID 判断，缓存容量及过期时间见 spring.qmq.consumer.idempotent-*，
+     * 需要跨重启或跨实例去重时注册 {@link QmqIdempotentStore}</p>
+     * @return true or false
+     */
+    boolean idempotent() default false;
+}
@@ -0,0 +1,272 @@
+package xin.wjtree.qmq.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+import qunar.tc.qmq.ListenerHolder;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageConsumer;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.constant.QmqHelper;
+import xin.wjtree.qmq.embedded.QmqEmbeddedBroker;
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 扫描 {@link QmqListener} 注解修饰的方法，并注册到 {@link MessageConsumer}
+ * <ul>
+ *     <li>实例初始化后解析主题、消费分组，concurrency 大于 0 时创建独立的 {@link QmqConsumerExecutor} 并注册为单例，
+ *     名称为 qmqExecutor.[beanName].[方法名]，可通过消费线程池指标及端点查看和调整</li>
+ *     <li>batchSize 大于 1 时创建 {@link QmqBatchListenerEndpoint}，批次超时由共享的单线程定时器触发</li>
+ *     <li>idempotent 为 true 时使用容器中共享的 {@link QmqIdempotentCache}</li>
+ *     <li>所有单例初始化完成后统一注册监听方法，此时才获取 {@link MessageConsumer}</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqListenerAnnotationBeanPostProcessor implements BeanPostProcessor, BeanFactoryAware,
+        SmartInitializingSingleton, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(QmqListenerAnnotationBeanPostProcessor.class);
+
+    private ConfigurableListableBeanFactory beanFactory;
+
+    /**
+     * 待注册的监听方法
+     */
+    private final List<QmqListenerEndpoint> endpoints = new ArrayList<>();
+
+    /**
+     * 已注册的监听
+     */
+    private final List<ListenerHolder> holders = new ArrayList<>();
+
+    /**
+     * 独立消费线程池的工厂类，销毁时关闭线程池
+     */
+    private final List<QmqThreadPoolExecutorFactoryBean> executorFactories = new ArrayList<>();
+
+    /**
+     * 批量消费的超时定时器，存在批量消费方法时创建
+     */
+    private ScheduledExecutorService batchScheduler;
+
+    @Override
+    public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+        if (!(beanFactory instanceof ConfigurableListableBeanFactory)) {
+            throw new QmqException("QmqListener 需要 ConfigurableListableBeanFactory，实际：" + beanFactory);
+        }
+        this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        Class<?> targetClass = AopUtils.getTargetClass(bean);
+        Map<Method, QmqListener> methods = MethodIntrospector.selectMethods(targetClass,
+                (MethodIntrospector.MetadataLookup<QmqListener>) method -> AnnotatedElementUtils
+                        .findMergedAnnotation(method, QmqListener.class));
+
+        methods.forEach((method, listener) -> endpoints.add(createEndpoint(bean, beanName, method, listener)));
+        return bean;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (endpoints.isEmpty()) {
+            return;
+        }
+
+        // 内嵌模式没有 MessageConsumer，监听器注册到内存代理
+        MessageConsumer consumer = beanFactory.getBeanProvider(MessageConsumer.class).getIfAvailable();
+        QmqEmbeddedBroker broker = consumer == null ?
+                beanFactory.getBeanProvider(QmqEmbeddedBroker.class).getIfAvailable() : null;
+        if (consumer == null && broker == null) {
+            throw new QmqException("QmqListener 需要 MessageConsumer，请使用 @EnableQmq 启用消费者模式，或使用内嵌模式");
+        }
+
+        for (QmqListenerEndpoint endpoint : endpoints) {
+            holders.add(consumer != null ?
+                    consumer.addListener(endpoint.getSubject(), endpoint.getGroup(), endpoint, endpoint.getExecutor()) :
+                    broker.addListener(endpoint.getSubject(), endpoint.getGroup(), endpoint, endpoint.getExecutor()));
+
+            if (log.isDebugEnabled()) {
+                log.debug("Register QmqListener Success, method: {}, subject: {}, group: {}, executor: {}",
+                        endpoint.getName(), endpoint.getSubject(), endpoint.getGroup(), endpoint.getExecutorName());
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        holders.forEach(ListenerHolder::stopListen);
+        // 停止监听后处理未满的批次，再关闭定时器及消费线程池
+        for (QmqListenerEndpoint endpoint : endpoints) {
+            if (endpoint instanceof QmqBatchListenerEndpoint) {
+                ((QmqBatchListenerEndpoint) endpoint).flush();
+            }
+        }
+        if (batchScheduler != null) {
+            batchScheduler.shutdownNow();
+        }
+        executorFactories.forEach(QmqThreadPoolExecutorFactoryBean::destroy);
+    }
+
+    /**
+     * 解析监听方法的主题、消费分组及消费线程池
+     * @param bean 监听方法所在的实例
+     * @param beanName 实例名称
+     * @param method 监听方法
+     * @param listener 注解
+     * @return {@link QmqListenerEndpoint}
+     */
+    private QmqListenerEndpoint createEndpoint(Object bean, String beanName, Method method, QmqListener listener) {
+        boolean batch = listener.batchSize() > 1;
+        Class<?> messageType = getMessageType(method, batch);
+        if (Modifier.isStatic(method.getModifiers()) || messageType == null || isUnsupportedParameter(messageType)) {
+            String parameter = batch ? "List<Message> 或 List<实体类>" : "Message 或实体类";
+            throw new QmqException("QmqListener 方法必须是实例方法，且只有一个 " + parameter + " 类型的参数：" + method);
+        }
+        if (batch && listener.batchWaitMillis() <= 0) {
+            throw new QmqException("QmqListener 的 batchWaitMillis 必须大于 0：" + method);
+        }
+        Class<?> payloadType = messageType == Message.class ? null : messageType;
+
+        QmqProperties properties = beanFactory.getBean(QmqProperties.class);
+        String subject = resolve(listener.subject(), properties.getSubject());
+        String group = resolve(listener.group(), properties.getGroup());
+        if (!StringUtils.hasText(subject) || !StringUtils.hasText(group)) {
+            throw new QmqException("QmqListener 的主题及消费分组不能为空：" + method);
+        }
+
+        // 代理对象上调用方法，保留事务等切面
+        Method invocableMethod = AopUtils.selectInvocableMethod(method, bean.getClass());
+        ReflectionUtils.makeAccessible(invocableMethod);
+
+        String executorName;
+        Executor executor;
+        if (listener.concurrency() > 0) {
+            executorName = QmqHelper.EXECUTOR_NAME + "." + beanName + "." + method.getName();
+            executor = createExecutor(executorName, subject, listener.concurrency(), properties.getConsumer());
+        } else {
+            executorName = QmqHelper.EXECUTOR_NAME;
+            if (!beanFactory.containsBean(executorName)) {
+                throw new QmqException("QmqListener 未找到消费线程池 " + executorName + "，请使用 @EnableQmq 启用消费者模式");
+            }
+            executor = beanFactory.getBean(executorName, Executor.class);
+        }
+        QmqIdempotentCache idempotentCache = null;
+        if (listener.idempotent()) {
+            idempotentCache = beanFactory.getBeanProvider(QmqIdempotentCache.class).getIfAvailable();
+            if (idempotentCache == null) {
+                throw new QmqException("QmqListener 未找到消费幂等缓存 QmqIdempotentCache，请使用 @EnableQmq 启用消费者模式");
+            }
+        }
+        if (batch) {
+            return new QmqBatchListenerEndpoint(bean, invocableMethod, payloadType, subject, group, executorName, executor,
+                    idempotentCache, listener.batchSize(), listener.batchWaitMillis(), getBatchScheduler());
+        }
+        return new QmqListenerEndpoint(bean, invocableMethod, payloadType, subject, group, executorName, executor,
+                idempotentCache);
+    }
+
+    /**
+     * 获取监听方法接收的消息类型，批量消费时为 List 的元素类型
+     * @param method 监听方法
+     * @param batch 是否批量消费
+     * @return 消息类型，参数不符合要求时返回 null
+     */
+    private static Class<?> getMessageType(Method method, boolean batch) {
+        if (method.getParameterCount() != 1) {
+            return null;
+        }
+        if (!batch) {
+            return method.getParameterTypes()[0];
+        }
+        Class<?> parameterType = method.getParameterTypes()[0];
+        if (parameterType != List.class && parameterType != Collection.class && parameterType != Iterable.class) {
+            return null;
+        }
+        return ResolvableType.forMethodParameter(method, 0).as(Iterable.class).resolveGeneric(0);
+    }
+
+    /**
+     * 获取批量消费的超时定时器，首次使用时创建
+     * @return {@link ScheduledExecutorService}
+     */
+    private ScheduledExecutorService getBatchScheduler() {
+        if (batchScheduler == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("qmq-batch-timer-");
+            threadFactory.setDaemon(true);
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+        return batchScheduler;
+    }
+
+    /**
+     * 创建监听方法独立的消费线程池，并注册为单例
+     * @param executorName 线程池名称
+     * @param subject 消息主题
+     * @param concurrency 线程数
+     * @param prop 消息接收者配置
+     * @return {@link QmqConsumerExecutor}
+     */
+    private Executor createExecutor(String executorName, String subject, int concurrency,
+            QmqProperties.Consumer prop) {
+        QmqThreadPoolExecutorFactoryBean factory = new QmqThreadPoolExecutorFactoryBean();
+        factory.setCorePoolSize(concurrency);
+        factory.setMaxPoolSize(concurrency);
+        factory.setQueueCapacity(prop.getQueueCapacity());
+        factory.setThreadNamePrefix(prop.getThreadNamePrefix() + "-" + subject + "-");
+        factory.setBeanName(executorName);
+        factory.afterPropertiesSet();
+        executorFactories.add(factory);
+
+        Executor executor = factory.getObject();
+        beanFactory.registerSingleton(executorName, executor);
+        return executor;
+    }
+
+    /**
+     * 参数只能是 {@link Message} 或实体类，不能是 Message 的其他实现类、基本类型、Map 等
+     * @param parameterType 参数类型
+     * @return true or false
+     */
+    private static boolean isUnsupportedParameter(Class<?> parameterType) {
+        return parameterType != Message.class && (Message.class.isAssignableFrom(parameterType)
+                || BeanUtils.isSimpleProperty(parameterType) || Map.class.isAssignableFrom(parameterType)
+                || parameterType.isInterface());
+    }
+
+    /**
+     * 解析占位符，并优先使用配置的别名
+     * @param value 注解属性值
+     * @param aliases 别名配置
+     * @return 解析后的值
+     */
+    private String resolve(String value, Map<String, String> aliases) {
+        String resolved = beanFactory.resolveEmbeddedValue(value);
+        String alias = resolved != null ? aliases.get(resolved) : null;
+        return StringUtils.hasText(alias) ? alias : resolved;
+    }
+}
@@ -0,0 +1,158 @@
+package xin.wjtree.qmq.consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageListener;
+import xin.wjtree.qmq.internal.QmqException;
+import xin.wjtree.qmq.internal.QmqPayloadCodecs;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link QmqListener} 注解修饰的监听方法，已解析主题、消费分组及消费线程池
+ * @author Wang
+ */
+public class QmqListenerEndpoint implements MessageListener {
+    private static final Logger log = LoggerFactory.getLogger(QmqListenerEndpoint.class);
+
+    /**
+     * 监听方法所在的实例
+     */
+    private final Object bean;
+
+    /**
+     * 监听方法
+     */
+    private final Method method;
+
+    /**
+     * 参数为实体类时的实体类类型，按消息中记录的编解码器解码，参数为 {@link Message} 时为空
+     */
+    protected final Class<?> payloadType;
+
+    /**
+     * 消息主题
+     */
+    private final String subject;
+
+    /**
+     * 消费分组
+     */
+    private final String group;
+
+    /**
+     * 消费线程池名称
+     */
+    private final String executorName;
+
+    /**
+     * 消费线程池
+     */
+    private final Executor executor;
+
+    /**
+     * 消费幂等缓存，为空表示不检查重复消息
+     */
+    protected final QmqIdempotentCache idempotentCache;
+
+    public QmqListenerEndpoint(Object bean, Method method, Class<?> payloadType, String subject, String group,
+            String executorName, Executor executor) {
+        this(bean, method, payloadType, subject, group, executorName, executor, null);
+    }
+
+    public QmqListenerEndpoint(Object bean, Method method, Class<?> payloadType, String subject, String group,
+            String executorName, Executor executor, QmqIdempotentCache idempotentCache) {
+        this.bean = bean;
+        this.method = method;
+        this.payloadType = payloadType;
+        this.subject = subject;
+        this.group = group;
+        this.executorName = executorName;
+        this.executor = executor;
+        this.idempotentCache = idempotentCache;
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        if (idempotentCache == null) {
+            invoke(payloadType != null ? QmqPayloadCodecs.decode(message, payloadType) : message);
+            return;
+        }
+
+        // 已处理过的重复消息直接确认成功，处理成功后再记录，失败重试的消息不受影响
+        if (isDuplicate(message)) {
+            return;
+        }
+        invoke(payloadType != null ? QmqPayloadCodecs.decode(message, payloadType) : message);
+        idempotentCache.markProcessed(subject, group, message.getMessageId());
+    }
+
+    /**
+     * 检查消息是否已处理过
+     * @param message 消息对象
+     * @return true or false
+     */
+    protected boolean isDuplicate(Message message) {
+        if (!idempotentCache.isProcessed(subject, group, message.getMessageId())) {
+            return false;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("QMQ duplicate message skipped, messageId: {}, subject: {}, group: {}, listener: {}",
+                    message.getMessageId(), subject, group, getName());
+        }
+        return true;
+    }
+
+    /**
+     * 调用监听方法
+     * @param argument 方法参数
+     */
+    protected void invoke(Object argument) {
+        try {
+            method.invoke(bean, argument);
+        } catch (InvocationTargetException ex) {
+            // 抛出监听方法的原始异常，由 QMQ 记录消费失败并重试
+            Throwable target = ex.getTargetException();
+            if (target instanceof RuntimeException) {
+                throw (RuntimeException) target;
+            }
+            if (target instanceof Error) {
+                throw (Error) target;
+            }
+            throw new QmqException("QMQ 消息监听方法执行出错：" + getName(), target);
+        } catch (IllegalAccessException ex) {
+            throw new QmqException("QMQ 消息监听方法无法访问：" + getName(), ex);
+        }
+    }
+
+    /**
+     * 获取监听方法名称
+     * @return 类名.方法名
+     */
+    public String getName() {
+        return method.getDeclaringClass().getName() + "." + method.getName();
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getExecutorName() {
+        return executorName;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public QmqIdempotentCache getIdempotentCache() {
+        return idempotentCache;
+    }
+}
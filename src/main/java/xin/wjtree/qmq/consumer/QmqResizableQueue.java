@@ -0,0 +1,53 @@
+package xin.wjtree.qmq.consumer;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支持运行时调整容量的任务队列
+ * <ul>
+ *     <li>线程池只通过 offer 方法提交任务，因此仅在 offer 时校验容量</li>
+ *     <li>缩小容量时不会移除已入队的任务，队列长度降到新容量以下后才接受新任务</li>
+ * </ul>
+ * @param <E> 元素类型
+ * @author Wang
+ */
+public class QmqResizableQueue<E> extends LinkedBlockingQueue<E> {
+    private static final long serialVersionUID = 4786396522183693734L;
+
+    /**
+     * 队列容量
+     */
+    private volatile int capacity;
+
+    public QmqResizableQueue(int capacity) {
+        super();
+        setCapacity(capacity);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        return size() < capacity && super.offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        return size() < capacity && super.offer(e, timeout, unit);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+    }
+}
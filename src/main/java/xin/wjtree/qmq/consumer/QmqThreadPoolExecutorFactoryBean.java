@@ -0,0 +1,30 @@
+package xin.wjtree.qmq.consumer;
+
+import org.springframework.scheduling.concurrent.ThreadPoolExecutorFactoryBean;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 创建 {@link QmqConsumerExecutor} 的工厂类，线程命名、拒绝策略及关闭方式与 {@link ThreadPoolExecutorFactoryBean} 一致
+ * @author Wang
+ */
+public class QmqThreadPoolExecutorFactoryBean extends ThreadPoolExecutorFactoryBean {
+    private static final long serialVersionUID = -6129453187722516617L;
+
+    @Override
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        return new QmqResizableQueue<>(queueCapacity);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected ThreadPoolExecutor createExecutor(int corePoolSize, int maxPoolSize, int keepAliveSeconds,
+            BlockingQueue<Runnable> queue, ThreadFactory threadFactory,
+            RejectedExecutionHandler rejectedExecutionHandler) {
+        return new QmqConsumerExecutor(corePoolSize, maxPoolSize, keepAliveSeconds, (QmqResizableQueue<Runnable>) queue,
+                threadFactory, rejectedExecutionHandler);
+    }
+}
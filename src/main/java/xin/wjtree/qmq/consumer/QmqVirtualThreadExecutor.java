@@ -0,0 +1,144 @@
+package xin.wjtree.qmq.consumer;
+
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于虚拟线程的 QMQ 消费线程池
+ * <ul>
+ *     <li>每个任务使用一个新的虚拟线程执行，适合调用数据库、HTTP 服务等 I/O 密集型消费者</li>
+ *     <li>maxConcurrency 大于 0 时限制同时执行的任务数，提交任务前在调用线程中获取并发许可，
+ *     达到上限时阻塞 QMQ 拉取线程，不再拉取新消息，不会堆积等待许可的虚拟线程</li>
+ *     <li>通过反射创建虚拟线程，编译及运行于 Java 8 时不会报错，使用前请调用 {@link #isSupported()} 判断</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqVirtualThreadExecutor extends AbstractExecutorService {
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     */
+    private static final boolean SUPPORTED = createThreadFactory("qmq-probe-") != null;
+
+    /**
+     * 每个任务一个虚拟线程的线程池
+     */
+    private final ExecutorService delegate;
+
+    /**
+     * 并发限制，为空时不限制
+     */
+    private final Semaphore limiter;
+
+    public QmqVirtualThreadExecutor(String threadNamePrefix, int maxConcurrency) {
+        ThreadFactory threadFactory = createThreadFactory(threadNamePrefix);
+        if (threadFactory == null) {
+            throw new QmqException("当前 JDK 不支持虚拟线程");
+        }
+        this.delegate = newThreadPerTaskExecutor(threadFactory);
+        this.limiter = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     * @return true or false
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (limiter == null) {
+            delegate.execute(command);
+            return;
+        }
+
+        if (delegate.isShutdown()) {
+            throw new RejectedExecutionException("QMQ 虚拟线程消费线程池已关闭");
+        }
+        // 在提交任务的线程中等待并发许可，消费者处理不过来时阻塞拉取线程，形成背压
+        try {
+            limiter.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("QMQ 等待虚拟线程并发许可被中断", ex);
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    limiter.release();
+                }
+            });
+        } catch (RuntimeException ex) {
+            limiter.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 通过反射调用 Thread.ofVirtual().name(prefix, 0).factory()
+     * @param threadNamePrefix 线程名称前缀
+     * @return 虚拟线程工厂，不支持虚拟线程时返回 null
+     */
+    private static ThreadFactory createThreadFactory(String threadNamePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            // Java 21 以下版本没有 Thread.ofVirtual，或者预览特性未开启
+            return null;
+        }
+    }
+
+    /**
+     * 通过反射调用 Executors.newThreadPerTaskExecutor(threadFactory)
+     * @param threadFactory 虚拟线程工厂
+     * @return 每个任务一个线程的线程池
+     */
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        try {
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (ReflectiveOperationException ex) {
+            throw new QmqException("当前 JDK 不支持虚拟线程", ex);
+        }
+    }
+}
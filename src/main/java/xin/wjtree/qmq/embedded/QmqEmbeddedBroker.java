@@ -0,0 +1,311 @@
+package xin.wjtree.qmq.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import qunar.tc.qmq.ListenerHolder;
+import qunar.tc.qmq.MessageListener;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.io.Closeable;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内的内存代理，spring.qmq.mode 为 embedded 时代替 QMQ 服务端，用于测试及压测
+ * <ul>
+ *     <li>每个消费分组收到一份消息副本，同一分组的多个监听器轮流消费；分组只能收到注册之后发送的消息</li>
+ *     <li>支持消息标签及延迟消息，消费失败按 retryDelayMillis 间隔重试，超过 maxRetries 次后丢弃</li>
+ *     <li>消息只保存在内存中，应用关闭后未消费的消息全部丢失</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqEmbeddedBroker implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(QmqEmbeddedBroker.class);
+
+    /**
+     * 调度线程，负责发送回调、延迟消息及重试
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final QmqEmbeddedMessageProducer producer;
+
+    /**
+     * 消费失败后的重试间隔，单位：毫秒
+     */
+    private final long retryDelayMillis;
+
+    /**
+     * 消费失败的最大重试次数
+     */
+    private final int maxRetries;
+
+    /**
+     * 主题 -> 消费分组 -> 订阅
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Subscription>> subscriptions =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder sentCount = new LongAdder();
+
+    private final LongAdder sendFailedCount = new LongAdder();
+
+    private final LongAdder consumedCount = new LongAdder();
+
+    private final LongAdder retriedCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    public QmqEmbeddedBroker(QmqProperties.Embedded config, int maxQueueSize) {
+        this.retryDelayMillis = config.getRetryDelayMillis();
+        this.maxRetries = config.getMaxRetries();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("qmq-embedded-");
+        threadFactory.setDaemon(true);
+        this.scheduler = new ScheduledThreadPoolExecutor(config.getThreads(), threadFactory);
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.producer = new QmqEmbeddedMessageProducer(this, maxQueueSize, config.getSendLatencyMillis(),
+                config.getSendFailureRate());
+    }
+
+    /**
+     * 获取消息发送者
+     * @return {@link QmqEmbeddedMessageProducer}
+     */
+    public MessageProducer getProducer() {
+        return producer;
+    }
+
+    /**
+     * 注册消息监听器，与 {@link qunar.tc.qmq.MessageConsumer} 的同名方法一致
+     * @param subject 消息主题
+     * @param group 消费分组
+     * @param listener 消息监听器
+     * @param executor 消费线程池
+     * @return {@link ListenerHolder}
+     */
+    public ListenerHolder addListener(String subject, String group, MessageListener listener, Executor executor) {
+        if (listener == null || executor == null) {
+            throw new QmqException("QMQ 内嵌模式的消息监听器及消费线程池不能为空");
+        }
+        Subscription subscription = subscriptions.computeIfAbsent(subject, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(group, key -> new Subscription(subject, group));
+        Registration registration = new Registration(listener, executor);
+        subscription.registrations.add(registration);
+
+        if (log.isDebugEnabled()) {
+            log.debug("QMQ embedded listener registered, subject: {}, group: {}", subject, group);
+        }
+        return registration;
+    }
+
+    /**
+     * 发送成功的消息投递给主题下的所有消费分组
+     * @param message 消息对象
+     */
+    void publish(BaseMessage message) {
+        sentCount.increment();
+        ConcurrentMap<String, Subscription> groups = subscriptions.get(message.getSubject());
+        if (groups == null || groups.isEmpty()) {
+            return;
+        }
+
+        // 复制一份，发送后修改原消息不影响消费
+        BaseMessage snapshot = new BaseMessage(message.getMessageId(), message.getSubject());
+        QmqEmbeddedMessage.copy(message, snapshot);
+
+        Date receiveTime = message.getScheduleReceiveTime();
+        long delayMillis = receiveTime != null ? receiveTime.getTime() - System.currentTimeMillis() : 0L;
+        for (Subscription subscription : groups.values()) {
+            if (delayMillis > 0) {
+                schedule(() -> subscription.deliver(snapshot, 1), delayMillis);
+            } else {
+                subscription.deliver(snapshot, 1);
+            }
+        }
+    }
+
+    void recordSendFailed() {
+        sendFailedCount.increment();
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 获取发送成功的消息数量
+     * @return 消息数量
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * 获取发送失败的消息数量，包括发送队列已满及按比例模拟失败的消息
+     * @return 消息数量
+     */
+    public long getSendFailedCount() {
+        return sendFailedCount.sum();
+    }
+
+    /**
+     * 获取消费成功的次数，每个消费分组分别计数
+     * @return 消费次数
+     */
+    public long getConsumedCount() {
+        return consumedCount.sum();
+    }
+
+    /**
+     * 获取消费失败后重试的次数
+     * @return 重试次数
+     */
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    /**
+     * 获取超过最大重试次数被丢弃的次数
+     * @return 丢弃次数
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        try {
+            scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // 内存代理已关闭，丢弃未投递的消息
+            log.debug("QMQ embedded broker closed, task discarded");
+        }
+    }
+
+    /**
+     * 消费分组对主题的订阅
+     */
+    private final class Subscription {
+        private final String subject;
+
+        private final String group;
+
+        private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+        /**
+         * 轮流选择监听器的序号
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        Subscription(String subject, String group) {
+            this.subject = subject;
+            this.group = group;
+        }
+
+        /**
+         * 投递消息，没有正在监听的监听器或消费线程池已满时稍后再投递，不计入重试次数
+         * @param snapshot 消息副本
+         * @param times 第几次投递
+         */
+        void deliver(BaseMessage snapshot, int times) {
+            Registration registration = select();
+            if (registration == null) {
+                schedule(() -> deliver(snapshot, times), retryDelayMillis);
+                return;
+            }
+            try {
+                registration.executor.execute(() -> consume(registration.listener, snapshot, times));
+            } catch (RejectedExecutionException ex) {
+                schedule(() -> deliver(snapshot, times), retryDelayMillis);
+            }
+        }
+
+        private Registration select() {
+            int size = registrations.size();
+            for (int i = 0; i < size; i++) {
+                Registration registration = registrations.get(Math.floorMod(next.getAndIncrement(), size));
+                if (registration.listening) {
+                    return registration;
+                }
+            }
+            return null;
+        }
+
+        private void consume(MessageListener listener, BaseMessage snapshot, int times) {
+            long start = System.currentTimeMillis();
+            QmqEmbeddedMessage message = null;
+            try {
+                message = new QmqEmbeddedMessage(snapshot, times, (acked, error) -> onAck(snapshot, times, error));
+                listener.onMessage(message);
+                if (message.isAutoAck()) {
+                    message.ack(System.currentTimeMillis() - start, null);
+                }
+            } catch (Throwable ex) {
+                // 创建消息副本失败时没有可确认的消息，直接按消费失败处理
+                if (message != null) {
+                    message.ack(System.currentTimeMillis() - start, ex);
+                } else {
+                    onAck(snapshot, times, ex);
+                }
+            }
+        }
+
+        private void onAck(BaseMessage snapshot, int times, Throwable error) {
+            if (error == null) {
+                consumedCount.increment();
+                return;
+            }
+            if (times > maxRetries) {
+                droppedCount.increment();
+                log.warn("QMQ embedded message dropped after {} retries, subject: {}, group: {}, messageId: {}",
+                        maxRetries, subject, group, snapshot.getMessageId(), error);
+                return;
+            }
+            retriedCount.increment();
+            schedule(() -> deliver(snapshot, times + 1), retryDelayMillis);
+        }
+    }
+
+    /**
+     * 已注册的消息监听器
+     */
+    private static final class Registration implements ListenerHolder {
+        private final MessageListener listener;
+
+        private final Executor executor;
+
+        private volatile boolean listening = true;
+
+        Registration(MessageListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        @Override
+        public void stopListen() {
+            listening = false;
+        }
+
+        @Override
+        public void resumeListen() {
+            listening = true;
+        }
+    }
+}
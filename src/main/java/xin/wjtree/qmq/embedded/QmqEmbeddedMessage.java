@@ -0,0 +1,119 @@
+package xin.wjtree.qmq.embedded;
+
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 内嵌模式投递给消费者的消息，每个消费分组每次投递一个副本，确认结果交给内存代理处理重试
+ * @author Wang
+ */
+public class QmqEmbeddedMessage extends BaseMessage {
+    /**
+     * QMQ 内部属性前缀，由 {@link BaseMessage} 自行维护，不能通过 setProperty 写入
+     */
+    private static final String INTERNAL_PREFIX = "qmq_";
+
+    /**
+     * 第几次投递，从 1 开始
+     */
+    private final int times;
+
+    /**
+     * 消费确认回调
+     */
+    private final Acknowledger acknowledger;
+
+    /**
+     * 是否在监听方法返回后自动确认
+     */
+    private volatile boolean autoAck = true;
+
+    /**
+     * 是否已确认，重复确认时忽略
+     */
+    private final AtomicBoolean acked = new AtomicBoolean();
+
+    QmqEmbeddedMessage(BaseMessage source, int times, Acknowledger acknowledger) {
+        super(source.getMessageId(), source.getSubject());
+        this.times = times;
+        this.acknowledger = acknowledger;
+        copy(source, this);
+    }
+
+    /**
+     * 复制消息标签、接收时间及业务属性，跳过 qmq_ 开头的内部属性；已过接收时间时不复制接收时间，
+     * QMQ 不接受早于当前时间的延迟时间
+     * @param source 源消息
+     * @param target 目标消息
+     */
+    static void copy(BaseMessage source, BaseMessage target) {
+        for (String tag : source.getTags()) {
+            target.addTag(tag);
+        }
+        Date delay = source.getScheduleReceiveTime();
+        if (delay != null && delay.getTime() > System.currentTimeMillis()) {
+            target.setDelayTime(delay);
+        }
+        for (Map.Entry<String, Object> entry : source.getAttrs().entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null || key.startsWith(INTERNAL_PREFIX)) {
+                continue;
+            }
+            if (value instanceof Integer) {
+                target.setProperty(key, (Integer) value);
+            } else if (value instanceof Long) {
+                target.setProperty(key, (Long) value);
+            } else if (value instanceof Boolean) {
+                target.setProperty(key, (Boolean) value);
+            } else if (value instanceof Float) {
+                target.setProperty(key, (Float) value);
+            } else if (value instanceof Double) {
+                target.setProperty(key, (Double) value);
+            } else {
+                target.setProperty(key, value.toString());
+            }
+        }
+    }
+
+    @Override
+    public int times() {
+        return times;
+    }
+
+    @Override
+    public void autoAck(boolean auto) {
+        this.autoAck = auto;
+    }
+
+    boolean isAutoAck() {
+        return autoAck;
+    }
+
+    @Override
+    public void ack(long elapsed, Throwable e) {
+        if (acked.compareAndSet(false, true)) {
+            acknowledger.ack(this, e);
+        }
+    }
+
+    @Override
+    public void ack(long elapsed, Throwable e, Map<String, String> attachment) {
+        ack(elapsed, e);
+    }
+
+    /**
+     * 消费确认回调
+     */
+    interface Acknowledger {
+        /**
+         * 确认消息
+         * @param message 消息对象
+         * @param error 消费异常，为空表示消费成功
+         */
+        void ack(QmqEmbeddedMessage message, Throwable error);
+    }
+}
@@ -0,0 +1,143 @@
+package xin.wjtree.qmq.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内嵌模式的消息发送者，消息发送到进程内的 {@link QmqEmbeddedBroker}
+ * <ul>
+ *     <li>未回调的消息达到 maxQueueSize 时直接回调发送失败，与 QMQ 发送队列已满时的行为一致</li>
+ *     <li>按 sendLatencyMillis 延迟后在调度线程中回调，按 sendFailureRate 随机回调发送失败，失败的消息不会投递</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqEmbeddedMessageProducer implements MessageProducer {
+    private static final Logger log = LoggerFactory.getLogger(QmqEmbeddedMessageProducer.class);
+
+    private final QmqEmbeddedBroker broker;
+
+    /**
+     * 未回调的消息数量上限
+     */
+    private final int maxQueueSize;
+
+    /**
+     * 发送延迟，单位：毫秒
+     */
+    private final long sendLatencyMillis;
+
+    /**
+     * 发送失败比例
+     */
+    private final double sendFailureRate;
+
+    /**
+     * 未回调的消息数量
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 消息ID序号
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 消息ID前缀，区分不同进程生成的消息
+     */
+    private final String idPrefix = Long.toString(System.currentTimeMillis(), 36) + ".";
+
+    QmqEmbeddedMessageProducer(QmqEmbeddedBroker broker, int maxQueueSize, long sendLatencyMillis,
+            double sendFailureRate) {
+        this.broker = broker;
+        this.maxQueueSize = maxQueueSize;
+        this.sendLatencyMillis = sendLatencyMillis;
+        this.sendFailureRate = sendFailureRate;
+    }
+
+    @Override
+    public Message generateMessage(String subject) {
+        return new BaseMessage(idPrefix + sequence.incrementAndGet(), subject);
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        sendMessage(message, null);
+    }
+
+    @Override
+    public void sendMessage(Message message, MessageSendStateListener listener) {
+        if (!(message instanceof BaseMessage)) {
+            throw new QmqException("QMQ 内嵌模式仅支持发送 BaseMessage：" + (message != null ? message.getClass() : null));
+        }
+        if (inFlight.incrementAndGet() > maxQueueSize) {
+            inFlight.decrementAndGet();
+            broker.recordSendFailed();
+            if (listener != null) {
+                listener.onFailed(message);
+            }
+            return;
+        }
+
+        Runnable complete = () -> complete((BaseMessage) message, listener);
+        try {
+            if (sendLatencyMillis > 0) {
+                broker.getScheduler().schedule(complete, sendLatencyMillis, TimeUnit.MILLISECONDS);
+            } else {
+                broker.getScheduler().execute(complete);
+            }
+        } catch (RejectedExecutionException ex) {
+            // 内存代理已关闭
+            inFlight.decrementAndGet();
+            broker.recordSendFailed();
+            if (listener != null) {
+                listener.onFailed(message);
+            }
+        }
+    }
+
+    /**
+     * 获取未回调的消息数量
+     * @return 消息数量
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void complete(BaseMessage message, MessageSendStateListener listener) {
+        inFlight.decrementAndGet();
+        boolean failed = sendFailureRate > 0 && ThreadLocalRandom.current().nextDouble() < sendFailureRate;
+        if (!failed) {
+            try {
+                broker.publish(message);
+            } catch (RuntimeException ex) {
+                // 投递失败时按发送失败回调，避免监听器收不到回调
+                log.error("QMQ embedded publish failed, subject: {}, messageId: {}", message.getSubject(),
+                        message.getMessageId(), ex);
+                failed = true;
+            }
+        }
+        if (failed) {
+            broker.recordSendFailed();
+        }
+
+        if (listener == null) {
+            return;
+        }
+        if (failed) {
+            listener.onFailed(message);
+        } else {
+            listener.onSuccess(message);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.constant.QmqHelper;
+
+/**
+ * 将消息内容整体序列化为一个字符串属性的编解码器
+ * <ul>
+ *     <li>序列化结果写入 {@link QmqHelper#PAYLOAD_KEY} 属性，超过 32K 时使用 {@link BaseMessage#setLargeString(String, String)}</li>
+ *     <li>发送句柄启用压缩时，序列化结果达到压缩阈值后先压缩，见 {@link QmqCompression}</li>
+ *     <li>同时写入 {@link QmqHelper#PAYLOAD_CODEC_KEY} 属性记录编解码器名称，消费时据此自动选择编解码器</li>
+ * </ul>
+ * @author Wang
+ */
+public abstract class AbstractQmqPayloadCodec implements QmqPayloadCodec {
+    @Override
+    public void encode(Object payload, BaseMessage message) {
+        String content = serialize(payload);
+        message.setProperty(QmqHelper.PAYLOAD_CODEC_KEY, getName());
+        if (QmqCompression.bindString(message, QmqHelper.PAYLOAD_KEY, content)) {
+            return;
+        }
+        if (QmqUtil.isLargeString(content)) {
+            message.setLargeString(QmqHelper.PAYLOAD_KEY, content);
+        } else {
+            message.setProperty(QmqHelper.PAYLOAD_KEY, content);
+        }
+    }
+
+    @Override
+    public <T> T decode(Message message, Class<T> type) {
+        String content = QmqCompression.getString(message, QmqHelper.PAYLOAD_KEY);
+        if (content == null || content.isEmpty()) {
+            throw new QmqException("QMQ 消息内容为空，消息ID：" + message.getMessageId() + "，编解码器：" + getName());
+        }
+        return deserialize(content, type);
+    }
+
+    /**
+     * 序列化消息内容
+     * @param payload 消息内容
+     * @return 字符串
+     */
+    protected abstract String serialize(Object payload);
+
+    /**
+     * 反序列化消息内容
+     * @param content 字符串
+     * @param type 消息内容类型
+     * @param <T> 消息内容类型
+     * @return 消息内容
+     */
+    protected abstract <T> T deserialize(String content, Class<T> type);
+}
@@ -10,12 +10,18 @@ import qunar.tc.qmq.base.BaseMessage;
  * 默认的消息发送状态监听器
  * <ul>
  *     <li>默认的回调方法仅打印发送结果日志</li>
+ *     <li>无状态，发送时共用 {@link #INSTANCE}</li>
  * </ul>
  * @author Wang
  */
 public class DefaultMessageSendStateListener implements MessageSendStateListener {
     private static final Logger log = LoggerFactory.getLogger(DefaultMessageSendStateListener.class);
 
+    /**
+     * 共用的默认监听器
+     */
+    public static final DefaultMessageSendStateListener INSTANCE = new DefaultMessageSendStateListener();
+
     /**
      * 消息发送成功时的回调方法
      * @param message 消息对象
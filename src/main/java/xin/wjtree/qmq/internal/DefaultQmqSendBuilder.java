@@ -1,38 +1,28 @@
 package xin.wjtree.qmq.internal;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.util.CollectionUtils;
-import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 import qunar.tc.qmq.MessageProducer;
 import qunar.tc.qmq.MessageSendStateListener;
-import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
 import xin.wjtree.qmq.constant.QmqTimeUnit;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * @author kye
  */
 public class DefaultQmqSendBuilder implements QmqSendBuilder {
-    private static final Logger log = LoggerFactory.getLogger(DefaultQmqSendBuilder.class);
-
     /**
-     * 消息发送者
+     * 主题发送句柄，提供主题名称、编解码器及默认的标签、延迟和监听器
      */
-    private MessageProducer producer;
-
-    /**
-     * 消息发送主题
-     */
-    private String subject;
+    private final QmqSendHandle handle;
 
     /**
      * 消息标签
@@ -40,18 +30,37 @@ public class DefaultQmqSendBuilder implements QmqSendBuilder {
     private String tag;
 
     /**
-     * 消息接收时间
+     * 消息接收时间，为空时使用句柄的默认延迟
      */
     private Date receiveTime;
 
     /**
-     * 消息发送状态监听器，默认的回调方法仅打印发送结果日志
+     * 消息发送状态监听器，默认使用句柄的监听器
      */
-    private MessageSendStateListener listener = new DefaultMessageSendStateListener();
+    private MessageSendStateListener listener;
 
     public DefaultQmqSendBuilder(MessageProducer producer, String subject) {
-        this.producer = producer;
-        this.subject = subject;
+        this(producer, subject, new QmqProperties.Producer());
+    }
+
+    public DefaultQmqSendBuilder(MessageProducer producer, String subject, QmqProperties.Producer config) {
+        this(producer, subject, config, QmqSendMetrics.NOOP);
+    }
+
+    public DefaultQmqSendBuilder(MessageProducer producer, String subject, QmqProperties.Producer config,
+            QmqSendMetrics metrics) {
+        this(producer, subject, config, metrics, QmqPayloadCodecs.PROPERTIES);
+    }
+
+    public DefaultQmqSendBuilder(MessageProducer producer, String subject, QmqProperties.Producer config,
+            QmqSendMetrics metrics, QmqPayloadCodec payloadCodec) {
+        this(new QmqSendHandle(producer, subject, config, metrics, payloadCodec));
+    }
+
+    public DefaultQmqSendBuilder(QmqSendHandle handle) {
+        this.handle = handle;
+        this.tag = handle.getTag();
+        this.listener = handle.getListener();
     }
 
     @Override
@@ -106,93 +115,61 @@ public class DefaultQmqSendBuilder implements QmqSendBuilder {
 
     @Override
     public void send(Object object) {
-        if (ObjectUtils.isEmpty(object)) {
-            throw new QmqException("QMQ 消息发送内容不能为空");
-        }
-
-        send(QmqUtil.beanToMap(object));
+        Date receiveTime = receiveTime();
+        handle.send(handle.generateMessage(object, tag, receiveTime), tag, receiveTime, listener);
     }
 
     @Override
     public void send(Map<String, Object> content) {
-        if (CollectionUtils.isEmpty(content)) {
-            throw new QmqException("QMQ 消息发送内容不能为空");
-        }
+        Date receiveTime = receiveTime();
+        handle.send(handle.generateMessage(content, tag, receiveTime), tag, receiveTime, listener);
+    }
 
-        // 装载消息对象
-        BaseMessage message = (BaseMessage) producer.generateMessage(subject);
-        // 装载消息标签
-        if (StringUtils.hasText(tag)) {
-            message.addTag(tag);
-        }
-        // 装载消息接收时间
-        if (receiveTime != null) {
-            message.setDelayTime(receiveTime);
+    @Override
+    public QmqSendResult sendAndWait(Object object) {
+        Date receiveTime = receiveTime();
+        return handle.sendAndWait(handle.generateMessage(object, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public QmqSendResult sendAndWait(Map<String, Object> content) {
+        Date receiveTime = receiveTime();
+        return handle.sendAndWait(handle.generateMessage(content, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqSendResult> sendAsync(Object object) {
+        Date receiveTime = receiveTime();
+        return handle.sendAsync(handle.generateMessage(object, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqSendResult> sendAsync(Map<String, Object> content) {
+        Date receiveTime = receiveTime();
+        return handle.sendAsync(handle.generateMessage(content, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqBatchSendResult> sendAll(Collection<?> contents) {
+        if (CollectionUtils.isEmpty(contents)) {
+            throw new QmqException("QMQ 消息发送内容不能为空");
         }
-        // 遍历装载消息内容，过滤键值对为空的属性
-        content.entrySet().stream().filter(e -> StringUtils.hasText(e.getKey()) && !ObjectUtils.isEmpty(e.getValue()))
-                .forEach(entry -> bindMessage(message, entry));
+        return handle.sendAll(contents.iterator(), tag, receiveTime(), listener);
+    }
 
-        if (log.isTraceEnabled()) {
-            log.trace("QMQ 异步消息准备发送，消息主题：{}，消息内容：{}", message.getSubject(), message.getAttrs());
+    @Override
+    public CompletableFuture<QmqBatchSendResult> sendAll(Stream<?> contents) {
+        if (contents == null) {
+            throw new QmqException("QMQ 消息发送内容不能为空");
         }
-        // 发送消息，并返回回调结果
-        producer.sendMessage(message, listener);
+        return handle.sendAll(contents.iterator(), tag, receiveTime(), listener);
     }
 
     /**
-     * 组装消息键值对
-     * <p>QMQ 目前支持的数据类型包含：</p>
-     * <ol>
-     *     <li>{@link Boolean}</li>
-     *     <li>{@link Integer}</li>
-     *     <li>{@link Long}</li>
-     *     <li>{@link Float}</li>
-     *     <li>{@link Double}</li>
-     *     <li>{@link Date}</li>
-     *     <li>{@link String}</li>
-     * </ol>
-     * @param message 消息对象
-     * @param entry 单条消息键值对
+     * 获取消息接收时间，未设置时使用句柄的默认延迟
+     * @return 消息接收时间
      */
-    private void bindMessage(BaseMessage message, Map.Entry<String, Object> entry) {
-        // 声明消息内容的键值对
-        String key = entry.getKey();
-        Object value = entry.getValue();
-
-        // 判断 value 的数据类型，并装载消息内容
-        if (value instanceof Boolean) {
-            message.setProperty(key, (Boolean) value);
-        } else if (value instanceof Byte) {
-            message.setProperty(key, ((Byte) value).intValue());
-        } else if (value instanceof Short) {
-            message.setProperty(key, ((Short) value).intValue());
-        } else if (value instanceof Integer) {
-            message.setProperty(key, (Integer) value);
-        } else if (value instanceof Long) {
-            message.setProperty(key, (Long) value);
-        } else if (value instanceof BigInteger) {
-            message.setProperty(key, ((BigInteger) value).longValue());
-        } else if (value instanceof Float) {
-            message.setProperty(key, (Float) value);
-        } else if (value instanceof Double) {
-            message.setProperty(key, (Double) value);
-        } else if (value instanceof BigDecimal) {
-            message.setProperty(key, ((BigDecimal) value).doubleValue());
-        } else if (value instanceof Date) {
-            message.setProperty(key, (Date) value);
-        } else if (value instanceof Character) {
-            message.setProperty(key, ((Character) value).toString());
-        } else if (value instanceof CharSequence) {
-            String str = (String) value;
-            // 判断字符串大小是否超过32K，使用 UTF-8 编码
-            if (QmqUtil.isLargeString(str, StandardCharsets.UTF_8)) {
-                message.setLargeString(key, str);
-            } else {
-                message.setProperty(key, str);
-            }
-        } else {
-            throw new QmqException("Unexpected value: " + value.getClass());
-        }
+    private Date receiveTime() {
+        return receiveTime != null ? receiveTime : handle.receiveTime();
     }
 }
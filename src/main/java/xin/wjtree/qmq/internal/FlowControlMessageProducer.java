@@ -0,0 +1,375 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.constant.QmqOverflowPolicy;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 带流量控制的消息发送者
+ * <ul>
+ *     <li>每条消息提交前获取一个发送许可，收到发送状态回调后释放，未收到回调的消息数量不超过 maxInFlight</li>
+ *     <li>没有可用许可时按 {@link QmqOverflowPolicy} 处理，避免 QMQ 异步发送队列溢出后丢失消息</li>
+ *     <li>{@link QmqOverflowPolicy#CALLER_RUNS} 策略不占用发送许可，每个调用线程最多超出上限一条消息，
+ *     等待超时后不再限制，这部分消息单独计数并计入 {@link #getInFlight()}</li>
+ *     <li>配置了本地溢出日志时，{@link QmqOverflowPolicy#SPILL} 策略的溢出队列已满后写入 {@link QmqSpillLog}</li>
+ *     <li>启用自适应流量控制时，上限由 {@link QmqAdaptiveLimit} 按回调耗时及失败在 [minInFlight, maxInFlight] 之间调整</li>
+ * </ul>
+ * @author Wang
+ */
+public class FlowControlMessageProducer implements MessageProducer {
+    /**
+     * 实际的消息发送者
+     */
+    private final MessageProducer delegate;
+
+    /**
+     * 未收到回调的消息数量上限
+     */
+    private final int maxInFlight;
+
+    /**
+     * 发送许可
+     */
+    private final AdjustableSemaphore permits;
+
+    /**
+     * 自适应上限，未启用时为空
+     */
+    private final QmqAdaptiveLimit adaptiveLimit;
+
+    /**
+     * 没有可用许可时的处理策略
+     */
+    private final QmqOverflowPolicy policy;
+
+    /**
+     * 等待发送许可或发送结果的超时时间，单位：毫秒
+     */
+    private final long timeoutMillis;
+
+    /**
+     * 溢出队列，仅 {@link QmqOverflowPolicy#SPILL} 策略使用
+     */
+    private final Queue<PendingMessage> spillQueue;
+
+    /**
+     * {@link QmqOverflowPolicy#CALLER_RUNS} 策略不占用发送许可、未收到回调的消息数量
+     */
+    private final AtomicInteger callerRunsInFlight = new AtomicInteger();
+
+    /**
+     * 本地溢出日志，可以为空
+     */
+    private final QmqSpillLog spillLog;
+
+    public FlowControlMessageProducer(MessageProducer delegate, QmqProperties.Producer config) {
+        this(delegate, config, null);
+    }
+
+    public FlowControlMessageProducer(MessageProducer delegate, QmqProperties.Producer config,
+            QmqSpillLog spillLog) {
+        this.delegate = delegate;
+        this.spillLog = spillLog;
+        this.maxInFlight = config.getMaxInFlight();
+        this.permits = new AdjustableSemaphore(maxInFlight);
+        this.adaptiveLimit = config.isAdaptiveInFlight() ?
+                new QmqAdaptiveLimit(config.getMinInFlight(), maxInFlight, config.getTargetAckLatencyMillis()) : null;
+        this.policy = config.getOverflowPolicy();
+        this.timeoutMillis = config.getOverflowTimeoutMillis();
+        this.spillQueue = policy == QmqOverflowPolicy.SPILL ? new ArrayBlockingQueue<>(config.getSpillQueueSize()) :
+                null;
+    }
+
+    @Override
+    public Message generateMessage(String subject) {
+        return delegate.generateMessage(subject);
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        sendMessage(message, null);
+    }
+
+    @Override
+    public void sendMessage(Message message, MessageSendStateListener listener) {
+        if (permits.tryAcquire()) {
+            doSend(message, listener);
+            return;
+        }
+
+        switch (policy) {
+            case BLOCK:
+                block(message, listener);
+                break;
+            case CALLER_RUNS:
+                callerRuns(message, listener);
+                break;
+            case SPILL:
+                spill(message, listener);
+                break;
+            case FAIL_FAST:
+            default:
+                throw reject(message);
+        }
+    }
+
+    /**
+     * 获取未收到回调的消息数量，包括 {@link QmqOverflowPolicy#CALLER_RUNS} 策略不占用发送许可提交的消息
+     * @return 未收到回调的消息数量
+     */
+    public int getInFlight() {
+        return getLimit() - permits.availablePermits() + callerRunsInFlight.get();
+    }
+
+    /**
+     * 获取 {@link QmqOverflowPolicy#CALLER_RUNS} 策略不占用发送许可提交、未收到回调的消息数量
+     * @return 未收到回调的消息数量
+     */
+    public int getCallerRunsInFlight() {
+        return callerRunsInFlight.get();
+    }
+
+    /**
+     * 获取当前的未收到回调消息数量上限，未启用自适应流量控制时为 maxInFlight
+     * @return 未收到回调的消息数量上限
+     */
+    public int getLimit() {
+        return adaptiveLimit != null ? adaptiveLimit.getLimit() : maxInFlight;
+    }
+
+    /**
+     * 获取自适应上限
+     * @return {@link QmqAdaptiveLimit}，未启用时为空
+     */
+    public QmqAdaptiveLimit getAdaptiveLimit() {
+        return adaptiveLimit;
+    }
+
+    /**
+     * 获取溢出队列中等待补发的消息数量
+     * @return 等待补发的消息数量
+     */
+    public int getSpilled() {
+        return spillQueue != null ? spillQueue.size() : 0;
+    }
+
+    public MessageProducer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 阻塞等待发送许可，超时后抛出异常
+     */
+    private void block(Message message, MessageSendStateListener listener) {
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw reject(message);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new QmqException("QMQ 等待发送许可被中断，消息主题：" + message.getSubject(), ex);
+        }
+        doSend(message, listener);
+    }
+
+    /**
+     * 不占用发送许可直接提交，并在当前线程等待发送结果；提交的消息单独计数，收到回调后减少
+     */
+    private void callerRuns(Message message, MessageSendStateListener listener) {
+        CountDownLatch latch = new CountDownLatch(1);
+        callerRunsInFlight.incrementAndGet();
+        try {
+            delegate.sendMessage(message, new MessageSendStateListener() {
+                @Override
+                public void onSuccess(Message m) {
+                    try {
+                        if (listener != null) {
+                            listener.onSuccess(m);
+                        }
+                    } finally {
+                        callerRunsInFlight.decrementAndGet();
+                        latch.countDown();
+                    }
+                }
+
+                @Override
+                public void onFailed(Message m) {
+                    try {
+                        if (listener != null) {
+                            listener.onFailed(m);
+                        }
+                    } finally {
+                        callerRunsInFlight.decrementAndGet();
+                        latch.countDown();
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            callerRunsInFlight.decrementAndGet();
+            throw ex;
+        }
+        try {
+            // 超时后不再等待，消息仍会继续发送
+            latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 暂存到溢出队列，溢出队列已满时写入本地溢出日志，未配置本地溢出日志时抛出异常
+     */
+    private void spill(Message message, MessageSendStateListener listener) {
+        if (!spillQueue.offer(new PendingMessage(message, listener))) {
+            if (spillLog == null || !spillLog.append(message)) {
+                throw reject(message);
+            }
+            // 已写入本地溢出日志，由后台补发，消息最终会被投递，通知监听器发送成功
+            if (listener != null) {
+                listener.onSuccess(message);
+            }
+            return;
+        }
+        // 暂存期间可能已有许可释放，尝试立即补发
+        drainSpillQueue();
+    }
+
+    /**
+     * 使用已获取的发送许可提交消息
+     */
+    private void doSend(Message message, MessageSendStateListener listener) {
+        try {
+            delegate.sendMessage(message, new PermitReleasingListener(listener));
+        } catch (RuntimeException ex) {
+            release();
+            throw ex;
+        }
+    }
+
+    /**
+     * 释放发送许可，并补发溢出队列中的消息
+     */
+    private void release() {
+        permits.release();
+        if (spillQueue != null) {
+            drainSpillQueue();
+        }
+    }
+
+    /**
+     * 收到发送状态回调时，按回调耗时调整自适应上限，再释放发送许可
+     * @param startNanos 提交发送的时间，单位：纳秒
+     * @param success 是否发送成功
+     */
+    private void onAck(long startNanos, boolean success) {
+        if (adaptiveLimit != null) {
+            int delta = adaptiveLimit.onSample(System.nanoTime() - startNanos, success, getInFlight());
+            if (delta > 0) {
+                permits.release(delta);
+            } else if (delta < 0) {
+                // 可用许可可以减为负数，已提交的消息回调后才能继续发送
+                permits.reducePermits(-delta);
+            }
+        }
+        release();
+    }
+
+    private void drainSpillQueue() {
+        while (!spillQueue.isEmpty() && permits.tryAcquire()) {
+            PendingMessage pending = spillQueue.poll();
+            if (pending == null) {
+                permits.release();
+                return;
+            }
+            try {
+                doSend(pending.message, pending.listener);
+            } catch (RuntimeException ex) {
+                // 补发在回调线程中执行，提交失败时通知原监听器
+                if (pending.listener != null) {
+                    pending.listener.onFailed(pending.message);
+                }
+            }
+        }
+    }
+
+    private QmqException reject(Message message) {
+        return new QmqException("QMQ 未收到回调的消息数量已达上限：" + getLimit() + "，消息主题：" + message.getSubject()
+                + "，处理策略：" + policy);
+    }
+
+    /**
+     * 收到发送状态回调时释放发送许可
+     */
+    private final class PermitReleasingListener implements MessageSendStateListener {
+        private final MessageSendStateListener listener;
+
+        /**
+         * 提交发送的时间，未启用自适应流量控制时不计时
+         */
+        private final long startNanos = adaptiveLimit != null ? System.nanoTime() : 0L;
+
+        PermitReleasingListener(MessageSendStateListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(Message message) {
+            try {
+                if (listener != null) {
+                    listener.onSuccess(message);
+                }
+            } finally {
+                onAck(startNanos, true);
+            }
+        }
+
+        @Override
+        public void onFailed(Message message) {
+            try {
+                if (listener != null) {
+                    listener.onFailed(message);
+                }
+            } finally {
+                onAck(startNanos, false);
+            }
+        }
+    }
+
+    /**
+     * 可减少许可数量的信号量
+     */
+    private static final class AdjustableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        AdjustableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    /**
+     * 溢出队列中等待补发的消息
+     */
+    private static final class PendingMessage {
+        private final Message message;
+        private final MessageSendStateListener listener;
+
+        PendingMessage(Message message, MessageSendStateListener listener) {
+            this.message = message;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在 Spring 事务中写入事务发件箱的消息发送者
+ * <ul>
+ *     <li>存在绑定到发件箱数据源的事务时消息写入 {@link QmqOutbox}，随业务数据一起提交或回滚；
+ *     其他事务管理器的事务不能保证与发件箱原子提交，仍直接发送并记录一次警告</li>
+ *     <li>事务提交后回调发送成功并唤醒 {@link QmqOutboxRelay} 立即转发，回滚时回调发送失败，消息随之丢弃</li>
+ *     <li>写入失败时抛出异常，由调用方的事务回滚；没有事务时直接发送</li>
+ * </ul>
+ * @author Wang
+ */
+public class OutboxMessageProducer implements MessageProducer {
+    private static final Logger log = LoggerFactory.getLogger(OutboxMessageProducer.class);
+
+    /**
+     * 实际的消息发送者
+     */
+    private final MessageProducer delegate;
+
+    private final QmqOutboxRelay relay;
+
+    /**
+     * 是否已记录事务未绑定发件箱数据源的警告
+     */
+    private final AtomicBoolean unboundWarned = new AtomicBoolean();
+
+    public OutboxMessageProducer(MessageProducer delegate, QmqOutboxRelay relay) {
+        this.delegate = delegate;
+        this.relay = relay;
+    }
+
+    @Override
+    public Message generateMessage(String subject) {
+        return delegate.generateMessage(subject);
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        sendMessage(message, null);
+    }
+
+    @Override
+    public void sendMessage(Message message, MessageSendStateListener listener) {
+        if (!isTransactional()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && unboundWarned.compareAndSet(false, true)) {
+                log.warn("QMQ outbox skipped, current transaction is not bound to outbox DataSource, table: {}",
+                        relay.getOutbox().getTableName());
+            }
+            delegate.sendMessage(message, listener);
+            return;
+        }
+
+        relay.getOutbox().append(message);
+        // 每个事务只注册一次提交回调，发送状态在事务完成后统一回调
+        RelayOnCommit synchronization = (RelayOnCommit) TransactionSynchronizationManager.getResource(relay);
+        if (synchronization == null) {
+            synchronization = new RelayOnCommit();
+            TransactionSynchronizationManager.bindResource(relay, synchronization);
+            TransactionSynchronizationManager.registerSynchronization(synchronization);
+        }
+        if (listener != null) {
+            synchronization.add(message, listener);
+        }
+    }
+
+    /**
+     * 当前线程是否存在绑定到发件箱数据源的实际事务，此时发送的消息写入发件箱，事务完成后才回调发送状态
+     * @return true or false
+     */
+    public boolean isTransactional() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        DataSource dataSource = relay.getOutbox().getDataSource();
+        return dataSource != null && TransactionSynchronizationManager.hasResource(dataSource);
+    }
+
+    public MessageProducer getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 事务提交后回调发送成功并唤醒转发，回滚时回调发送失败
+     */
+    private final class RelayOnCommit implements TransactionSynchronization {
+        /**
+         * 本事务写入发件箱的消息及其监听器
+         */
+        private final List<Message> messages = new ArrayList<>();
+
+        private final List<MessageSendStateListener> listeners = new ArrayList<>();
+
+        void add(Message message, MessageSendStateListener listener) {
+            messages.add(message);
+            listeners.add(listener);
+        }
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(relay);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(relay, this);
+        }
+
+        @Override
+        public void afterCommit() {
+            relay.wakeup();
+            notifyListeners(true);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(relay);
+            if (status == STATUS_COMMITTED) {
+                return;
+            }
+            if (status == STATUS_UNKNOWN && !messages.isEmpty()) {
+                log.warn("QMQ outbox transaction completed with unknown status, messages may still be relayed, "
+                        + "table: {}, count: {}", relay.getOutbox().getTableName(), messages.size());
+            }
+            notifyListeners(false);
+        }
+
+        private void notifyListeners(boolean success) {
+            for (int i = 0; i < messages.size(); i++) {
+                Message message = messages.get(i);
+                try {
+                    if (success) {
+                        listeners.get(i).onSuccess(message);
+                    } else {
+                        listeners.get(i).onFailed(message);
+                    }
+                } catch (RuntimeException ex) {
+                    // 监听器异常不影响其他消息的回调，也不影响已完成的事务
+                    log.warn("QMQ outbox listener failed, subject: {}, messageId: {}", message.getSubject(),
+                            message.getMessageId(), ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package xin.wjtree.qmq.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按发送状态回调自适应调整的未收到回调消息数量上限，AIMD 算法
+ * <ul>
+ *     <li>从最大值开始，每条消息回调时记录提交到回调的耗时，计算指数加权平均值</li>
+ *     <li>发送成功、平均耗时不超过目标值且已使用上限的一半以上时，上限加 1</li>
+ *     <li>发送失败或平均耗时超过目标值时，上限乘以 {@link #BACKOFF_RATIO}，每个目标耗时内最多减小一次，避免一批慢回调使上限骤降</li>
+ *     <li>上限始终在 [minLimit, maxLimit] 之间</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqAdaptiveLimit {
+    /**
+     * 减小上限时的比例
+     */
+    static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * 平均耗时的平滑系数，越大越关注最近的回调
+     */
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    /**
+     * 目标耗时，单位：纳秒
+     */
+    private final long targetNanos;
+
+    private volatile int limit;
+
+    /**
+     * 提交到回调的平均耗时，单位：纳秒
+     */
+    private volatile double smoothedNanos;
+
+    /**
+     * 上次减小上限的时间，单位：纳秒
+     */
+    private long lastBackoffNanos;
+
+    public QmqAdaptiveLimit(int minLimit, int maxLimit, long targetLatencyMillis) {
+        if (maxLimit <= 0 || targetLatencyMillis <= 0) {
+            throw new QmqException("QMQ 自适应流量控制的上限及目标耗时必须大于 0");
+        }
+        this.maxLimit = maxLimit;
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.limit = maxLimit;
+        this.lastBackoffNanos = System.nanoTime() - targetNanos;
+    }
+
+    /**
+     * 记录一次发送状态回调，并按需调整上限
+     * @param latencyNanos 提交到回调的耗时，单位：纳秒
+     * @param success 是否发送成功
+     * @param inFlight 当前未收到回调的消息数量
+     * @return 调整后的上限减去调整前的上限
+     */
+    public synchronized int onSample(long latencyNanos, boolean success, int inFlight) {
+        double smoothed = smoothedNanos == 0 ? latencyNanos : smoothedNanos + (latencyNanos - smoothedNanos) * SMOOTHING;
+        smoothedNanos = smoothed;
+
+        int current = limit;
+        int next = current;
+        if (!success || smoothed > targetNanos) {
+            long now = System.nanoTime();
+            if (now - lastBackoffNanos >= targetNanos) {
+                lastBackoffNanos = now;
+                next = Math.max(minLimit, (int) (current * BACKOFF_RATIO));
+            }
+        } else if (inFlight * 2 >= current) {
+            next = Math.min(maxLimit, current + 1);
+        }
+        limit = next;
+        return next - current;
+    }
+
+    /**
+     * 获取当前上限
+     * @return 未收到回调的消息数量上限
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * 获取提交到回调的平均耗时
+     * @return 平均耗时，单位：毫秒
+     */
+    public double getSmoothedLatencyMillis() {
+        return smoothedNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
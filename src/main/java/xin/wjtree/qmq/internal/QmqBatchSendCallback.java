@@ -0,0 +1,153 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageSendStateListener;
+
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量发送共用的消息发送状态监听器
+ * <ul>
+ *     <li>同一批次的所有消息共用一个监听器，不为每条消息单独分配回调对象</li>
+ *     <li>使用信号量限制同一批次未收到回调的消息数量，超过时阻塞发送线程，避免撑满 QMQ 异步发送队列</li>
+ *     <li>全部消息收到回调后完成 {@link #future()}</li>
+ * </ul>
+ * @author Wang
+ */
+class QmqBatchSendCallback implements MessageSendStateListener {
+    /**
+     * 原消息发送状态监听器
+     */
+    private final MessageSendStateListener delegate;
+
+    /**
+     * 未收到回调的消息数量上限
+     */
+    private final Semaphore window;
+
+    /**
+     * 未收到回调的消息数量，初始值 1 表示批次尚未提交完毕
+     */
+    private final AtomicInteger pending = new AtomicInteger(1);
+
+    /**
+     * 发送成功的消息数量
+     */
+    private final AtomicInteger successCount = new AtomicInteger();
+
+    /**
+     * 发送失败的消息
+     */
+    private final Queue<QmqSendResult> failures = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 批量发送结果
+     */
+    private final CompletableFuture<QmqBatchSendResult> future = new CompletableFuture<>();
+
+    /**
+     * 开始批量发送的时间，单位：纳秒
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * 提交发送的消息数量，仅由发送线程修改
+     */
+    private int total;
+
+    QmqBatchSendCallback(MessageSendStateListener delegate, int maxPending) {
+        this.delegate = delegate;
+        this.window = new Semaphore(maxPending);
+    }
+
+    @Override
+    public void onSuccess(Message message) {
+        try {
+            delegate.onSuccess(message);
+        } finally {
+            successCount.incrementAndGet();
+            release();
+        }
+    }
+
+    @Override
+    public void onFailed(Message message) {
+        try {
+            delegate.onFailed(message);
+        } finally {
+            failures.add(new QmqSendResult(message, false, elapsedMillis()));
+            release();
+        }
+    }
+
+    /**
+     * 提交一条消息前获取发送许可，未收到回调的消息达到上限时阻塞
+     */
+    void acquire() {
+        try {
+            window.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new QmqException("QMQ 批量消息发送被中断", ex);
+        }
+        pending.incrementAndGet();
+        total++;
+    }
+
+    /**
+     * 已获取许可的消息提交被拒绝时，通知原监听器并记为发送失败
+     * @param message 消息对象
+     * @param error 拒绝原因
+     */
+    void reject(Message message, Throwable error) {
+        try {
+            delegate.onFailed(message);
+        } finally {
+            failures.add(new QmqSendResult(message, false, elapsedMillis(), error));
+            release();
+        }
+    }
+
+    /**
+     * 已获取许可的消息未能生成时，归还许可
+     */
+    void cancel() {
+        total--;
+        release();
+    }
+
+    /**
+     * 批次提交完毕，全部回调完成后生成批量发送结果
+     */
+    void finish() {
+        if (pending.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    CompletableFuture<QmqBatchSendResult> future() {
+        return future;
+    }
+
+    private void release() {
+        window.release();
+        if (pending.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        future.complete(new QmqBatchSendResult(total, successCount.get(), new ArrayList<>(failures),
+                elapsedMillis()));
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
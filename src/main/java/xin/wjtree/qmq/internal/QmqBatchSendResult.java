@@ -0,0 +1,66 @@
+package xin.wjtree.qmq.internal;
+
+import java.util.List;
+
+/**
+ * QMQ 批量消息发送结果
+ * @author Wang
+ */
+public class QmqBatchSendResult {
+    /**
+     * 提交发送的消息数量
+     */
+    private final int total;
+
+    /**
+     * 发送成功的消息数量
+     */
+    private final int successCount;
+
+    /**
+     * 发送失败的消息，耗时从批量发送开始计算
+     */
+    private final List<QmqSendResult> failures;
+
+    /**
+     * 从开始批量发送到收到全部发送状态回调的耗时，单位：毫秒
+     */
+    private final long elapsedMillis;
+
+    public QmqBatchSendResult(int total, int successCount, List<QmqSendResult> failures, long elapsedMillis) {
+        this.total = total;
+        this.successCount = successCount;
+        this.failures = failures;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    public int getFailedCount() {
+        return failures.size();
+    }
+
+    public List<QmqSendResult> getFailures() {
+        return failures;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public boolean isAllSuccess() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "QmqBatchSendResult{total=" + total + ", successCount=" + successCount + ", failedCount="
+                + failures.size() + ", elapsedMillis=" + elapsedMillis + "}";
+    }
+}
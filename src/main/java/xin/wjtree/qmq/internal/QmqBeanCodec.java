@@ -0,0 +1,606 @@
+package xin.wjtree.qmq.internal;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 实体类消息编码器
+ * <ul>
+ *     <li>每个实体类仅在首次使用时解析一次属性、别名及忽略注解，解析结果按类缓存</li>
+ *     <li>发送时通过 {@link MethodHandle} 读取属性值，直接装载到 {@link BaseMessage}，不再生成中间 Map</li>
+ *     <li>解析时按属性类型预先确定绑定器，int、long、float、double、boolean 等基本类型属性不经过装箱</li>
+ *     <li>接收时通过 {@link #decode(Message)} 将消息转换为实体类，解码器在首次解码时创建，实体类需要无参构造方法</li>
+ * </ul>
+ * @author Wang
+ */
+public final class QmqBeanCodec {
+    /**
+     * 编码器缓存，每个实体类对应一个编码器
+     */
+    private static final ClassValue<QmqBeanCodec> CODECS = new ClassValue<QmqBeanCodec>() {
+        @Override
+        protected QmqBeanCodec computeValue(Class<?> type) {
+            return new QmqBeanCodec(type);
+        }
+    };
+
+    /**
+     * 统一的属性读取方法签名：(Object) -> Object
+     */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * 统一的属性写入方法签名：(Object, Object) -> void
+     */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * 实体类类型
+     */
+    private final Class<?> type;
+
+    /**
+     * 属性写入器，按属性声明顺序排列
+     */
+    private final PropertyWriter[] writers;
+
+    /**
+     * 实体类属性，与 writers 一一对应，用于创建解码器
+     */
+    private final Field[] fields;
+
+    /**
+     * 解码器，首次解码时创建
+     */
+    private volatile BeanDecoder decoder;
+
+    private QmqBeanCodec(Class<?> type) {
+        this.type = type;
+
+        // 获取指定类及其父类的所有属性，过滤 QmqIgnore 注解修饰的属性
+        List<Field> fields = getFieldsExcludeIgnore(type);
+        this.fields = fields.toArray(new Field[0]);
+        this.writers = new PropertyWriter[fields.size()];
+
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            try {
+                // 读取私有属性必须设置为 true，仅在解析时设置一次
+                field.setAccessible(true);
+                writers[i] = createWriter(getName(field), field.getType(), lookup.unreflectGetter(field));
+            } catch (IllegalAccessException | RuntimeException ex) {
+                throw new QmqException("QMQ 实体类属性解析出错：" + type.getName() + "." + field.getName(), ex);
+            }
+        }
+    }
+
+    /**
+     * 获取指定实体类的编码器，首次调用时解析并缓存
+     * @param type 实体类类型
+     * @return {@link QmqBeanCodec}
+     */
+    public static QmqBeanCodec forClass(Class<?> type) {
+        if (type == null) {
+            throw new QmqException("QMQ 消息对象类型不能为空");
+        }
+        return CODECS.get(type);
+    }
+
+    /**
+     * 将实体类的属性值直接装载到消息对象，过滤值为空的属性
+     * @param bean 消息对象
+     * @param message QMQ 消息
+     */
+    public void encode(Object bean, BaseMessage message) {
+        checkBean(bean);
+
+        for (PropertyWriter writer : writers) {
+            try {
+                writer.write(bean, message);
+            } catch (QmqException ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new QmqException("QMQ 实体类属性读取出错：" + type.getName() + "." + writer.name, ex);
+            }
+        }
+    }
+
+    /**
+     * 将实体类转换为 Map，属性值为空时也保留对应的键
+     * @param bean 消息对象
+     * @return Map
+     */
+    public Map<String, Object> toMap(Object bean) {
+        checkBean(bean);
+
+        Map<String, Object> map = new HashMap<>(writers.length);
+        for (PropertyWriter writer : writers) {
+            try {
+                map.put(writer.name, (Object) writer.boxedGetter.invokeExact(bean));
+            } catch (Throwable ex) {
+                throw new QmqException("QMQ 实体类属性读取出错：" + type.getName() + "." + writer.name, ex);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 将消息转换为实体类，消息中不存在的属性保持默认值
+     * @param message QMQ 消息
+     * @param <T> 实体类类型
+     * @return 实体类
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T decode(Message message) {
+        if (message == null) {
+            throw new QmqException("QMQ 消息不能为空");
+        }
+
+        BeanDecoder tempDecoder = decoder;
+        if (tempDecoder == null) {
+            // 并发创建时结果相同，无需加锁
+            decoder = tempDecoder = new BeanDecoder(type, fields);
+        }
+
+        Object bean;
+        try {
+            bean = (Object) tempDecoder.constructor.invokeExact();
+        } catch (Throwable ex) {
+            throw new QmqException("QMQ 实体类实例化出错：" + type.getName(), ex);
+        }
+        for (PropertyReader reader : tempDecoder.readers) {
+            try {
+                reader.read(message, bean);
+            } catch (QmqException ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new QmqException("QMQ 消息属性解码出错：" + type.getName() + "." + reader.name, ex);
+            }
+        }
+        return (T) bean;
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * 校验消息对象，Object 不能是 Map，且必须包含至少一个属性
+     * @param bean 消息对象
+     */
+    private void checkBean(Object bean) {
+        if (ObjectUtils.isEmpty(bean)) {
+            throw new QmqException("QMQ 消息对象 bean 不能为空");
+        }
+        if (bean instanceof Map) {
+            throw new QmqException("QMQ 消息对象 bean 不能是基本数据类型或 Map 类型");
+        }
+        if (!type.isInstance(bean)) {
+            throw new QmqException("QMQ 消息对象类型不匹配，期望：" + type.getName() + "，实际：" + bean.getClass().getName());
+        }
+        if (writers.length == 0) {
+            throw new QmqException("QMQ 消息对象 Object 不是标准的 JavaBean 或者属性为空");
+        }
+    }
+
+    /**
+     * 按属性类型创建写入器，基本类型使用专用写入器避免装箱
+     * @param name 消息属性名称
+     * @param fieldType 属性类型
+     * @param getter 属性读取方法
+     * @return {@link PropertyWriter}
+     */
+    private static PropertyWriter createWriter(String name, Class<?> fieldType, MethodHandle getter) {
+        MethodHandle boxedGetter = getter.asType(GETTER_TYPE);
+        if (fieldType == int.class || fieldType == short.class || fieldType == byte.class) {
+            return new IntWriter(name, getter.asType(MethodType.methodType(int.class, Object.class)), boxedGetter);
+        }
+        if (fieldType == long.class) {
+            return new LongWriter(name, getter.asType(MethodType.methodType(long.class, Object.class)), boxedGetter);
+        }
+        if (fieldType == double.class) {
+            return new DoubleWriter(name, getter.asType(MethodType.methodType(double.class, Object.class)),
+                    boxedGetter);
+        }
+        if (fieldType == float.class) {
+            return new FloatWriter(name, getter.asType(MethodType.methodType(float.class, Object.class)),
+                    boxedGetter);
+        }
+        if (fieldType == boolean.class) {
+            return new BooleanWriter(name, getter.asType(MethodType.methodType(boolean.class, Object.class)),
+                    boxedGetter);
+        }
+        // 引用类型：声明类型有绑定器时预先确定，否则按属性值的实际类型查找；char 按 Character 处理
+        Class<?> bindType = fieldType == char.class ? Character.class : fieldType;
+        return new ObjectWriter(name, boxedGetter, QmqPropertyBinders.find(bindType));
+    }
+
+    /**
+     * 获取属性名称
+     * @param field 实体类属性
+     * @return String
+     */
+    private static String getName(Field field) {
+        // 如果属性有别名修饰，则使用设置的属性别名
+        QmqAlias alias = field.getDeclaredAnnotation(QmqAlias.class);
+        if (alias != null && StringUtils.hasText(alias.value())) {
+            return alias.value();
+        }
+        return field.getName();
+    }
+
+    /**
+     * 获取指定类及其父类的所有实例属性，包括私有属性，并过滤 QmqIgnore 注解修饰的属性
+     * @param type 类型
+     * @return 类的所有属性
+     */
+    private static List<Field> getFieldsExcludeIgnore(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        // 遍历父类
+        for (Class<?> tempClass = type; tempClass != null && tempClass != Object.class;
+             tempClass = tempClass.getSuperclass()) {
+            for (Field field : tempClass.getDeclaredFields()) {
+                // 跳过静态属性、编译器生成的属性，以及 QmqIgnore 注解修饰的属性
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()
+                        || field.isAnnotationPresent(QmqIgnore.class)) {
+                    continue;
+                }
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 属性写入器，读取单个属性值并装载到消息对象
+     */
+    private abstract static class PropertyWriter {
+        /**
+         * 消息属性名称，已处理 {@link QmqAlias} 别名
+         */
+        final String name;
+
+        /**
+         * 装箱的属性读取方法：(Object) -> Object
+         */
+        final MethodHandle boxedGetter;
+
+        PropertyWriter(String name, MethodHandle boxedGetter) {
+            this.name = name;
+            this.boxedGetter = boxedGetter;
+        }
+
+        abstract void write(Object bean, BaseMessage message) throws Throwable;
+    }
+
+    private static final class IntWriter extends PropertyWriter {
+        private final MethodHandle getter;
+
+        IntWriter(String name, MethodHandle getter, MethodHandle boxedGetter) {
+            super(name, boxedGetter);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(Object bean, BaseMessage message) throws Throwable {
+            message.setProperty(name, (int) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class LongWriter extends PropertyWriter {
+        private final MethodHandle getter;
+
+        LongWriter(String name, MethodHandle getter, MethodHandle boxedGetter) {
+            super(name, boxedGetter);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(Object bean, BaseMessage message) throws Throwable {
+            message.setProperty(name, (long) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class DoubleWriter extends PropertyWriter {
+        private final MethodHandle getter;
+
+        DoubleWriter(String name, MethodHandle getter, MethodHandle boxedGetter) {
+            super(name, boxedGetter);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(Object bean, BaseMessage message) throws Throwable {
+            message.setProperty(name, (double) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class FloatWriter extends PropertyWriter {
+        private final MethodHandle getter;
+
+        FloatWriter(String name, MethodHandle getter, MethodHandle boxedGetter) {
+            super(name, boxedGetter);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(Object bean, BaseMessage message) throws Throwable {
+            message.setProperty(name, (float) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class BooleanWriter extends PropertyWriter {
+        private final MethodHandle getter;
+
+        BooleanWriter(String name, MethodHandle getter, MethodHandle boxedGetter) {
+            super(name, boxedGetter);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(Object bean, BaseMessage message) throws Throwable {
+            message.setProperty(name, (boolean) getter.invokeExact(bean));
+        }
+    }
+
+    /**
+     * 引用类型写入器，过滤值为空的属性
+     */
+    private static final class ObjectWriter extends PropertyWriter {
+        /**
+         * 按声明类型预先确定的绑定器，为空时按属性值的实际类型查找
+         */
+        private final QmqPropertyBinder<Object> binder;
+
+        ObjectWriter(String name, MethodHandle boxedGetter, QmqPropertyBinder<Object> binder) {
+            super(name, boxedGetter);
+            this.binder = binder;
+        }
+
+        @Override
+        void write(Object bean, BaseMessage message) throws Throwable {
+            Object value = (Object) boxedGetter.invokeExact(bean);
+            if (ObjectUtils.isEmpty(value)) {
+                return;
+            }
+            if (binder != null) {
+                binder.bind(message, name, value);
+            } else {
+                QmqPropertyBinders.bind(message, name, value);
+            }
+        }
+    }
+
+    /**
+     * 实体类解码器，包含无参构造方法及属性读取器
+     */
+    private static final class BeanDecoder {
+        /**
+         * 无参构造方法：() -> Object
+         */
+        final MethodHandle constructor;
+
+        /**
+         * 属性读取器，按属性声明顺序排列
+         */
+        final PropertyReader[] readers;
+
+        BeanDecoder(Class<?> type, Field[] fields) {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                Constructor<?> ctor = type.getDeclaredConstructor();
+                ctor.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException | RuntimeException ex) {
+                throw new QmqException("QMQ 实体类需要无参构造方法：" + type.getName(), ex);
+            }
+
+            this.readers = new PropertyReader[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                try {
+                    readers[i] = createReader(getName(field), field.getType(), lookup.unreflectSetter(field));
+                } catch (IllegalAccessException | RuntimeException ex) {
+                    throw new QmqException("QMQ 实体类属性解析出错：" + type.getName() + "." + field.getName(), ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按属性类型创建读取器，基本类型使用专用读取器避免装箱
+     * @param name 消息属性名称
+     * @param fieldType 属性类型
+     * @param setter 属性写入方法
+     * @return {@link PropertyReader}
+     */
+    private static PropertyReader createReader(String name, Class<?> fieldType, MethodHandle setter) {
+        if (fieldType == int.class) {
+            return new IntReader(name, setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+        }
+        if (fieldType == long.class) {
+            return new LongReader(name, setter.asType(MethodType.methodType(void.class, Object.class, long.class)));
+        }
+        if (fieldType == double.class) {
+            return new DoubleReader(name,
+                    setter.asType(MethodType.methodType(void.class, Object.class, double.class)));
+        }
+        if (fieldType == float.class) {
+            return new FloatReader(name, setter.asType(MethodType.methodType(void.class, Object.class, float.class)));
+        }
+        if (fieldType == boolean.class) {
+            return new BooleanReader(name,
+                    setter.asType(MethodType.methodType(void.class, Object.class, boolean.class)));
+        }
+        if (fieldType == String.class || fieldType == CharSequence.class) {
+            return new StringReader(name, setter.asType(SETTER_TYPE));
+        }
+
+        // 其余类型按声明类型查找读取器，byte、short、char 按包装类型处理
+        Class<?> readType = ClassUtils.resolvePrimitiveIfNecessary(fieldType);
+        QmqPropertyReader<Object> reader = QmqPropertyReaders.find(readType);
+        if (reader == null) {
+            throw new QmqException("QMQ 不支持解码的属性类型：" + fieldType.getName());
+        }
+        return new ObjectReader(name, setter.asType(SETTER_TYPE), reader);
+    }
+
+    /**
+     * 属性读取器，读取单个消息属性并写入实体类，消息中不存在该属性时跳过
+     */
+    private abstract static class PropertyReader {
+        /**
+         * 消息属性名称，已处理 {@link QmqAlias} 别名
+         */
+        final String name;
+
+        PropertyReader(String name) {
+            this.name = name;
+        }
+
+        abstract void read(Message message, Object bean) throws Throwable;
+    }
+
+    private static final class IntReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        IntReader(String name, MethodHandle setter) {
+            super(name);
+            this.setter = setter;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = message.getStringProperty(name);
+            if (value != null) {
+                setter.invokeExact(bean, Integer.parseInt(value));
+            }
+        }
+    }
+
+    private static final class LongReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        LongReader(String name, MethodHandle setter) {
+            super(name);
+            this.setter = setter;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = message.getStringProperty(name);
+            if (value != null) {
+                setter.invokeExact(bean, Long.parseLong(value));
+            }
+        }
+    }
+
+    private static final class DoubleReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        DoubleReader(String name, MethodHandle setter) {
+            super(name);
+            this.setter = setter;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = message.getStringProperty(name);
+            if (value != null) {
+                setter.invokeExact(bean, Double.parseDouble(value));
+            }
+        }
+    }
+
+    private static final class FloatReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        FloatReader(String name, MethodHandle setter) {
+            super(name);
+            this.setter = setter;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = message.getStringProperty(name);
+            if (value != null) {
+                setter.invokeExact(bean, Float.parseFloat(value));
+            }
+        }
+    }
+
+    private static final class BooleanReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        BooleanReader(String name, MethodHandle setter) {
+            super(name);
+            this.setter = setter;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = message.getStringProperty(name);
+            if (value != null) {
+                setter.invokeExact(bean, Boolean.parseBoolean(value));
+            }
+        }
+    }
+
+    /**
+     * 字符串读取器，普通属性中不存在时使用 {@link Message#getLargeString(String)} 读取超大字符串，压缩过的属性自动解压
+     */
+    private static final class StringReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        StringReader(String name, MethodHandle setter) {
+            super(name);
+            this.setter = setter;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = QmqCompression.getString(message, name);
+            if (StringUtils.hasLength(value)) {
+                setter.invokeExact(bean, (Object) value);
+            }
+        }
+    }
+
+    /**
+     * 引用类型读取器，使用按声明类型预先确定的读取器转换属性值
+     */
+    private static final class ObjectReader extends PropertyReader {
+        private final MethodHandle setter;
+
+        private final QmqPropertyReader<Object> reader;
+
+        ObjectReader(String name, MethodHandle setter, QmqPropertyReader<Object> reader) {
+            super(name);
+            this.setter = setter;
+            this.reader = reader;
+        }
+
+        @Override
+        void read(Message message, Object bean) throws Throwable {
+            String value = message.getStringProperty(name);
+            if (StringUtils.hasLength(value)) {
+                setter.invokeExact(bean, reader.read(message, name, value));
+            }
+        }
+    }
+}
@@ -0,0 +1,667 @@
+package xin.wjtree.qmq.internal;
+
+import org.springframework.core.ResolvableType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * 紧凑二进制编解码器，支持嵌套对象、集合、Map 及数组
+ * <ul>
+ *     <li>每个值以 1 个字节的类型标识开头，整数使用变长编码，字符串使用 UTF-8，不写入属性名称及类名</li>
+ *     <li>实体类按属性声明顺序写入属性值（父类属性在前），解码时按声明类型及泛型还原，生产者与消费者需使用相同的实体类定义；
+ *     新增属性请追加在末尾，旧版本消费者会跳过多出的属性</li>
+ *     <li>跳过静态、transient 属性及 {@link QmqIgnore} 注解修饰的属性；解码时 Object 类型的属性不支持实体类</li>
+ *     <li>二进制结果使用 Base64 编码后写入一个字符串属性</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqBinaryPayloadCodec extends AbstractQmqPayloadCodec {
+    public static final String NAME = "binary";
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte STRING = 7;
+    private static final byte CHAR = 8;
+    private static final byte BYTES = 9;
+    private static final byte ENUM = 10;
+    private static final byte DATE = 11;
+    private static final byte BIG_DECIMAL = 12;
+    private static final byte BIG_INTEGER = 13;
+    private static final byte UUID_VALUE = 14;
+    private static final byte LOCAL_DATE_TIME = 15;
+    private static final byte INSTANT = 16;
+    private static final byte LOCAL_DATE = 17;
+    private static final byte COLLECTION = 18;
+    private static final byte MAP = 19;
+    private static final byte ARRAY = 20;
+    private static final byte BEAN = 21;
+
+    /**
+     * 实体类结构缓存
+     */
+    private static final ClassValue<BeanModel> MODELS = new ClassValue<BeanModel>() {
+        @Override
+        protected BeanModel computeValue(Class<?> type) {
+            return new BeanModel(type);
+        }
+    };
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected String serialize(Object payload) {
+        return Base64.getEncoder().encodeToString(toBytes(payload));
+    }
+
+    @Override
+    protected <T> T deserialize(String content, Class<T> type) {
+        return fromBytes(Base64.getDecoder().decode(content), type);
+    }
+
+    /**
+     * 序列化为字节数组
+     * @param payload 消息内容
+     * @return 字节数组
+     */
+    public byte[] toBytes(Object payload) {
+        Output out = new Output();
+        try {
+            write(out, payload);
+        } catch (QmqException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new QmqException("QMQ 消息内容二进制序列化出错：" + payload.getClass().getName(), ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 从字节数组反序列化
+     * @param data 字节数组
+     * @param type 消息内容类型
+     * @param <T> 消息内容类型
+     * @return 消息内容
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T fromBytes(byte[] data, Class<T> type) {
+        try {
+            return (T) read(new Input(data), ResolvableType.forClass(type));
+        } catch (QmqException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new QmqException("QMQ 消息内容二进制反序列化出错：" + type.getName(), ex);
+        }
+    }
+
+    private static void write(Output out, Object value) throws Throwable {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeVarLong(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeInt(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeVarLong((Character) value);
+        } else if (value instanceof Enum) {
+            out.writeByte(ENUM);
+            out.writeString(((Enum<?>) value).name());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeVarLong(((Date) value).getTime());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeString(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeString(value.toString());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_VALUE);
+            out.writeLong(((UUID) value).getMostSignificantBits());
+            out.writeLong(((UUID) value).getLeastSignificantBits());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeString(value.toString());
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            out.writeVarLong(((Instant) value).getEpochSecond());
+            out.writeVarLong(((Instant) value).getNano());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeVarLong(((LocalDate) value).toEpochDay());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes, bytes.length);
+        } else if (value instanceof CharSequence) {
+            out.writeByte(STRING);
+            out.writeString(value.toString());
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            out.writeByte(COLLECTION);
+            out.writeVarLong(collection.size());
+            for (Object element : collection) {
+                write(out, element);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeVarLong(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey());
+                write(out, entry.getValue());
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            out.writeByte(ARRAY);
+            out.writeVarLong(length);
+            for (int i = 0; i < length; i++) {
+                write(out, Array.get(value, i));
+            }
+        } else {
+            BeanModel model = MODELS.get(value.getClass());
+            out.writeByte(BEAN);
+            out.writeVarLong(model.properties.length);
+            for (BeanProperty property : model.properties) {
+                write(out, (Object) property.getter.invokeExact(value));
+            }
+        }
+    }
+
+    private static Object read(Input in, ResolvableType type) throws Throwable {
+        Class<?> raw = type.resolve(Object.class);
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+            case LONG:
+                return toNumber(in.readVarLong(), raw);
+            case FLOAT:
+                return toDecimal(Float.intBitsToFloat(in.readInt()), raw);
+            case DOUBLE:
+                return toDecimal(Double.longBitsToDouble(in.readLong()), raw);
+            case STRING:
+                return in.readString();
+            case CHAR:
+                return (char) in.readVarLong();
+            case BYTES:
+                return in.readBytes((int) in.readVarLong());
+            case ENUM:
+                return toEnum(in.readString(), raw);
+            case DATE:
+                return new Date(in.readVarLong());
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readString());
+            case BIG_INTEGER:
+                return new BigInteger(in.readString());
+            case UUID_VALUE:
+                return new UUID(in.readLong(), in.readLong());
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(in.readString());
+            case INSTANT:
+                return Instant.ofEpochSecond(in.readVarLong(), in.readVarLong());
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.readVarLong());
+            case COLLECTION:
+            case ARRAY:
+                // 集合与数组可以互相还原，由声明类型决定
+                return readCollection(in, type, raw);
+            case MAP:
+                return readMap(in, type, raw);
+            case BEAN:
+                return readBean(in, type, raw);
+            default:
+                throw new QmqException("QMQ 消息内容二进制格式错误，未知的类型标识：" + tag);
+        }
+    }
+
+    /**
+     * 跳过一个值，用于忽略旧版本实体类中不存在的属性
+     */
+    private static void skip(Input in) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+            case TRUE:
+            case FALSE:
+                return;
+            case INT:
+            case LONG:
+            case CHAR:
+            case DATE:
+            case LOCAL_DATE:
+                in.readVarLong();
+                return;
+            case FLOAT:
+                in.readInt();
+                return;
+            case DOUBLE:
+                in.readLong();
+                return;
+            case STRING:
+            case ENUM:
+            case BIG_DECIMAL:
+            case BIG_INTEGER:
+            case LOCAL_DATE_TIME:
+            case BYTES:
+                in.skip((int) in.readVarLong());
+                return;
+            case UUID_VALUE:
+                in.readLong();
+                in.readLong();
+                return;
+            case INSTANT:
+                in.readVarLong();
+                in.readVarLong();
+                return;
+            case COLLECTION:
+            case ARRAY:
+            case BEAN:
+                for (long i = in.readVarLong(); i > 0; i--) {
+                    skip(in);
+                }
+                return;
+            case MAP:
+                for (long i = in.readVarLong(); i > 0; i--) {
+                    skip(in);
+                    skip(in);
+                }
+                return;
+            default:
+                throw new QmqException("QMQ 消息内容二进制格式错误，未知的类型标识：" + tag);
+        }
+    }
+
+    private static Object toNumber(long value, Class<?> raw) {
+        if (raw == long.class || raw == Long.class) {
+            return value;
+        }
+        if (raw == int.class || raw == Integer.class) {
+            return (int) value;
+        }
+        if (raw == short.class || raw == Short.class) {
+            return (short) value;
+        }
+        if (raw == byte.class || raw == Byte.class) {
+            return (byte) value;
+        }
+        if (raw == double.class || raw == Double.class) {
+            return (double) value;
+        }
+        if (raw == float.class || raw == Float.class) {
+            return (float) value;
+        }
+        if (raw == BigInteger.class) {
+            return BigInteger.valueOf(value);
+        }
+        if (raw == BigDecimal.class) {
+            return BigDecimal.valueOf(value);
+        }
+        // 未知的声明类型按原始大小还原
+        return value == (int) value ? (Object) (int) value : (Object) value;
+    }
+
+    private static Object toDecimal(double value, Class<?> raw) {
+        if (raw == float.class || raw == Float.class) {
+            return (float) value;
+        }
+        if (raw == BigDecimal.class) {
+            return BigDecimal.valueOf(value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toEnum(String name, Class<?> raw) {
+        if (!raw.isEnum()) {
+            return name;
+        }
+        return Enum.valueOf((Class<? extends Enum>) raw, name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readCollection(Input in, ResolvableType type, Class<?> raw) throws Throwable {
+        int size = (int) in.readVarLong();
+        if (raw.isArray()) {
+            return fillArray(in, type, raw, size);
+        }
+
+        Collection<Object> collection;
+        if (raw.isAssignableFrom(ArrayList.class)) {
+            // 包括声明类型为 Object 的情况
+            collection = new ArrayList<>(size);
+        } else if (raw.isAssignableFrom(LinkedHashSet.class)) {
+            collection = new LinkedHashSet<>(size * 4 / 3 + 1);
+        } else if (raw.isAssignableFrom(TreeSet.class) && SortedSet.class.isAssignableFrom(raw)) {
+            collection = new TreeSet<>();
+        } else {
+            collection = (Collection<Object>) newInstance(raw);
+        }
+
+        ResolvableType elementType = type.asCollection().getGeneric(0);
+        for (int i = 0; i < size; i++) {
+            collection.add(read(in, elementType));
+        }
+        return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object readMap(Input in, ResolvableType type, Class<?> raw) throws Throwable {
+        int size = (int) in.readVarLong();
+        Map<Object, Object> map;
+        if (raw.isAssignableFrom(LinkedHashMap.class)) {
+            map = new LinkedHashMap<>(size * 4 / 3 + 1);
+        } else if (raw.isAssignableFrom(TreeMap.class) && SortedMap.class.isAssignableFrom(raw)) {
+            map = new TreeMap<>();
+        } else {
+            map = (Map<Object, Object>) newInstance(raw);
+        }
+
+        ResolvableType mapType = type.asMap();
+        ResolvableType keyType = mapType.getGeneric(0);
+        ResolvableType valueType = mapType.getGeneric(1);
+        for (int i = 0; i < size; i++) {
+            map.put(read(in, keyType), read(in, valueType));
+        }
+        return map;
+    }
+
+    private static Object fillArray(Input in, ResolvableType type, Class<?> raw, int size) throws Throwable {
+        Object array = Array.newInstance(raw.getComponentType(), size);
+        ResolvableType componentType = type.getComponentType();
+        for (int i = 0; i < size; i++) {
+            Array.set(array, i, read(in, componentType));
+        }
+        return array;
+    }
+
+    private static Object readBean(Input in, ResolvableType type, Class<?> raw) throws Throwable {
+        if (raw == Object.class || raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            throw new QmqException("QMQ 二进制编解码器无法确定实体类类型，请使用具体的属性声明类型：" + type);
+        }
+
+        BeanModel model = MODELS.get(raw);
+        Object bean = model.newInstance();
+        int count = (int) in.readVarLong();
+        for (int i = 0; i < count; i++) {
+            if (i >= model.properties.length) {
+                // 生产者的实体类版本较新，跳过多出的属性
+                skip(in);
+                continue;
+            }
+            BeanProperty property = model.properties[i];
+            Object value = read(in, ResolvableType.forField(property.field, type));
+            if (value != null || !property.field.getType().isPrimitive()) {
+                property.setter.invokeExact(bean, value);
+            }
+        }
+        return bean;
+    }
+
+    private static Object newInstance(Class<?> raw) {
+        try {
+            Constructor<?> constructor = raw.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            throw new QmqException("QMQ 类型需要无参构造方法：" + raw.getName(), ex);
+        }
+    }
+
+    /**
+     * 实体类结构，属性按声明顺序排列，父类属性在前
+     */
+    private static final class BeanModel {
+        private final Class<?> type;
+        private final BeanProperty[] properties;
+        private volatile MethodHandle constructor;
+
+        BeanModel(Class<?> type) {
+            this.type = type;
+            List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> tempClass = type; tempClass != null && tempClass != Object.class;
+                 tempClass = tempClass.getSuperclass()) {
+                hierarchy.add(0, tempClass);
+            }
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            List<BeanProperty> list = new ArrayList<>();
+            for (Class<?> tempClass : hierarchy) {
+                for (Field field : tempClass.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+                            || field.isAnnotationPresent(QmqIgnore.class)) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                        list.add(new BeanProperty(field,
+                                lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class,
+                                        Object.class)),
+                                lookup.unreflectSetter(field).asType(MethodType.methodType(void.class,
+                                        Object.class, Object.class))));
+                    } catch (IllegalAccessException | RuntimeException ex) {
+                        throw new QmqException("QMQ 实体类属性解析出错：" + type.getName() + "." + field.getName(), ex);
+                    }
+                }
+            }
+            this.properties = list.toArray(new BeanProperty[0]);
+        }
+
+        Object newInstance() throws Throwable {
+            MethodHandle handle = constructor;
+            if (handle == null) {
+                try {
+                    Constructor<?> ctor = type.getDeclaredConstructor();
+                    ctor.setAccessible(true);
+                    handle = MethodHandles.lookup().unreflectConstructor(ctor)
+                            .asType(MethodType.methodType(Object.class));
+                } catch (NoSuchMethodException | IllegalAccessException | RuntimeException ex) {
+                    throw new QmqException("QMQ 实体类需要无参构造方法：" + type.getName(), ex);
+                }
+                constructor = handle;
+            }
+            return (Object) handle.invokeExact();
+        }
+    }
+
+    private static final class BeanProperty {
+        private final Field field;
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        BeanProperty(Field field, MethodHandle getter, MethodHandle setter) {
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * 可扩容的字节输出
+     */
+    private static final class Output {
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * ZigZag 变长编码，绝对值较小的整数仅占 1 ~ 2 个字节
+         */
+        void writeVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            ensure(10);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, bytes.length);
+        }
+
+        void writeBytes(byte[] bytes, int length) {
+            ensure(length);
+            System.arraycopy(bytes, 0, buffer, size, length);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+
+        private void ensure(int required) {
+            if (size + required > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + required));
+            }
+        }
+    }
+
+    /**
+     * 字节输入
+     */
+    private static final class Input {
+        private final byte[] buffer;
+        private int pos;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            check(1);
+            return buffer[pos++];
+        }
+
+        int readInt() {
+            check(4);
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                value = (value << 8) | (buffer[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readLong() {
+            check(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+            }
+            throw new QmqException("QMQ 消息内容二进制格式错误，变长整数过长");
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            check(length);
+            String value = new String(buffer, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+
+        byte[] readBytes(int length) {
+            check(length);
+            byte[] bytes = Arrays.copyOfRange(buffer, pos, pos + length);
+            pos += length;
+            return bytes;
+        }
+
+        void skip(int length) {
+            check(length);
+            pos += length;
+        }
+
+        private void check(int required) {
+            if (required < 0 || pos + required > buffer.length) {
+                throw new QmqException("QMQ 消息内容二进制格式错误，数据不完整");
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package xin.wjtree.qmq.internal;
+
+import org.springframework.util.StringUtils;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.constant.QmqHelper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 超大字符串属性的压缩
+ * <ul>
+ *     <li>字符串按 UTF-8 编码后达到阈值时使用 Deflate 压缩，再以 Base64 保存，压缩后没有变小时保持原样</li>
+ *     <li>压缩过的属性名称记录在 {@link QmqHelper#COMPRESSED_KEY} 属性中，消费时据此自动解压，与发送端是否启用无关</li>
+ *     <li>压缩阈值由 {@link QmqSendHandle} 持有，编码消息期间通过 {@link #begin(int)}、{@link #end()} 绑定到当前线程，
+ *     不同模板及应用上下文之间互不影响</li>
+ * </ul>
+ * @author Wang
+ */
+public final class QmqCompression {
+    /**
+     * 当前线程正在编码的消息使用的压缩阈值，单位：字节，未绑定时不压缩
+     */
+    private static final ThreadLocal<Integer> THRESHOLD = new ThreadLocal<>();
+
+    /**
+     * 多个压缩属性名称之间的分隔符
+     */
+    private static final char SEPARATOR = ',';
+
+    private QmqCompression() {
+    }
+
+    /**
+     * 开始在当前线程中编码消息，编码完成后需在 finally 中调用 {@link #end()}
+     * @param thresholdBytes 压缩阈值，单位：字节，不大于 0 表示不压缩
+     */
+    public static void begin(int thresholdBytes) {
+        if (thresholdBytes > 0) {
+            THRESHOLD.set(thresholdBytes);
+        }
+    }
+
+    /**
+     * 当前线程的消息编码完成，解除绑定的压缩阈值
+     */
+    public static void end() {
+        THRESHOLD.remove();
+    }
+
+    /**
+     * 当前线程绑定了压缩阈值且字符串达到压缩阈值时，压缩后装载消息属性
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @param value 消息属性值
+     * @return 是否已压缩装载，未压缩时由调用方按原样装载
+     */
+    public static boolean bindString(BaseMessage message, String key, String value) {
+        Integer threshold = THRESHOLD.get();
+        if (threshold == null || (long) value.length() * 3 < threshold) {
+            return false;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < threshold) {
+            return false;
+        }
+        byte[] compressed = deflate(bytes);
+        // Base64 编码后的长度
+        if ((compressed.length + 2) / 3 * 4 >= bytes.length) {
+            return false;
+        }
+
+        String content = Base64.getEncoder().encodeToString(compressed);
+        if (content.length() >= QmqHelper.LARGE_STRING_BYTES) {
+            message.setLargeString(key, content);
+        } else {
+            message.setProperty(key, content);
+        }
+        String keys = message.getStringProperty(QmqHelper.COMPRESSED_KEY);
+        message.setProperty(QmqHelper.COMPRESSED_KEY, keys == null ? key : keys + SEPARATOR + key);
+        return true;
+    }
+
+    /**
+     * 读取字符串属性，普通属性中不存在时读取超大字符串，属性被压缩过时自动解压
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @return 消息属性值，不存在时返回 null
+     */
+    public static String getString(Message message, String key) {
+        String value = message.getStringProperty(key);
+        if (value == null) {
+            value = message.getLargeString(key);
+        }
+        if (!StringUtils.hasLength(value) || !isCompressed(message, key)) {
+            return value;
+        }
+        try {
+            return new String(inflate(Base64.getDecoder().decode(value)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException | DataFormatException ex) {
+            throw new QmqException("QMQ 消息属性解压出错，消息ID：" + message.getMessageId() + "，属性：" + key, ex);
+        }
+    }
+
+    /**
+     * 判断消息属性是否被压缩过
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @return true or false
+     */
+    private static boolean isCompressed(Message message, String key) {
+        String keys = message.getStringProperty(QmqHelper.COMPRESSED_KEY);
+        if (keys == null) {
+            return false;
+        }
+        for (int start = 0; start <= keys.length(); ) {
+            int end = keys.indexOf(SEPARATOR, start);
+            if (end < 0) {
+                end = keys.length();
+            }
+            if (end - start == key.length() && keys.startsWith(key, start)) {
+                return true;
+            }
+            start = end + 1;
+        }
+        return false;
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        // 优先压缩速度，大文本的压缩率与默认级别相差不大
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated deflate data");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
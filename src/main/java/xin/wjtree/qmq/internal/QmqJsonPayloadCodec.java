@@ -0,0 +1,45 @@
+package xin.wjtree.qmq.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JSON 编解码器，需要 Jackson，支持嵌套对象及集合
+ * @author Wang
+ */
+public class QmqJsonPayloadCodec extends AbstractQmqPayloadCodec {
+    public static final String NAME = "json";
+
+    private final ObjectMapper objectMapper;
+
+    public QmqJsonPayloadCodec() {
+        this(new ObjectMapper().findAndRegisterModules());
+    }
+
+    public QmqJsonPayloadCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    protected String serialize(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            throw new QmqException("QMQ 消息内容 JSON 序列化出错：" + payload.getClass().getName(), ex);
+        }
+    }
+
+    @Override
+    protected <T> T deserialize(String content, Class<T> type) {
+        try {
+            return objectMapper.readValue(content, type);
+        } catch (JsonProcessingException ex) {
+            throw new QmqException("QMQ 消息内容 JSON 反序列化出错：" + type.getName(), ex);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 消息序列化工具，用于在本地保存待发送的消息
+ * <ul>
+ *     <li>保存消息ID、主题、标签、延迟时间及业务属性，跳过 qmq_ 开头的 QMQ 内部属性</li>
+ *     <li>属性值保留 String、int、long、boolean、float、double 类型，其余类型按字符串保存</li>
+ *     <li>超大字符串在 QMQ 内部已拆分为多个普通属性，按普通属性保存和恢复</li>
+ *     <li>反序列化时已过延迟时间的消息不再设置延迟时间，恢复为立即发送的消息</li>
+ * </ul>
+ * @author Wang
+ */
+public final class QmqMessageSerializer {
+    /**
+     * 序列化格式版本
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * QMQ 内部属性前缀
+     */
+    private static final String INTERNAL_PREFIX = "qmq_";
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_DOUBLE = 6;
+
+    private QmqMessageSerializer() {
+    }
+
+    /**
+     * 序列化消息
+     * @param message 消息对象，必须是 {@link BaseMessage}
+     * @return 字节数组
+     */
+    public static byte[] serialize(Message message) {
+        if (!(message instanceof BaseMessage)) {
+            throw new QmqException("QMQ 仅支持序列化 BaseMessage：" + (message != null ? message.getClass() : null));
+        }
+        BaseMessage baseMessage = (BaseMessage) message;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            writeString(out, baseMessage.getMessageId());
+            writeString(out, baseMessage.getSubject());
+            Date delay = baseMessage.getScheduleReceiveTime();
+            out.writeLong(delay != null ? delay.getTime() : -1L);
+
+            out.writeInt(baseMessage.getTags().size());
+            for (String tag : baseMessage.getTags()) {
+                writeString(out, tag);
+            }
+
+            int count = 0;
+            for (Map.Entry<String, Object> entry : baseMessage.getAttrs().entrySet()) {
+                if (isBusinessAttr(entry)) {
+                    count++;
+                }
+            }
+            out.writeInt(count);
+            for (Map.Entry<String, Object> entry : baseMessage.getAttrs().entrySet()) {
+                if (isBusinessAttr(entry)) {
+                    writeString(out, entry.getKey());
+                    writeValue(out, entry.getValue());
+                }
+            }
+        } catch (IOException ex) {
+            throw new QmqException("QMQ 消息序列化出错，消息主题：" + baseMessage.getSubject(), ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 反序列化消息，保留原消息ID，已过延迟时间时不设置延迟时间
+     * @param data 字节数组
+     * @return {@link BaseMessage}
+     */
+    public static BaseMessage deserialize(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new QmqException("QMQ 不支持的消息序列化版本：" + version);
+            }
+            BaseMessage message = new BaseMessage(readString(in), readString(in));
+            long delay = in.readLong();
+            // 已过延迟时间的消息不再设置延迟，立即发送；QMQ 不接受早于当前时间的延迟时间
+            if (delay > System.currentTimeMillis()) {
+                message.setDelayTime(new Date(delay));
+            }
+
+            int tagCount = in.readInt();
+            for (int i = 0; i < tagCount; i++) {
+                message.addTag(readString(in));
+            }
+
+            int attrCount = in.readInt();
+            for (int i = 0; i < attrCount; i++) {
+                readValue(in, message, readString(in));
+            }
+            return message;
+        } catch (IOException ex) {
+            throw new QmqException("QMQ 消息反序列化出错", ex);
+        }
+    }
+
+    private static boolean isBusinessAttr(Map.Entry<String, Object> entry) {
+        return entry.getValue() != null && !entry.getKey().startsWith(INTERNAL_PREFIX);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(TYPE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Float) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble((Double) value);
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void readValue(DataInputStream in, BaseMessage message, String key) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_INT:
+                message.setProperty(key, in.readInt());
+                break;
+            case TYPE_LONG:
+                message.setProperty(key, in.readLong());
+                break;
+            case TYPE_BOOLEAN:
+                message.setProperty(key, in.readBoolean());
+                break;
+            case TYPE_FLOAT:
+                message.setProperty(key, in.readFloat());
+                break;
+            case TYPE_DOUBLE:
+                message.setProperty(key, in.readDouble());
+                break;
+            case TYPE_STRING:
+                message.setProperty(key, readString(in));
+                break;
+            default:
+                throw new QmqException("QMQ 不支持的消息属性类型：" + type);
+        }
+    }
+
+    /**
+     * 写入字符串，使用 int 长度前缀，不受 {@link DataOutputStream#writeUTF(String)} 64K 的限制
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
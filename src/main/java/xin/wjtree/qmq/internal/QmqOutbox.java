@@ -0,0 +1,222 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 事务发件箱，消息保存在业务数据库的本地表中，与业务数据在同一个事务中提交
+ * <ul>
+ *     <li>通过 {@link JdbcTemplate} 写入，存在 Spring 事务时使用事务绑定的连接</li>
+ *     <li>消息使用 {@link QmqMessageSerializer} 序列化，保留原消息ID，消费者可据此去重</li>
+ *     <li>按失败次数、自增主键顺序分批读取到达重试时间的记录，新写入的记录优先于失败过的记录</li>
+ *     <li>转发成功的记录批量删除，失败的记录批量累加失败次数并推迟下次重试时间</li>
+ *     <li>配置了死信表时，失败次数达到上限或无法反序列化的记录移入死信表；未配置时记录始终保留在发件箱中</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqOutbox {
+    private static final Logger log = LoggerFactory.getLogger(QmqOutbox.class);
+
+    /**
+     * 表名只允许字母、数字、下划线及库名分隔符
+     */
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z0-9_.]+");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String tableName;
+
+    private final String insertSql;
+
+    private final String selectSql;
+
+    private final String deleteSql;
+
+    private final String failSql;
+
+    /**
+     * 死信表名，为空表示不移出任何记录
+     */
+    private final String deadLetterTableName;
+
+    private final String deadLetterSql;
+
+    public QmqOutbox(JdbcTemplate jdbcTemplate, String tableName) {
+        this(jdbcTemplate, tableName, null);
+    }
+
+    public QmqOutbox(JdbcTemplate jdbcTemplate, String tableName, String deadLetterTableName) {
+        if (tableName == null || !TABLE_NAME.matcher(tableName).matches()) {
+            throw new QmqException("QMQ 事务发件箱表名不合法：" + tableName);
+        }
+        if (deadLetterTableName != null && !TABLE_NAME.matcher(deadLetterTableName).matches()) {
+            throw new QmqException("QMQ 事务发件箱死信表名不合法：" + deadLetterTableName);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.deadLetterTableName = deadLetterTableName;
+        this.insertSql = "insert into " + tableName + " (subject, message_id, content) values (?, ?, ?)";
+        this.selectSql = "select id, content, attempts from " + tableName
+                + " where next_retry_millis <= ? order by attempts, id";
+        this.deleteSql = "delete from " + tableName + " where id = ?";
+        this.failSql = "update " + tableName + " set attempts = attempts + 1, next_retry_millis = ? where id = ?";
+        this.deadLetterSql = deadLetterTableName == null ? null : "insert into " + deadLetterTableName
+                + " (subject, message_id, content, attempts, create_time) select subject, message_id, content, "
+                + "attempts + 1, create_time from " + tableName + " where id = ?";
+    }
+
+    /**
+     * 写入消息，存在事务时随事务提交或回滚
+     * @param message 消息对象
+     */
+    public void append(Message message) {
+        jdbcTemplate.update(insertSql, message.getSubject(), message.getMessageId(),
+                QmqMessageSerializer.serialize(message));
+    }
+
+    /**
+     * 按失败次数、写入顺序读取到达重试时间的消息
+     * @param limit 最大消息数量
+     * @param nowMillis 当前时间戳，单位：毫秒
+     * @return 消息记录，没有消息时返回空列表
+     */
+    public List<Entry> read(int limit, long nowMillis) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(selectSql);
+            statement.setLong(1, nowMillis);
+            // 使用 maxRows 限制数量，不依赖 limit 等方言语法
+            statement.setMaxRows(limit);
+            return statement;
+        }, (rs, rowNum) -> {
+            long id = rs.getLong(1);
+            int attempts = rs.getInt(3);
+            try {
+                return new Entry(id, QmqMessageSerializer.deserialize(rs.getBytes(2)), attempts);
+            } catch (RuntimeException ex) {
+                // 无法反序列化的记录返回空消息，由转发器移入死信表，避免整批读取失败
+                log.error("QMQ outbox message deserialize failed, table: {}, id: {}", tableName, id, ex);
+                return new Entry(id, null, attempts);
+            }
+        });
+    }
+
+    /**
+     * 批量删除已转发的消息
+     * @param ids 记录ID
+     */
+    public void delete(List<Long> ids) {
+        batchUpdate(deleteSql, ids);
+    }
+
+    /**
+     * 批量累加转发失败的消息的失败次数，并设置下次重试时间
+     * @param nextRetryMillis 记录ID -> 下次重试的时间戳，单位：毫秒
+     */
+    public void recordFailure(Map<Long, Long> nextRetryMillis) {
+        if (nextRetryMillis.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(nextRetryMillis.size());
+        for (Map.Entry<Long, Long> entry : nextRetryMillis.entrySet()) {
+            args.add(new Object[]{entry.getValue(), entry.getKey()});
+        }
+        jdbcTemplate.batchUpdate(failSql, args);
+    }
+
+    /**
+     * 批量将无法转发的消息复制到死信表后从发件箱删除，未配置死信表时抛出异常，不会删除任何记录
+     * @param ids 记录ID
+     */
+    public void moveToDeadLetter(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (deadLetterSql == null) {
+            throw new QmqException("QMQ 事务发件箱未配置死信表，不能移出记录：" + tableName);
+        }
+        batchUpdate(deadLetterSql, ids);
+        batchUpdate(deleteSql, ids);
+    }
+
+    /**
+     * 是否配置了死信表
+     * @return 配置了死信表时返回 true
+     */
+    public boolean hasDeadLetterTable() {
+        return deadLetterSql != null;
+    }
+
+    /**
+     * 获取发件箱所在的数据源，在该数据源的事务中发送的消息才会写入发件箱
+     * @return 数据源
+     */
+    public DataSource getDataSource() {
+        return jdbcTemplate.getDataSource();
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public String getDeadLetterTableName() {
+        return deadLetterTableName;
+    }
+
+    private void batchUpdate(String sql, List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            args.add(new Object[]{id});
+        }
+        jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    /**
+     * 发件箱中的一条消息
+     */
+    public static final class Entry {
+        private final long id;
+
+        private final BaseMessage message;
+
+        private final int attempts;
+
+        Entry(long id, BaseMessage message, int attempts) {
+            this.id = id;
+            this.message = message;
+            this.attempts = attempts;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * 获取消息对象
+         * @return 消息对象，无法反序列化时为空
+         */
+        public BaseMessage getMessage() {
+            return message;
+        }
+
+        /**
+         * 获取已失败的转发次数
+         * @return 失败次数
+         */
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import xin.wjtree.qmq.constant.QmqHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 后台转发事务发件箱中已提交的消息
+ * <ul>
+ *     <li>按固定间隔或事务提交后被唤醒时，分批读取发件箱，保留原消息ID发送，等待本批回调</li>
+ *     <li>发送成功的记录批量删除，失败的记录累加失败次数，按转发间隔指数退避到 maxBackoffMillis 后重试</li>
+ *     <li>超时未回调的记录不计失败次数，也不重新转发，收到回调后在下一轮按结果删除或退避</li>
+ *     <li>配置了死信表时，失败次数达到 maxAttempts 或无法反序列化的记录移入死信表；未配置时保留在发件箱中继续退避重试</li>
+ *     <li>多个实例同时转发同一张表时可能重复发送，消费者可开启 QmqListener 的 idempotent 去重</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqOutboxRelay implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(QmqOutboxRelay.class);
+
+    /**
+     * 事务发件箱
+     */
+    private final QmqOutbox outbox;
+
+    /**
+     * 转发使用的消息发送者
+     */
+    private final MessageProducer producer;
+
+    /**
+     * 每批转发的最大消息数量
+     */
+    private final int batchSize;
+
+    /**
+     * 等待本批回调的超时时间，单位：毫秒
+     */
+    private final long timeoutMillis;
+
+    /**
+     * 转发间隔，同时是失败重试的初始退避时间，单位：毫秒
+     */
+    private final long intervalMillis;
+
+    /**
+     * 最大转发次数，配置了死信表时失败次数达到该值的记录移入死信表
+     */
+    private final int maxAttempts;
+
+    /**
+     * 失败重试的最大退避时间，单位：毫秒
+     */
+    private final long maxBackoffMillis;
+
+    /**
+     * 已发送但超时未回调的记录ID，收到回调前不再转发
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 超时后才收到的回调结果，由转发线程在下一轮处理
+     */
+    private final Queue<Result> lateResults = new ConcurrentLinkedQueue<>();
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 是否已提交唤醒任务，避免多个事务同时提交时重复排队
+     */
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    public QmqOutboxRelay(QmqOutbox outbox, MessageProducer producer, int batchSize, long intervalMillis,
+            long timeoutMillis) {
+        this(outbox, producer, batchSize, intervalMillis, timeoutMillis, QmqHelper.DEFAULT_OUTBOX_MAX_ATTEMPTS);
+    }
+
+    public QmqOutboxRelay(QmqOutbox outbox, MessageProducer producer, int batchSize, long intervalMillis,
+            long timeoutMillis, int maxAttempts) {
+        this(outbox, producer, batchSize, intervalMillis, timeoutMillis, maxAttempts,
+                QmqHelper.DEFAULT_OUTBOX_MAX_BACKOFF_MILLIS);
+    }
+
+    public QmqOutboxRelay(QmqOutbox outbox, MessageProducer producer, int batchSize, long intervalMillis,
+            long timeoutMillis, int maxAttempts, long maxBackoffMillis) {
+        this.outbox = outbox;
+        this.producer = producer;
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.intervalMillis = intervalMillis;
+        this.maxAttempts = maxAttempts;
+        this.maxBackoffMillis = Math.max(maxBackoffMillis, intervalMillis);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("qmq-outbox-relay-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::relay, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 唤醒转发线程，事务提交后调用
+     */
+    public void wakeup() {
+        if (!wakeupPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(() -> {
+                wakeupPending.set(false);
+                relay();
+            });
+        } catch (RejectedExecutionException ex) {
+            // 应用关闭中，剩余消息下次启动后转发
+            wakeupPending.set(false);
+        }
+    }
+
+    public QmqOutbox getOutbox() {
+        return outbox;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 转发发件箱中到达重试时间的消息，直到发件箱为空或一批消息全部失败、未回调
+     */
+    void relay() {
+        try {
+            applyLateResults();
+            List<QmqOutbox.Entry> entries;
+            while (!Thread.currentThread().isInterrupted()
+                    && !(entries = outbox.read(batchSize, System.currentTimeMillis())).isEmpty()) {
+                List<QmqOutbox.Entry> pending = new ArrayList<>(entries.size());
+                for (QmqOutbox.Entry entry : entries) {
+                    if (!inFlight.contains(entry.getId())) {
+                        pending.add(entry);
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                // 失败的记录推迟了重试时间，未回调的记录在转发中，下次读取时都不会重复发送
+                int retained = send(pending);
+                if (retained == pending.size() || entries.size() < batchSize) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.error("QMQ outbox relay failed, table: {}", outbox.getTableName(), ex);
+        }
+    }
+
+    /**
+     * 发送一批消息并等待回调，再按回调结果删除、退避或移入死信表，超时未回调的记录保持转发中
+     * @param entries 消息记录
+     * @return 失败及超时未回调、保留在发件箱中的记录数量
+     */
+    private int send(List<QmqOutbox.Entry> entries) throws InterruptedException {
+        Outcomes outcomes = new Outcomes();
+        List<QmqOutbox.Entry> sending = new ArrayList<>(entries.size());
+        for (QmqOutbox.Entry entry : entries) {
+            if (entry.getMessage() == null) {
+                outcomes.add(entry, false);
+            } else {
+                sending.add(entry);
+            }
+        }
+
+        RelayBatch batch = new RelayBatch(sending);
+        for (QmqOutbox.Entry entry : sending) {
+            inFlight.add(entry.getId());
+            try {
+                producer.sendMessage(entry.getMessage(), batch);
+            } catch (RuntimeException ex) {
+                log.warn("QMQ outbox relay send rejected, subject: {}, messageId: {}",
+                        entry.getMessage().getSubject(), entry.getMessage().getMessageId(), ex);
+                batch.onFailed(entry.getMessage());
+            }
+        }
+        boolean completed = batch.await(timeoutMillis);
+
+        // 关闭后到达的回调进入 lateResults，未回调的记录保持转发中
+        Map<String, Boolean> results = batch.close();
+        int unacked = 0;
+        for (QmqOutbox.Entry entry : sending) {
+            Boolean success = results.get(entry.getMessage().getMessageId());
+            if (success == null) {
+                unacked++;
+            } else {
+                inFlight.remove(entry.getId());
+                outcomes.add(entry, success);
+            }
+        }
+        outcomes.apply();
+
+        if (log.isDebugEnabled()) {
+            log.debug("QMQ outbox relayed, total: {}, failed: {}, deadLetter: {}, unacked: {}, completed: {}",
+                    entries.size(), outcomes.failed.size(), outcomes.deadLetters.size(), unacked, completed);
+        }
+        return outcomes.failed.size() + unacked;
+    }
+
+    /**
+     * 处理超时后才收到的回调结果
+     */
+    private void applyLateResults() {
+        Outcomes outcomes = new Outcomes();
+        Result result;
+        while ((result = lateResults.poll()) != null) {
+            inFlight.remove(result.entry.getId());
+            outcomes.add(result.entry, result.success);
+        }
+        outcomes.apply();
+    }
+
+    /**
+     * 计算第 attempts + 1 次失败后的退避时间，从转发间隔开始每次翻倍，不超过 maxBackoffMillis
+     * @param attempts 本次之前的失败次数
+     * @return 退避时间，单位：毫秒
+     */
+    long backoffMillis(int attempts) {
+        int shift = Math.min(attempts, 30);
+        return intervalMillis > maxBackoffMillis >> shift ? maxBackoffMillis : intervalMillis << shift;
+    }
+
+    /**
+     * 一批记录的处理结果，按结果批量更新发件箱
+     */
+    private final class Outcomes {
+        private final List<Long> sent = new ArrayList<>();
+
+        /**
+         * 记录ID -> 下次重试的时间戳
+         */
+        private final Map<Long, Long> failed = new LinkedHashMap<>();
+
+        private final List<Long> deadLetters = new ArrayList<>();
+
+        private final List<Long> exhausted = new ArrayList<>();
+
+        void add(QmqOutbox.Entry entry, boolean success) {
+            if (success) {
+                sent.add(entry.getId());
+                return;
+            }
+            boolean exceeded = entry.getMessage() == null || entry.getAttempts() + 1 >= maxAttempts;
+            if (exceeded && outbox.hasDeadLetterTable()) {
+                deadLetters.add(entry.getId());
+                return;
+            }
+            // 未配置死信表时不删除任何已提交的消息，达到上限后按最大退避时间继续重试
+            if (exceeded && entry.getAttempts() + 1 == maxAttempts) {
+                exhausted.add(entry.getId());
+            }
+            long backoff = exceeded ? maxBackoffMillis : backoffMillis(entry.getAttempts());
+            failed.put(entry.getId(), System.currentTimeMillis() + backoff);
+        }
+
+        void apply() {
+            outbox.delete(sent);
+            outbox.recordFailure(failed);
+            if (!deadLetters.isEmpty()) {
+                log.error("QMQ outbox messages exceeded max attempts or undecodable, moved to dead letter table, "
+                        + "table: {}, deadLetterTable: {}, ids: {}", outbox.getTableName(),
+                        outbox.getDeadLetterTableName(), deadLetters);
+                outbox.moveToDeadLetter(deadLetters);
+            }
+            if (!exhausted.isEmpty()) {
+                log.error("QMQ outbox messages exceeded max attempts without dead letter table, keep retrying every "
+                        + "{} ms, table: {}, ids: {}", maxBackoffMillis, outbox.getTableName(), exhausted);
+            }
+        }
+    }
+
+    /**
+     * 一批消息共用的发送状态监听器，等待超时后关闭，之后到达的回调交给下一轮处理
+     */
+    private final class RelayBatch implements MessageSendStateListener {
+        /**
+         * 消息ID -> 发件箱记录
+         */
+        private final Map<String, QmqOutbox.Entry> entries;
+
+        /**
+         * 消息ID -> 回调结果
+         */
+        private final Map<String, Boolean> results;
+
+        private final CountDownLatch latch;
+
+        private boolean closed;
+
+        RelayBatch(List<QmqOutbox.Entry> sending) {
+            this.entries = new HashMap<>(sending.size() * 2);
+            for (QmqOutbox.Entry entry : sending) {
+                entries.put(entry.getMessage().getMessageId(), entry);
+            }
+            this.results = new HashMap<>(sending.size() * 2);
+            this.latch = new CountDownLatch(sending.size());
+        }
+
+        @Override
+        public void onSuccess(Message message) {
+            complete(message, true);
+        }
+
+        @Override
+        public void onFailed(Message message) {
+            complete(message, false);
+        }
+
+        boolean await(long timeoutMillis) throws InterruptedException {
+            return latch.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        synchronized Map<String, Boolean> close() {
+            closed = true;
+            return new HashMap<>(results);
+        }
+
+        private void complete(Message message, boolean success) {
+            synchronized (this) {
+                if (!closed) {
+                    results.put(message.getMessageId(), success);
+                    latch.countDown();
+                    return;
+                }
+            }
+            QmqOutbox.Entry entry = entries.get(message.getMessageId());
+            if (entry != null) {
+                lateResults.add(new Result(entry, success));
+            }
+        }
+    }
+
+    /**
+     * 超时后才收到的回调结果
+     */
+    private static final class Result {
+        private final QmqOutbox.Entry entry;
+
+        private final boolean success;
+
+        Result(QmqOutbox.Entry entry, boolean success) {
+            this.entry = entry;
+            this.success = success;
+        }
+    }
+}
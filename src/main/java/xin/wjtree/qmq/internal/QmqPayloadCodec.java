@@ -0,0 +1,37 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+/**
+ * 消息内容编解码器，决定实体类如何写入及读取消息
+ * <ul>
+ *     <li>内置 properties（默认，每个属性对应一个消息属性）、binary（紧凑二进制）及 json（需要 Jackson）</li>
+ *     <li>可通过 spring.qmq.template.payload-codecs 按主题选择，自定义编解码器注册为 Spring Bean 即可使用</li>
+ * </ul>
+ * @author Wang
+ * @see QmqPayloadCodecs
+ */
+public interface QmqPayloadCodec {
+    /**
+     * 编解码器名称，用于配置及消费时识别消息使用的编解码器
+     * @return 名称
+     */
+    String getName();
+
+    /**
+     * 将消息内容写入消息
+     * @param payload 消息内容，不为空
+     * @param message 消息对象
+     */
+    void encode(Object payload, BaseMessage message);
+
+    /**
+     * 从消息中读取消息内容
+     * @param message 消息对象
+     * @param type 消息内容类型
+     * @param <T> 消息内容类型
+     * @return 消息内容
+     */
+    <T> T decode(Message message, Class<T> type);
+}
@@ -0,0 +1,79 @@
+package xin.wjtree.qmq.internal;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+import qunar.tc.qmq.Message;
+import xin.wjtree.qmq.constant.QmqHelper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 消息内容编解码器注册表
+ * <ul>
+ *     <li>内置 properties、binary，存在 Jackson 时注册 json</li>
+ *     <li>消费时根据 {@link QmqHelper#PAYLOAD_CODEC_KEY} 属性选择编解码器，没有该属性时使用 properties</li>
+ * </ul>
+ * @author Wang
+ */
+public final class QmqPayloadCodecs {
+    /**
+     * 默认的编解码器
+     */
+    public static final QmqPayloadCodec PROPERTIES = new QmqPropertiesPayloadCodec();
+
+    /**
+     * 已注册的编解码器
+     */
+    private static final ConcurrentMap<String, QmqPayloadCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(PROPERTIES);
+        register(new QmqBinaryPayloadCodec());
+        if (ClassUtils.isPresent("com.fasterxml.jackson.databind.ObjectMapper",
+                QmqPayloadCodecs.class.getClassLoader())) {
+            register(new QmqJsonPayloadCodec());
+        }
+    }
+
+    private QmqPayloadCodecs() {
+    }
+
+    /**
+     * 注册编解码器，覆盖同名的已有编解码器
+     * @param codec 编解码器
+     */
+    public static void register(QmqPayloadCodec codec) {
+        if (codec == null || !StringUtils.hasText(codec.getName())) {
+            throw new QmqException("QMQ 消息内容编解码器及其名称不能为空");
+        }
+        CODECS.put(codec.getName(), codec);
+    }
+
+    /**
+     * 获取指定名称的编解码器
+     * @param name 编解码器名称，为空时返回 {@link #PROPERTIES}
+     * @return 编解码器
+     */
+    public static QmqPayloadCodec forName(String name) {
+        if (!StringUtils.hasText(name)) {
+            return PROPERTIES;
+        }
+        QmqPayloadCodec codec = CODECS.get(name);
+        if (codec == null) {
+            throw new QmqException("QMQ 未找到消息内容编解码器：" + name + "，已注册：" + CODECS.keySet());
+        }
+        return codec;
+    }
+
+    /**
+     * 按消息中记录的编解码器读取消息内容
+     * @param message 消息对象
+     * @param type 消息内容类型
+     * @param <T> 消息内容类型
+     * @return 消息内容
+     */
+    public static <T> T decode(Message message, Class<T> type) {
+        return forName(message.getStringProperty(QmqHelper.PAYLOAD_CODEC_KEY)).decode(message, type);
+    }
+}
@@ -0,0 +1,116 @@
+package xin.wjtree.qmq.internal;
+
+import org.springframework.beans.factory.DisposableBean;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.producer.MessageProducerProvider;
+import xin.wjtree.qmq.constant.QmqHelper;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 独立的消息发送者池，按主题隔离发送队列及发送线程
+ * <ul>
+ *     <li>每个池是一个单独的 {@link MessageProducerProvider}，大流量主题不会阻塞其他池中的主题</li>
+ *     <li>主题按名称路由到所属的池，未配置的主题使用默认的消息发送者，一个主题只能属于一个池</li>
+ *     <li>容器关闭时销毁全部池</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqProducerPools implements DisposableBean {
+    /**
+     * 池名称 -> 消息发送者
+     */
+    private final Map<String, MessageProducerProvider> pools = new LinkedHashMap<>();
+
+    /**
+     * 主题名称 -> 池名称
+     */
+    private final Map<String, String> routes = new HashMap<>();
+
+    /**
+     * 添加池，消息发送者需已初始化
+     * @param name 池名称
+     * @param producer 消息发送者
+     * @param subjects 使用该池发送的主题名称
+     */
+    public void addPool(String name, MessageProducerProvider producer, Collection<String> subjects) {
+        if (QmqHelper.DEFAULT_POOL_NAME.equals(name) || pools.containsKey(name)) {
+            throw new QmqException("QMQ 消息发送者池名称重复或与默认名称相同：" + name);
+        }
+        for (String subject : subjects) {
+            String existing = routes.putIfAbsent(subject, name);
+            if (existing != null) {
+                throw new QmqException("QMQ 主题 " + subject + " 同时属于消息发送者池 " + existing + " 和 " + name);
+            }
+        }
+        pools.put(name, producer);
+    }
+
+    /**
+     * 获取主题所属的池名称
+     * @param subject 主题名称
+     * @return 池名称，未配置时为空
+     */
+    public String getPoolName(String subject) {
+        return routes.get(subject);
+    }
+
+    /**
+     * 获取全部池
+     * @return 池名称 -> 消息发送者
+     */
+    public Map<String, MessageProducer> getPools() {
+        return Collections.unmodifiableMap(pools);
+    }
+
+    /**
+     * 创建按主题路由的消息发送者，用于补发、转发等不经过 QmqTemplate 的场景
+     * @param defaultProducer 未配置池的主题使用的消息发送者
+     * @return {@link MessageProducer}
+     */
+    public MessageProducer routing(MessageProducer defaultProducer) {
+        return new RoutingMessageProducer(defaultProducer);
+    }
+
+    @Override
+    public void destroy() {
+        pools.values().forEach(MessageProducerProvider::destroy);
+    }
+
+    private MessageProducer route(String subject, MessageProducer defaultProducer) {
+        String name = routes.get(subject);
+        return name != null ? pools.get(name) : defaultProducer;
+    }
+
+    /**
+     * 按消息主题选择池的消息发送者
+     */
+    private final class RoutingMessageProducer implements MessageProducer {
+        private final MessageProducer defaultProducer;
+
+        RoutingMessageProducer(MessageProducer defaultProducer) {
+            this.defaultProducer = defaultProducer;
+        }
+
+        @Override
+        public Message generateMessage(String subject) {
+            return route(subject, defaultProducer).generateMessage(subject);
+        }
+
+        @Override
+        public void sendMessage(Message message) {
+            route(message.getSubject(), defaultProducer).sendMessage(message);
+        }
+
+        @Override
+        public void sendMessage(Message message, MessageSendStateListener listener) {
+            route(message.getSubject(), defaultProducer).sendMessage(message, listener);
+        }
+    }
+}
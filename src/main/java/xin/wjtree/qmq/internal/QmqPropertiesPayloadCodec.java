@@ -0,0 +1,28 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+/**
+ * 默认的编解码器，实体类的每个属性对应一个消息属性，不支持嵌套对象及集合
+ * @author Wang
+ * @see QmqBeanCodec
+ */
+public class QmqPropertiesPayloadCodec implements QmqPayloadCodec {
+    public static final String NAME = "properties";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void encode(Object payload, BaseMessage message) {
+        QmqBeanCodec.forClass(payload.getClass()).encode(payload, message);
+    }
+
+    @Override
+    public <T> T decode(Message message, Class<T> type) {
+        return QmqBeanCodec.forClass(type).decode(message);
+    }
+}
@@ -0,0 +1,20 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.base.BaseMessage;
+
+/**
+ * 消息属性绑定器，将指定类型的属性值装载到消息对象
+ * @param <T> 属性值类型
+ * @author Wang
+ * @see QmqPropertyBinders#register(Class, QmqPropertyBinder)
+ */
+@FunctionalInterface
+public interface QmqPropertyBinder<T> {
+    /**
+     * 装载消息属性
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @param value 消息属性值，不为空
+     */
+    void bind(BaseMessage message, String key, T value);
+}
@@ -0,0 +1,164 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 消息属性绑定器注册表
+ * <p>QMQ 目前支持的数据类型包含：</p>
+ * <ol>
+ *     <li>{@link Boolean}</li>
+ *     <li>{@link Integer}</li>
+ *     <li>{@link Long}</li>
+ *     <li>{@link Float}</li>
+ *     <li>{@link Double}</li>
+ *     <li>{@link Date}</li>
+ *     <li>{@link String}</li>
+ * </ol>
+ * <p>其余类型默认按以下规则转换：</p>
+ * <ul>
+ *     <li>{@link Byte}、{@link Short} 转换为 int，{@link BigInteger} 转换为 long，{@link BigDecimal} 转换为 double</li>
+ *     <li>{@link Character}、{@link CharSequence}、{@link UUID} 转换为字符串，枚举使用 {@link Enum#name()}</li>
+ *     <li>{@link LocalDateTime}、{@link Instant} 转换为 {@link Date}</li>
+ * </ul>
+ * <p>如需支持其他类型，请在首次发送消息前调用 {@link #register(Class, QmqPropertyBinder)} 注册自定义绑定器；
+ * 查找绑定器时依次匹配值的类型、父类及接口</p>
+ * @author Wang
+ */
+public final class QmqPropertyBinders {
+    /**
+     * 已注册的绑定器
+     */
+    private static final ConcurrentMap<Class<?>, QmqPropertyBinder<?>> BINDERS = new ConcurrentHashMap<>();
+
+    /**
+     * 按值类型解析后的绑定器缓存，注册新的绑定器时清空
+     */
+    private static final ConcurrentMap<Class<?>, QmqPropertyBinder<Object>> RESOLVED = new ConcurrentHashMap<>();
+
+    /**
+     * 未找到绑定器时的占位对象
+     */
+    private static final QmqPropertyBinder<Object> NONE = (message, key, value) -> {
+        throw new QmqException("Unexpected value: " + value.getClass());
+    };
+
+    static {
+        register(Boolean.class, (message, key, value) -> message.setProperty(key, value.booleanValue()));
+        register(Byte.class, (message, key, value) -> message.setProperty(key, value.intValue()));
+        register(Short.class, (message, key, value) -> message.setProperty(key, value.intValue()));
+        register(Integer.class, (message, key, value) -> message.setProperty(key, value.intValue()));
+        register(Long.class, (message, key, value) -> message.setProperty(key, value.longValue()));
+        register(BigInteger.class, (message, key, value) -> message.setProperty(key, value.longValue()));
+        register(Float.class, (message, key, value) -> message.setProperty(key, value.floatValue()));
+        register(Double.class, (message, key, value) -> message.setProperty(key, value.doubleValue()));
+        register(BigDecimal.class, (message, key, value) -> message.setProperty(key, value.doubleValue()));
+        register(Date.class, BaseMessage::setProperty);
+        register(Character.class, (message, key, value) -> message.setProperty(key, value.toString()));
+        register(String.class, QmqPropertyBinders::bindString);
+        register(CharSequence.class, (message, key, value) -> bindString(message, key, value.toString()));
+        register(Enum.class, (message, key, value) -> message.setProperty(key, value.name()));
+        register(UUID.class, (message, key, value) -> message.setProperty(key, value.toString()));
+        register(LocalDateTime.class, (message, key, value) -> message.setProperty(key,
+                QmqUtil.localDateTimeToDate(value)));
+        register(Instant.class, (message, key, value) -> message.setProperty(key, Date.from(value)));
+    }
+
+    private QmqPropertyBinders() {
+    }
+
+    /**
+     * 注册自定义绑定器，覆盖同类型的已有绑定器
+     * <p>实体类编码器在首次解析时会固定每个属性的绑定器，因此请在首次发送消息前完成注册</p>
+     * @param type 属性值类型
+     * @param binder 绑定器
+     * @param <T> 属性值类型
+     */
+    public static <T> void register(Class<T> type, QmqPropertyBinder<? super T> binder) {
+        if (type == null || binder == null) {
+            throw new QmqException("QMQ 属性绑定器及其类型不能为空");
+        }
+        BINDERS.put(type, binder);
+        RESOLVED.clear();
+    }
+
+    /**
+     * 查找指定类型的绑定器
+     * @param type 属性值类型
+     * @return 绑定器，未找到时返回 null
+     */
+    public static QmqPropertyBinder<Object> find(Class<?> type) {
+        QmqPropertyBinder<Object> binder = RESOLVED.computeIfAbsent(type, QmqPropertyBinders::resolve);
+        return binder != NONE ? binder : null;
+    }
+
+    /**
+     * 根据属性值的实际类型装载消息属性
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @param value 消息属性值，不为空
+     */
+    public static void bind(BaseMessage message, String key, Object value) {
+        RESOLVED.computeIfAbsent(value.getClass(), QmqPropertyBinders::resolve).bind(message, key, value);
+    }
+
+    /**
+     * 装载字符串属性，发送句柄启用压缩时先尝试压缩，超过 32K 时使用 {@link BaseMessage#setLargeString(String, String)}
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @param value 消息属性值
+     */
+    private static void bindString(BaseMessage message, String key, String value) {
+        if (QmqCompression.bindString(message, key, value)) {
+            return;
+        }
+        // 判断字符串按 UTF-8 编码后是否超过32K，不生成字节数组
+        if (QmqUtil.isLargeString(value)) {
+            message.setLargeString(key, value);
+        } else {
+            message.setProperty(key, value);
+        }
+    }
+
+    /**
+     * 依次匹配类型本身、父类及接口，查找已注册的绑定器
+     * @param type 属性值类型
+     * @return 绑定器，未找到时返回 {@link #NONE}
+     */
+    @SuppressWarnings("unchecked")
+    private static QmqPropertyBinder<Object> resolve(Class<?> type) {
+        // 匹配类型本身及父类
+        for (Class<?> tempClass = type; tempClass != null; tempClass = tempClass.getSuperclass()) {
+            QmqPropertyBinder<?> binder = BINDERS.get(tempClass);
+            if (binder != null) {
+                return (QmqPropertyBinder<Object>) binder;
+            }
+        }
+
+        // 按广度优先匹配接口
+        Deque<Class<?>> interfaces = new ArrayDeque<>();
+        for (Class<?> tempClass = type; tempClass != null; tempClass = tempClass.getSuperclass()) {
+            Collections.addAll(interfaces, tempClass.getInterfaces());
+        }
+        while (!interfaces.isEmpty()) {
+            Class<?> tempInterface = interfaces.poll();
+            QmqPropertyBinder<?> binder = BINDERS.get(tempInterface);
+            if (binder != null) {
+                return (QmqPropertyBinder<Object>) binder;
+            }
+            Collections.addAll(interfaces, tempInterface.getInterfaces());
+        }
+        return NONE;
+    }
+}
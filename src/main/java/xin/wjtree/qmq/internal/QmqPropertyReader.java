@@ -0,0 +1,21 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+
+/**
+ * 消息属性读取器，将消息属性转换为指定类型的属性值
+ * @param <T> 属性值类型
+ * @author Wang
+ * @see QmqPropertyReaders#register(Class, QmqPropertyReader)
+ */
+@FunctionalInterface
+public interface QmqPropertyReader<T> {
+    /**
+     * 读取消息属性
+     * @param message 消息对象
+     * @param key 消息属性名称
+     * @param value 消息属性的字符串值，不为空
+     * @return 属性值
+     */
+    T read(Message message, String key, String value);
+}
@@ -0,0 +1,83 @@
+package xin.wjtree.qmq.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 消息属性读取器注册表，与 {@link QmqPropertyBinders} 的转换规则对应
+ * <ul>
+ *     <li>{@link Boolean}、{@link Byte}、{@link Short}、{@link Integer}、{@link Long}、{@link Float}、{@link Double}
+ *     按字符串值解析，{@link BigInteger}、{@link BigDecimal} 同样按字符串值创建</li>
+ *     <li>{@link Date} 使用 {@link qunar.tc.qmq.Message#getDateProperty(String)}，
+ *     {@link LocalDateTime}、{@link Instant} 由 {@link Date} 转换</li>
+ *     <li>{@link Character} 取第一个字符，{@link UUID} 按字符串解析，枚举使用 {@link Enum#valueOf(Class, String)}</li>
+ *     <li>{@link String}、{@link CharSequence} 由实体类解码器直接读取，支持 {@link qunar.tc.qmq.Message#getLargeString(String)}</li>
+ * </ul>
+ * <p>如需支持其他类型，请在首次接收消息前调用 {@link #register(Class, QmqPropertyReader)} 注册自定义读取器</p>
+ * @author Wang
+ */
+public final class QmqPropertyReaders {
+    /**
+     * 已注册的读取器
+     */
+    private static final ConcurrentMap<Class<?>, QmqPropertyReader<?>> READERS = new ConcurrentHashMap<>();
+
+    static {
+        register(Boolean.class, (message, key, value) -> Boolean.valueOf(value));
+        register(Byte.class, (message, key, value) -> Byte.valueOf(value));
+        register(Short.class, (message, key, value) -> Short.valueOf(value));
+        register(Integer.class, (message, key, value) -> Integer.valueOf(value));
+        register(Long.class, (message, key, value) -> Long.valueOf(value));
+        register(BigInteger.class, (message, key, value) -> new BigInteger(value));
+        register(Float.class, (message, key, value) -> Float.valueOf(value));
+        register(Double.class, (message, key, value) -> Double.valueOf(value));
+        register(BigDecimal.class, (message, key, value) -> new BigDecimal(value));
+        register(Date.class, (message, key, value) -> message.getDateProperty(key));
+        register(Character.class, (message, key, value) -> value.charAt(0));
+        register(String.class, (message, key, value) -> value);
+        register(CharSequence.class, (message, key, value) -> value);
+        register(UUID.class, (message, key, value) -> UUID.fromString(value));
+        register(LocalDateTime.class, (message, key, value) -> LocalDateTime.ofInstant(
+                message.getDateProperty(key).toInstant(), ZoneId.systemDefault()));
+        register(Instant.class, (message, key, value) -> message.getDateProperty(key).toInstant());
+    }
+
+    private QmqPropertyReaders() {
+    }
+
+    /**
+     * 注册自定义读取器，覆盖同类型的已有读取器
+     * <p>实体类解码器在首次解析时会固定每个属性的读取器，因此请在首次接收消息前完成注册</p>
+     * @param type 属性值类型
+     * @param reader 读取器
+     * @param <T> 属性值类型
+     */
+    public static <T> void register(Class<T> type, QmqPropertyReader<? extends T> reader) {
+        if (type == null || reader == null) {
+            throw new QmqException("QMQ 属性读取器及其类型不能为空");
+        }
+        READERS.put(type, reader);
+    }
+
+    /**
+     * 查找指定类型的读取器，枚举类型按需创建
+     * @param type 属性声明类型
+     * @return 读取器，未找到时返回 null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static QmqPropertyReader<Object> find(Class<?> type) {
+        QmqPropertyReader<?> reader = READERS.get(type);
+        if (reader == null && type.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) type;
+            reader = (message, key, value) -> Enum.valueOf(enumType, value);
+        }
+        return (QmqPropertyReader<Object>) reader;
+    }
+}
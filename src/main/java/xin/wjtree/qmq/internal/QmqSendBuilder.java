@@ -4,9 +4,12 @@ import qunar.tc.qmq.MessageSendStateListener;
 import xin.wjtree.qmq.constant.QmqTimeUnit;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * @author kye
@@ -57,13 +60,63 @@ public interface QmqSendBuilder {
 
     /**
      * 设置消息发送内容，支持回调方法，消息内容使用 Object
+     * <p>开启 spring.qmq.producer.sync-send 时，阻塞等待发送结果，发送失败或超时抛出 {@link QmqException}</p>
      * @param object 消息内容
      */
     void send(Object object);
 
     /**
      * 异步发送消息，支持回调方法，消息内容使用 Map
+     * <p>开启 spring.qmq.producer.sync-send 时，阻塞等待发送结果，发送失败或超时抛出 {@link QmqException}</p>
      * @param content 消息内容
      */
     void send(Map<String, Object> content);
+
+    /**
+     * 同步发送消息，阻塞等待发送结果，最长等待 spring.qmq.producer.send-timeout-millis 毫秒，消息内容使用 Object
+     * @param object 消息内容
+     * @return 发送结果 {@link QmqSendResult}
+     * @throws QmqException 发送失败或等待超时
+     */
+    QmqSendResult sendAndWait(Object object);
+
+    /**
+     * 同步发送消息，阻塞等待发送结果，最长等待 spring.qmq.producer.send-timeout-millis 毫秒，消息内容使用 Map
+     * @param content 消息内容
+     * @return 发送结果 {@link QmqSendResult}
+     * @throws QmqException 发送失败或等待超时
+     */
+    QmqSendResult sendAndWait(Map<String, Object> content);
+
+    /**
+     * 异步发送消息，返回发送结果，消息内容使用 Object
+     * <p>发送成功时正常完成；发送失败时以 {@link QmqSendException} 异常完成</p>
+     * @param object 消息内容
+     * @return 发送结果 {@link CompletableFuture}
+     */
+    CompletableFuture<QmqSendResult> sendAsync(Object object);
+
+    /**
+     * 异步发送消息，返回发送结果，消息内容使用 Map
+     * <p>发送成功时正常完成；发送失败时以 {@link QmqSendException} 异常完成</p>
+     * @param content 消息内容
+     * @return 发送结果 {@link CompletableFuture}
+     */
+    CompletableFuture<QmqSendResult> sendAsync(Map<String, Object> content);
+
+    /**
+     * 批量发送消息，元素可以是 Object 或 Map，主题、标签、接收时间和监听器对所有元素生效
+     * <p>同一批次未收到回调的消息数量不超过 spring.qmq.producer.max-queue-size，达到上限时阻塞当前线程</p>
+     * @param contents 消息内容集合
+     * @return 全部消息收到回调后完成的批量发送结果 {@link QmqBatchSendResult}
+     */
+    CompletableFuture<QmqBatchSendResult> sendAll(Collection<?> contents);
+
+    /**
+     * 批量发送消息，元素可以是 Object 或 Map，主题、标签、接收时间和监听器对所有元素生效
+     * <p>同一批次未收到回调的消息数量不超过 spring.qmq.producer.max-queue-size，达到上限时阻塞当前线程</p>
+     * @param contents 消息内容流，在当前线程中按顺序消费
+     * @return 全部消息收到回调后完成的批量发送结果 {@link QmqBatchSendResult}
+     */
+    CompletableFuture<QmqBatchSendResult> sendAll(Stream<?> contents);
 }
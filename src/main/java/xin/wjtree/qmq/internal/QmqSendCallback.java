@@ -0,0 +1,92 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageSendStateListener;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 记录发送结果的消息发送状态监听器
+ * <ul>
+ *     <li>收到回调时先调用原监听器，再完成 {@link #future()}</li>
+ *     <li>发送成功时正常完成，发送失败时以 {@link QmqSendException} 异常完成</li>
+ *     <li>耗时从创建监听器开始计算，即提交发送前</li>
+ * </ul>
+ * @author Wang
+ */
+class QmqSendCallback implements MessageSendStateListener {
+    /**
+     * 原消息发送状态监听器
+     */
+    private final MessageSendStateListener delegate;
+
+    /**
+     * 发送结果
+     */
+    private final CompletableFuture<QmqSendResult> future = new CompletableFuture<>();
+
+    /**
+     * 提交发送的时间，单位：纳秒
+     */
+    private final long startNanos = System.nanoTime();
+
+    QmqSendCallback(MessageSendStateListener delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onSuccess(Message message) {
+        try {
+            delegate.onSuccess(message);
+        } finally {
+            future.complete(new QmqSendResult(message, true, elapsedMillis()));
+        }
+    }
+
+    @Override
+    public void onFailed(Message message) {
+        try {
+            delegate.onFailed(message);
+        } finally {
+            future.completeExceptionally(new QmqSendException("QMQ 消息发送失败",
+                    new QmqSendResult(message, false, elapsedMillis())));
+        }
+    }
+
+    /**
+     * 获取发送结果
+     * @return {@link CompletableFuture}
+     */
+    CompletableFuture<QmqSendResult> future() {
+        return future;
+    }
+
+    /**
+     * 阻塞等待发送结果
+     * @param timeoutMillis 最长等待时间，单位：毫秒
+     * @return 发送成功的结果
+     * @throws QmqException 发送失败、等待超时或线程被中断
+     */
+    QmqSendResult await(long timeoutMillis) {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new QmqException("QMQ 同步消息发送超时，等待时间：" + timeoutMillis + " 毫秒", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new QmqException("QMQ 同步消息发送被中断", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof QmqException) {
+                throw (QmqException) ex.getCause();
+            }
+            throw new QmqException("QMQ 同步消息发送出错", ex.getCause());
+        }
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
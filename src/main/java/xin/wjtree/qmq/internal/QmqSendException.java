@@ -0,0 +1,23 @@
+package xin.wjtree.qmq.internal;
+
+/**
+ * QMQ 消息发送失败异常，包含发送结果
+ * @author Wang
+ */
+public class QmqSendException extends QmqException {
+    private static final long serialVersionUID = -3202414867165387914L;
+
+    /**
+     * 发送结果
+     */
+    private final transient QmqSendResult result;
+
+    public QmqSendException(String message, QmqSendResult result) {
+        super(message + "，" + result);
+        this.result = result;
+    }
+
+    public QmqSendResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,593 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.constant.QmqTimeUnit;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 主题发送句柄，创建时确定主题名称、编解码器、默认标签、默认延迟及监听器
+ * <ul>
+ *     <li>不可变，线程安全，可在热点代码中缓存复用，发送时不再查找主题别名及配置</li>
+ *     <li>withTag、withDelay、withListener 返回新的句柄，原句柄不受影响</li>
+ *     <li>直接调用发送方法时不创建构建器，除消息对象外不分配额外的对象；
+ *     调用 tag、delay、listener 时才创建 {@link DefaultQmqSendBuilder} 按次设置</li>
+ *     <li>compressThresholdBytes 大于 0 时，编码期间为当前线程绑定压缩阈值，见 {@link QmqCompression}</li>
+ *     <li>配置了 {@link QmqTimingWheel} 时，延迟不超过 localDelayThresholdMillis 的消息不设置延迟时间，
+ *     保存在时间轮中到期后再发送；同步发送时等待时间相应延长；事务发件箱的事务中仍设置延迟时间写入发件箱</li>
+ * </ul>
+ * @author Wang
+ */
+public final class QmqSendHandle implements QmqSendBuilder {
+    private static final Logger log = LoggerFactory.getLogger(QmqSendHandle.class);
+
+    /**
+     * 消息发送者
+     */
+    private final MessageProducer producer;
+
+    /**
+     * 消息发送主题
+     */
+    private final String subject;
+
+    /**
+     * 是否同步发送
+     */
+    private final boolean syncSend;
+
+    /**
+     * 同步发送时等待发送结果的超时时间，单位：毫秒
+     */
+    private final long sendTimeoutMillis;
+
+    /**
+     * 批量发送时未收到回调的消息数量上限，与异步发送队列大小一致
+     */
+    private final int maxQueueSize;
+
+    /**
+     * 消息发送指标记录器
+     */
+    private final QmqSendMetrics metrics;
+
+    /**
+     * 实体类消息内容编解码器，Map 类型的消息内容始终逐个装载为消息属性
+     */
+    private final QmqPayloadCodec payloadCodec;
+
+    /**
+     * 默认的消息标签，为空表示不设置标签
+     */
+    private final String tag;
+
+    /**
+     * 默认的延迟时间，发送时加上当前时间作为消息接收时间，0 表示立即接收，单位：毫秒
+     */
+    private final long delayMillis;
+
+    /**
+     * 默认的消息发送状态监听器
+     */
+    private final MessageSendStateListener listener;
+
+    /**
+     * 本地延迟时间轮，为空表示不启用本地延迟
+     */
+    private final QmqTimingWheel timingWheel;
+
+    /**
+     * 本地延迟阈值，单位：毫秒
+     */
+    private final long localDelayThresholdMillis;
+
+    /**
+     * 字符串属性及整体序列化的消息内容的压缩阈值，0 表示不压缩，单位：字节
+     */
+    private final int compressThresholdBytes;
+
+    public QmqSendHandle(MessageProducer producer, String subject, QmqProperties.Producer config,
+            QmqSendMetrics metrics, QmqPayloadCodec payloadCodec) {
+        this(producer, subject, config, metrics, payloadCodec, null);
+    }
+
+    public QmqSendHandle(MessageProducer producer, String subject, QmqProperties.Producer config,
+            QmqSendMetrics metrics, QmqPayloadCodec payloadCodec, QmqTimingWheel timingWheel) {
+        this(producer, subject, config, metrics, payloadCodec, timingWheel, 0);
+    }
+
+    public QmqSendHandle(MessageProducer producer, String subject, QmqProperties.Producer config,
+            QmqSendMetrics metrics, QmqPayloadCodec payloadCodec, QmqTimingWheel timingWheel,
+            int compressThresholdBytes) {
+        this(producer, subject, config.isSyncSend(), config.getSendTimeoutMillis(), config.getMaxQueueSize(), metrics,
+                payloadCodec, null, 0L, DefaultMessageSendStateListener.INSTANCE, timingWheel,
+                config.getLocalDelayThresholdMillis(), compressThresholdBytes);
+    }
+
+    private QmqSendHandle(MessageProducer producer, String subject, boolean syncSend, long sendTimeoutMillis,
+            int maxQueueSize, QmqSendMetrics metrics, QmqPayloadCodec payloadCodec, String tag, long delayMillis,
+            MessageSendStateListener listener, QmqTimingWheel timingWheel, long localDelayThresholdMillis,
+            int compressThresholdBytes) {
+        this.producer = producer;
+        this.subject = subject;
+        this.syncSend = syncSend;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.maxQueueSize = maxQueueSize;
+        this.metrics = metrics;
+        this.payloadCodec = payloadCodec;
+        this.tag = tag;
+        this.delayMillis = delayMillis;
+        this.listener = listener;
+        this.timingWheel = timingWheel;
+        this.localDelayThresholdMillis = localDelayThresholdMillis;
+        this.compressThresholdBytes = compressThresholdBytes;
+    }
+
+    /**
+     * 返回使用指定默认标签的句柄
+     * @param tag 消息标签，为空表示不设置标签
+     * @return {@link QmqSendHandle}
+     */
+    public QmqSendHandle withTag(String tag) {
+        return new QmqSendHandle(producer, subject, syncSend, sendTimeoutMillis, maxQueueSize, metrics, payloadCodec,
+                StringUtils.hasText(tag) ? tag : null, delayMillis, listener, timingWheel, localDelayThresholdMillis,
+                compressThresholdBytes);
+    }
+
+    /**
+     * 返回使用指定默认延迟的句柄
+     * @param duration 延迟时长，不大于 0 表示立即接收
+     * @param timeUnit 时间单位
+     * @return {@link QmqSendHandle}
+     */
+    public QmqSendHandle withDelay(long duration, TimeUnit timeUnit) {
+        long millis = duration > 0 && timeUnit != null ? timeUnit.toMillis(duration) : 0L;
+        return new QmqSendHandle(producer, subject, syncSend, sendTimeoutMillis, maxQueueSize, metrics, payloadCodec,
+                tag, millis, listener, timingWheel, localDelayThresholdMillis, compressThresholdBytes);
+    }
+
+    /**
+     * 返回使用指定默认延迟的句柄
+     * @param qmqTimeUnit 延迟时长
+     * @return {@link QmqSendHandle}
+     */
+    public QmqSendHandle withDelay(QmqTimeUnit qmqTimeUnit) {
+        return qmqTimeUnit != null ? withDelay(qmqTimeUnit.getDuration(), qmqTimeUnit.getTimeUnit()) :
+                withDelay(0L, null);
+    }
+
+    /**
+     * 返回使用指定默认监听器的句柄
+     * @param listener 消息发送状态监听器，为空时使用默认的监听器
+     * @return {@link QmqSendHandle}
+     */
+    public QmqSendHandle withListener(MessageSendStateListener listener) {
+        return new QmqSendHandle(producer, subject, syncSend, sendTimeoutMillis, maxQueueSize, metrics, payloadCodec,
+                tag, delayMillis, listener != null ? listener : DefaultMessageSendStateListener.INSTANCE, timingWheel,
+                localDelayThresholdMillis, compressThresholdBytes);
+    }
+
+    /**
+     * 创建以当前句柄为默认值的发送构建器，用于按次设置标签、延迟或监听器
+     * @return {@link QmqSendBuilder}
+     */
+    public QmqSendBuilder builder() {
+        return new DefaultQmqSendBuilder(this);
+    }
+
+    @Override
+    public QmqSendBuilder tag(String tag) {
+        return builder().tag(tag);
+    }
+
+    @Override
+    public QmqSendBuilder delay(Date date) {
+        return builder().delay(date);
+    }
+
+    @Override
+    public QmqSendBuilder delay(LocalDateTime localDateTime) {
+        return builder().delay(localDateTime);
+    }
+
+    @Override
+    public QmqSendBuilder delay(long duration, TimeUnit timeUnit) {
+        return builder().delay(duration, timeUnit);
+    }
+
+    @Override
+    public QmqSendBuilder delay(QmqTimeUnit qmqTimeUnit) {
+        return builder().delay(qmqTimeUnit);
+    }
+
+    @Override
+    public QmqSendBuilder listener(MessageSendStateListener listener) {
+        return builder().listener(listener);
+    }
+
+    @Override
+    public void send(Object object) {
+        Date receiveTime = receiveTime();
+        send(generateMessage(object, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public void send(Map<String, Object> content) {
+        Date receiveTime = receiveTime();
+        send(generateMessage(content, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public QmqSendResult sendAndWait(Object object) {
+        Date receiveTime = receiveTime();
+        return sendAndWait(generateMessage(object, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public QmqSendResult sendAndWait(Map<String, Object> content) {
+        Date receiveTime = receiveTime();
+        return sendAndWait(generateMessage(content, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqSendResult> sendAsync(Object object) {
+        Date receiveTime = receiveTime();
+        return sendAsync(generateMessage(object, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqSendResult> sendAsync(Map<String, Object> content) {
+        Date receiveTime = receiveTime();
+        return sendAsync(generateMessage(content, tag, receiveTime), tag, receiveTime, listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqBatchSendResult> sendAll(Collection<?> contents) {
+        if (CollectionUtils.isEmpty(contents)) {
+            throw new QmqException("QMQ 消息发送内容不能为空");
+        }
+        return sendAll(contents.iterator(), tag, receiveTime(), listener);
+    }
+
+    @Override
+    public CompletableFuture<QmqBatchSendResult> sendAll(Stream<?> contents) {
+        if (contents == null) {
+            throw new QmqException("QMQ 消息发送内容不能为空");
+        }
+        return sendAll(contents.iterator(), tag, receiveTime(), listener);
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    public MessageSendStateListener getListener() {
+        return listener;
+    }
+
+    public QmqPayloadCodec getPayloadCodec() {
+        return payloadCodec;
+    }
+
+    /**
+     * 按默认延迟计算消息接收时间
+     * @return 消息接收时间，没有默认延迟时返回 null
+     */
+    Date receiveTime() {
+        return delayMillis > 0 ? new Date(System.currentTimeMillis() + delayMillis) : null;
+    }
+
+    /**
+     * 发送消息，同步发送时阻塞等待发送结果
+     * @param message 消息对象
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @param listener 消息发送状态监听器
+     */
+    void send(BaseMessage message, String tag, Date receiveTime, MessageSendStateListener listener) {
+        // 事务发件箱的事务中写入发件箱即同步完成，发送状态在事务完成后回调，不能阻塞等待
+        if (syncSend && !isOutboxTransaction()) {
+            sendAndWait(message, tag, receiveTime, listener);
+        } else {
+            sendMessage(message, tag, receiveTime, listener);
+        }
+    }
+
+    /**
+     * 同步发送消息，阻塞等待发送结果；事务发件箱的事务中事务提交后才会发送，抛出异常
+     * @param message 消息对象
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @param listener 消息发送状态监听器
+     * @return 发送结果
+     */
+    QmqSendResult sendAndWait(BaseMessage message, String tag, Date receiveTime, MessageSendStateListener listener) {
+        if (isOutboxTransaction()) {
+            throw new QmqException("QMQ 事务发件箱的事务中不能同步等待发送结果，消息在事务提交后才会发送，请使用 send 或 sendAsync");
+        }
+        QmqSendCallback callback = new QmqSendCallback(listener);
+        long localDelayMillis = sendMessage(message, tag, receiveTime, callback);
+        return callback.await(sendTimeoutMillis + localDelayMillis);
+    }
+
+    /**
+     * 异步发送消息，返回发送结果
+     * @param message 消息对象
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @param listener 消息发送状态监听器
+     * @return 发送结果
+     */
+    CompletableFuture<QmqSendResult> sendAsync(BaseMessage message, String tag, Date receiveTime,
+            MessageSendStateListener listener) {
+        QmqSendCallback callback = new QmqSendCallback(listener);
+        sendMessage(message, tag, receiveTime, callback);
+        return callback.future();
+    }
+
+    /**
+     * 批量发送消息，所有消息共用一个监听器，相同类型的连续元素复用同一个编码器
+     * <p>消息内容无效时抛出异常，已提交的消息仍会完成回调；提交被拒绝时记为该消息发送失败，不中断批次</p>
+     * @param iterator 消息内容
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @param listener 消息发送状态监听器
+     * @return 批量发送结果
+     */
+    @SuppressWarnings("unchecked")
+    CompletableFuture<QmqBatchSendResult> sendAll(Iterator<?> iterator, String tag, Date receiveTime,
+            MessageSendStateListener listener) {
+        // 事务发件箱的事务中回调在事务完成后才到达，不限制未回调的消息数量，否则会一直阻塞
+        QmqBatchSendCallback callback = new QmqBatchSendCallback(listener,
+                isOutboxTransaction() ? Integer.MAX_VALUE : maxQueueSize);
+        QmqBeanCodec codec = null;
+        try {
+            while (iterator.hasNext()) {
+                Object content = iterator.next();
+                // 获取发送许可，未收到回调的消息达到上限时阻塞
+                callback.acquire();
+                BaseMessage message;
+                try {
+                    if (content instanceof Map) {
+                        message = generateMessage((Map<String, Object>) content, tag, receiveTime);
+                    } else {
+                        if (ObjectUtils.isEmpty(content)) {
+                            throw new QmqException("QMQ 消息发送内容不能为空");
+                        }
+                        long startNanos = metrics.isEnabled() ? System.nanoTime() : 0L;
+                        message = generateMessage(tag, receiveTime);
+                        QmqCompression.begin(compressThresholdBytes);
+                        try {
+                            if (payloadCodec != QmqPayloadCodecs.PROPERTIES) {
+                                payloadCodec.encode(content, message);
+                            } else {
+                                if (codec == null || codec.getType() != content.getClass()) {
+                                    codec = QmqBeanCodec.forClass(content.getClass());
+                                }
+                                codec.encode(content, message);
+                            }
+                        } finally {
+                            QmqCompression.end();
+                        }
+                        recordEncode(message, tag, startNanos);
+                    }
+                } catch (RuntimeException ex) {
+                    callback.cancel();
+                    throw ex;
+                }
+                try {
+                    sendMessage(message, tag, receiveTime, callback);
+                } catch (RuntimeException ex) {
+                    // 提交被拒绝（如流量控制的 FAIL_FAST 策略或溢出队列已满）时记为该消息发送失败，继续发送后续消息
+                    log.warn("QMQ 批量发送消息被拒绝，消息主题：{}，消息ID：{}", subject, message.getMessageId(), ex);
+                    callback.reject(message, ex);
+                }
+            }
+        } finally {
+            callback.finish();
+        }
+        return callback.future();
+    }
+
+    /**
+     * 生成消息对象，使用主题对应的编解码器写入消息内容
+     * @param object 消息内容
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @return {@link BaseMessage}
+     */
+    BaseMessage generateMessage(Object object, String tag, Date receiveTime) {
+        if (ObjectUtils.isEmpty(object)) {
+            throw new QmqException("QMQ 消息发送内容不能为空");
+        }
+
+        long startNanos = metrics.isEnabled() ? System.nanoTime() : 0L;
+        BaseMessage message = generateMessage(tag, receiveTime);
+        QmqCompression.begin(compressThresholdBytes);
+        try {
+            payloadCodec.encode(object, message);
+        } finally {
+            QmqCompression.end();
+        }
+        recordEncode(message, tag, startNanos);
+        return message;
+    }
+
+    /**
+     * 生成消息对象，遍历装载消息内容
+     * @param content 消息内容
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @return {@link BaseMessage}
+     */
+    BaseMessage generateMessage(Map<String, Object> content, String tag, Date receiveTime) {
+        if (CollectionUtils.isEmpty(content)) {
+            throw new QmqException("QMQ 消息发送内容不能为空");
+        }
+
+        long startNanos = metrics.isEnabled() ? System.nanoTime() : 0L;
+        BaseMessage message = generateMessage(tag, receiveTime);
+        // 遍历装载消息内容，过滤键值对为空的属性
+        QmqCompression.begin(compressThresholdBytes);
+        try {
+            for (Map.Entry<String, Object> entry : content.entrySet()) {
+                if (StringUtils.hasText(entry.getKey()) && !ObjectUtils.isEmpty(entry.getValue())) {
+                    QmqPropertyBinders.bind(message, entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            QmqCompression.end();
+        }
+        recordEncode(message, tag, startNanos);
+        return message;
+    }
+
+    /**
+     * 生成消息对象，并装载消息标签和消息接收时间
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @return {@link BaseMessage}
+     */
+    private BaseMessage generateMessage(String tag, Date receiveTime) {
+        BaseMessage message = (BaseMessage) producer.generateMessage(subject);
+        // 装载消息标签
+        if (tag != null) {
+            message.addTag(tag);
+        }
+        // 装载消息接收时间，使用本地延迟时由时间轮到期后发送
+        if (receiveTime != null && !isLocalDelay(receiveTime)) {
+            message.setDelayTime(receiveTime);
+        }
+        return message;
+    }
+
+    /**
+     * 记录生成消息的耗时和消息大小
+     * @param message 消息对象
+     * @param tag 消息标签
+     * @param startNanos 开始生成消息的时间，单位：纳秒
+     */
+    private void recordEncode(BaseMessage message, String tag, long startNanos) {
+        if (metrics.isEnabled()) {
+            metrics.recordEncode(subject, tag, System.nanoTime() - startNanos, QmqUtil.estimatePayloadSize(message));
+        }
+    }
+
+    /**
+     * 当前线程是否处于事务发件箱的事务中
+     * @return true or false
+     */
+    private boolean isOutboxTransaction() {
+        return producer instanceof OutboxMessageProducer && ((OutboxMessageProducer) producer).isTransactional();
+    }
+
+    /**
+     * 延迟时间是否不超过本地延迟阈值，事务发件箱的事务中不使用本地延迟，避免回滚后仍发送或进程退出时丢失
+     * @param receiveTime 消息接收时间
+     * @return true or false
+     */
+    private boolean isLocalDelay(Date receiveTime) {
+        return timingWheel != null && receiveTime.getTime() - System.currentTimeMillis() <= localDelayThresholdMillis
+                && !isOutboxTransaction();
+    }
+
+    /**
+     * 发送消息，未设置延迟时间的延迟消息放入时间轮，到期后再发送
+     * @param message 消息对象
+     * @param tag 消息标签
+     * @param receiveTime 消息接收时间
+     * @param listener 消息发送状态监听器
+     * @return 本地延迟时间，立即发送时返回 0，单位：毫秒
+     */
+    private long sendMessage(BaseMessage message, String tag, Date receiveTime, MessageSendStateListener listener) {
+        if (receiveTime != null && message.getScheduleReceiveTime() == null) {
+            long localDelayMillis = receiveTime.getTime() - System.currentTimeMillis();
+            if (localDelayMillis > 0) {
+                timingWheel.schedule(new DelayedSend(message, tag, receiveTime, listener), localDelayMillis);
+                return localDelayMillis;
+            }
+        }
+        sendMessage(message, tag, listener);
+        return 0L;
+    }
+
+    /**
+     * 发送消息，并返回回调结果
+     * @param message 消息对象
+     * @param tag 消息标签
+     * @param listener 消息发送状态监听器
+     */
+    private void sendMessage(BaseMessage message, String tag, MessageSendStateListener listener) {
+        if (log.isTraceEnabled()) {
+            log.trace("QMQ 消息准备发送，消息主题：{}，消息内容：{}", message.getSubject(), message.getAttrs());
+        }
+        if (!metrics.isEnabled()) {
+            producer.sendMessage(message, listener);
+            return;
+        }
+
+        try {
+            producer.sendMessage(message, metrics.instrument(subject, tag, listener));
+        } catch (RuntimeException ex) {
+            metrics.recordRejected(subject, tag);
+            throw ex;
+        }
+    }
+
+    /**
+     * 时间轮中到期后发送的消息
+     */
+    private final class DelayedSend implements Runnable {
+        private final BaseMessage message;
+
+        private final String tag;
+
+        private final Date receiveTime;
+
+        private final MessageSendStateListener listener;
+
+        DelayedSend(BaseMessage message, String tag, Date receiveTime, MessageSendStateListener listener) {
+            this.message = message;
+            this.tag = tag;
+            this.receiveTime = receiveTime;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            // 时间轮关闭时提前执行，未到期的消息改用服务端的延迟队列
+            if (timingWheel.isClosed() && receiveTime.getTime() > System.currentTimeMillis()) {
+                message.setDelayTime(receiveTime);
+            }
+            try {
+                sendMessage(message, tag, listener);
+            } catch (RuntimeException ex) {
+                log.error("QMQ 本地延迟消息发送失败，消息主题：{}，消息ID：{}", message.getSubject(), message.getMessageId(), ex);
+                listener.onFailed(message);
+            }
+        }
+    }
+}
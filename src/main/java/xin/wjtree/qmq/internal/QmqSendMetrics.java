@@ -0,0 +1,67 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.MessageSendStateListener;
+
+/**
+ * 消息发送指标记录器
+ * <ul>
+ *     <li>未启用时发送链路不做任何计时，也不包装监听器</li>
+ *     <li>启用 Micrometer 时由自动配置注册实现类</li>
+ * </ul>
+ * @author Wang
+ */
+public interface QmqSendMetrics {
+    /**
+     * 不记录任何指标
+     */
+    QmqSendMetrics NOOP = new QmqSendMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordEncode(String subject, String tag, long encodeNanos, int payloadSize) {
+        }
+
+        @Override
+        public MessageSendStateListener instrument(String subject, String tag, MessageSendStateListener listener) {
+            return listener;
+        }
+
+        @Override
+        public void recordRejected(String subject, String tag) {
+        }
+    };
+
+    /**
+     * 是否记录指标
+     * @return true or false
+     */
+    boolean isEnabled();
+
+    /**
+     * 记录消息生成及属性装载的耗时和消息大小
+     * @param subject 消息主题
+     * @param tag 消息标签，可以为空
+     * @param encodeNanos 生成消息的耗时，单位：纳秒
+     * @param payloadSize 消息属性的估算大小，单位：字符
+     */
+    void recordEncode(String subject, String tag, long encodeNanos, int payloadSize);
+
+    /**
+     * 包装消息发送状态监听器，记录发送次数、失败次数、提交到回调的耗时及未收到回调的消息数量
+     * @param subject 消息主题
+     * @param tag 消息标签，可以为空
+     * @param listener 原消息发送状态监听器
+     * @return 包装后的监听器
+     */
+    MessageSendStateListener instrument(String subject, String tag, MessageSendStateListener listener);
+
+    /**
+     * 记录已包装监听器但提交发送时抛出异常的消息，例如流量控制拒绝发送
+     * @param subject 消息主题
+     * @param tag 消息标签，可以为空
+     */
+    void recordRejected(String subject, String tag);
+}
@@ -0,0 +1,70 @@
+package xin.wjtree.qmq.internal;
+
+import qunar.tc.qmq.Message;
+
+/**
+ * QMQ 消息发送结果
+ * @author Wang
+ */
+public class QmqSendResult {
+    /**
+     * 消息对象
+     */
+    private final Message message;
+
+    /**
+     * 是否发送成功
+     */
+    private final boolean success;
+
+    /**
+     * 从提交发送到收到发送状态回调的耗时，单位：毫秒
+     */
+    private final long elapsedMillis;
+
+    /**
+     * 提交发送时抛出的异常，收到发送状态回调时为空
+     */
+    private final Throwable error;
+
+    public QmqSendResult(Message message, boolean success, long elapsedMillis) {
+        this(message, success, elapsedMillis, null);
+    }
+
+    public QmqSendResult(Message message, boolean success, long elapsedMillis, Throwable error) {
+        this.message = message;
+        this.success = success;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public String getMessageId() {
+        return message.getMessageId();
+    }
+
+    public String getSubject() {
+        return message.getSubject();
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "QmqSendResult{messageId=" + getMessageId() + ", subject=" + getSubject() + ", success=" + success
+                + ", elapsedMillis=" + elapsedMillis + "}";
+    }
+}
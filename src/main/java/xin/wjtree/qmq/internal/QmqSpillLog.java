@@ -0,0 +1,377 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地消息溢出日志，保存发送失败或超出流量控制的消息，等待后台补发
+ * <ul>
+ *     <li>按顺序追加写入内存映射的分段文件，写满后创建新的分段，写入不会阻塞在磁盘 I/O 上</li>
+ *     <li>每个分段的文件头记录写入位置及已补发位置，应用重启后从已补发位置继续</li>
+ *     <li>分段全部补发完成后删除并立即解除内存映射；数据写入操作系统页缓存，进程崩溃不会丢失，操作系统崩溃可能丢失最近写入的消息</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqSpillLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(QmqSpillLog.class);
+
+    /**
+     * 分段文件标识
+     */
+    private static final int MAGIC = 0x514D5153;
+
+    /**
+     * 分段文件头大小：标识、写入位置、已补发位置、保留字段
+     */
+    private static final int HEADER_BYTES = 16;
+
+    private static final int WRITE_POS_OFFSET = 4;
+
+    private static final int READ_POS_OFFSET = 8;
+
+    /**
+     * 分段文件名称
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("spill-(\\d{20})\\.log");
+
+    /**
+     * 存放分段文件的目录
+     */
+    private final File directory;
+
+    /**
+     * 新建分段文件的大小，单位：字节
+     */
+    private final int segmentBytes;
+
+    /**
+     * 按序号排列的分段，最后一个为当前写入的分段，由 this 保护
+     */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+
+    public QmqSpillLog(String directory, int segmentBytes) {
+        this.directory = new File(directory);
+        this.segmentBytes = segmentBytes;
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new QmqException("QMQ 溢出日志目录创建失败：" + this.directory.getAbsolutePath());
+        }
+        load();
+    }
+
+    /**
+     * 追加消息
+     * @param message 消息对象
+     * @return 是否保存成功
+     */
+    public boolean append(Message message) {
+        byte[] data;
+        try {
+            data = QmqMessageSerializer.serialize(message);
+        } catch (QmqException ex) {
+            log.error("QMQ spill log serialize failed, subject: {}", message.getSubject(), ex);
+            return false;
+        }
+
+        int required = 4 + data.length;
+        if (required > segmentBytes - HEADER_BYTES) {
+            log.error("QMQ spill log record too large, subject: {}, bytes: {}, segmentBytes: {}",
+                    message.getSubject(), data.length, segmentBytes);
+            return false;
+        }
+
+        synchronized (this) {
+            Segment tail = segments.peekLast();
+            if (tail == null || tail.capacity() - tail.writePos() < required) {
+                tail = roll();
+                if (tail == null) {
+                    return false;
+                }
+            }
+            tail.append(data);
+        }
+        return true;
+    }
+
+    /**
+     * 读取最早的一批待补发消息，补发后需调用 {@link #commit(Batch)} 确认
+     * @param max 最大消息数量
+     * @return 待补发的消息，没有时返回 null
+     */
+    public synchronized Batch read(int max) {
+        Segment head = segments.peekFirst();
+        // 删除已补发完成的旧分段
+        while (head != null && head.readPos() >= head.writePos() && head != segments.peekLast()) {
+            segments.pollFirst().delete();
+            head = segments.peekFirst();
+        }
+        if (head == null || head.readPos() >= head.writePos()) {
+            return null;
+        }
+
+        List<BaseMessage> messages = new ArrayList<>(Math.min(max, 64));
+        int pos = head.readPos();
+        int end = head.writePos();
+        while (pos < end && messages.size() < max) {
+            int length = head.length(pos);
+            // 先减后比较，记录长度异常时也不会溢出
+            if (length < 0 || length > end - pos - 4) {
+                // 记录长度异常，跳过该分段剩余的数据
+                log.error("QMQ spill log segment corrupted at {}, remaining data skipped, file: {}", pos, head.file);
+                pos = end;
+                break;
+            }
+            byte[] data = head.read(pos, length);
+            pos += 4 + length;
+            try {
+                messages.add(QmqMessageSerializer.deserialize(data));
+            } catch (RuntimeException ex) {
+                // 任何无法恢复的记录都跳过，避免读取位置无法前进导致后续消息无法补发
+                log.error("QMQ spill log record corrupted, skipped, file: {}", head.file, ex);
+            }
+        }
+        return new Batch(head, pos, messages);
+    }
+
+    /**
+     * 确认一批消息已补发
+     * @param batch 已补发的消息
+     */
+    public synchronized void commit(Batch batch) {
+        if (segments.contains(batch.segment)) {
+            batch.segment.readPos(batch.endPos);
+        }
+    }
+
+    /**
+     * 获取未补发的数据大小
+     * @return 字节数
+     */
+    public synchronized long getPendingBytes() {
+        long pending = 0;
+        for (Segment segment : segments) {
+            pending += segment.writePos() - segment.readPos();
+        }
+        return pending;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * 加载目录中已有的分段文件
+     */
+    private void load() {
+        File[] files = directory.listFiles((dir, name) -> SEGMENT_NAME.matcher(name).matches());
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+            if (!matcher.matches()) {
+                continue;
+            }
+            try {
+                Segment segment = new Segment(file, Long.parseLong(matcher.group(1)), (int) file.length());
+                if (segment.isValid()) {
+                    segments.addLast(segment);
+                } else {
+                    log.warn("QMQ spill log segment invalid, ignored: {}", file);
+                    segment.close();
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.error("QMQ spill log segment load failed: {}", file, ex);
+            }
+        }
+        if (!segments.isEmpty()) {
+            log.info("QMQ spill log loaded, directory: {}, segments: {}, pendingBytes: {}",
+                    directory.getAbsolutePath(), segments.size(), getPendingBytes());
+        }
+    }
+
+    /**
+     * 创建新的分段
+     * @return 新的分段，创建失败时返回 null
+     */
+    private Segment roll() {
+        Segment tail = segments.peekLast();
+        long sequence = tail != null ? tail.sequence + 1 : 0L;
+        File file = new File(directory, String.format("spill-%020d.log", sequence));
+        try {
+            Segment segment = new Segment(file, sequence, segmentBytes);
+            segment.init();
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException | RuntimeException ex) {
+            log.error("QMQ spill log segment create failed: {}", file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * 一批待补发的消息
+     */
+    public static final class Batch {
+        private final Segment segment;
+        private final int endPos;
+        private final List<BaseMessage> messages;
+
+        Batch(Segment segment, int endPos, List<BaseMessage> messages) {
+            this.segment = segment;
+            this.endPos = endPos;
+            this.messages = messages;
+        }
+
+        public List<BaseMessage> getMessages() {
+            return messages;
+        }
+    }
+
+    /**
+     * 立即解除内存映射，不等待垃圾回收，已删除的分段不再占用磁盘空间及地址空间
+     * <p>Java 9 及以上版本使用 Unsafe.invokeCleaner，Java 8 使用 DirectBuffer.cleaner().clean()，失败时等待垃圾回收</p>
+     * @param buffer 内存映射
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException ex) {
+                // Java 8
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            log.debug("QMQ spill log segment unmap failed, released by GC", ex);
+        }
+    }
+
+    /**
+     * 内存映射的分段文件
+     */
+    private static final class Segment {
+        private final File file;
+        private final long sequence;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+
+        Segment(File file, long sequence, int bytes) throws IOException {
+            this.file = file;
+            this.sequence = sequence;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+
+        void init() {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(WRITE_POS_OFFSET, HEADER_BYTES);
+            buffer.putInt(READ_POS_OFFSET, HEADER_BYTES);
+        }
+
+        boolean isValid() {
+            if (capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                return false;
+            }
+            int writePos = writePos();
+            int readPos = readPos();
+            return writePos >= HEADER_BYTES && writePos <= capacity() && readPos >= HEADER_BYTES
+                    && readPos <= writePos;
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        int writePos() {
+            return buffer.getInt(WRITE_POS_OFFSET);
+        }
+
+        int readPos() {
+            return buffer.getInt(READ_POS_OFFSET);
+        }
+
+        void readPos(int pos) {
+            buffer.putInt(READ_POS_OFFSET, pos);
+        }
+
+        void append(byte[] data) {
+            int pos = writePos();
+            buffer.putInt(pos, data.length);
+            ByteBuffer view = buffer.duplicate();
+            view.position(pos + 4);
+            view.put(data);
+            // 数据写入完成后再更新写入位置，未写完的记录不会被读取
+            buffer.putInt(WRITE_POS_OFFSET, pos + 4 + data.length);
+        }
+
+        int length(int pos) {
+            return buffer.getInt(pos);
+        }
+
+        byte[] read(int pos, int length) {
+            byte[] data = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(pos + 4);
+            view.get(data);
+            return data;
+        }
+
+        /**
+         * 刷新并关闭分段，解除内存映射后不能再访问该分段
+         */
+        void close() {
+            try {
+                buffer.force();
+                raf.close();
+            } catch (IOException | RuntimeException ex) {
+                log.warn("QMQ spill log segment close failed: {}", file, ex);
+            }
+            unmap(buffer);
+        }
+
+        void delete() {
+            close();
+            if (!file.delete()) {
+                log.warn("QMQ spill log segment delete failed: {}", file);
+            }
+        }
+    }
+}
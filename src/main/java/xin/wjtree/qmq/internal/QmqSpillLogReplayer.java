@@ -0,0 +1,130 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台补发本地溢出日志中的消息
+ * <ul>
+ *     <li>按固定间隔分批读取溢出日志，保留原消息ID重新发送，等待本批回调后确认补发位置</li>
+ *     <li>补发失败的消息由 {@link SpillLogMessageProducer} 重新写入溢出日志</li>
+ *     <li>一批消息全部失败时认为服务端仍不可用，下次仅试探补发一条消息，成功后恢复批量补发</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqSpillLogReplayer implements DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(QmqSpillLogReplayer.class);
+
+    /**
+     * 本地溢出日志
+     */
+    private final QmqSpillLog spillLog;
+
+    /**
+     * 补发使用的消息发送者，失败时重新写入溢出日志
+     */
+    private final SpillLogMessageProducer producer;
+
+    /**
+     * 每批补发的最大消息数量
+     */
+    private final int batchSize;
+
+    /**
+     * 等待本批回调的超时时间，单位：毫秒
+     */
+    private final long timeoutMillis;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 上一批是否全部失败，仅在补发线程中访问
+     */
+    private boolean unavailable;
+
+    public QmqSpillLogReplayer(SpillLogMessageProducer producer, int batchSize, long intervalMillis,
+            long timeoutMillis) {
+        this.spillLog = producer.getSpillLog();
+        this.producer = producer;
+        this.batchSize = batchSize;
+        this.timeoutMillis = timeoutMillis;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("qmq-spill-replay-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::replay, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 补发溢出日志中的消息，直到溢出日志为空或服务端不可用
+     */
+    void replay() {
+        try {
+            QmqSpillLog.Batch batch;
+            while (!Thread.currentThread().isInterrupted()
+                    && (batch = spillLog.read(unavailable ? 1 : batchSize)) != null) {
+                int failed = send(batch.getMessages());
+                spillLog.commit(batch);
+
+                unavailable = failed > 0 && failed == batch.getMessages().size();
+                if (unavailable) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.error("QMQ spill log replay failed", ex);
+        }
+    }
+
+    /**
+     * 发送一批消息并等待回调
+     * @param messages 消息列表
+     * @return 失败及超时未回调的消息数量
+     */
+    private int send(List<BaseMessage> messages) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(messages.size());
+        AtomicInteger failed = new AtomicInteger();
+        MessageSendStateListener listener = new MessageSendStateListener() {
+            @Override
+            public void onSuccess(Message message) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onFailed(Message message) {
+                failed.incrementAndGet();
+                latch.countDown();
+            }
+        };
+
+        for (BaseMessage message : messages) {
+            producer.sendMessage(message, listener);
+        }
+        if (!latch.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return failed.get() + (int) latch.getCount();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("QMQ spill log replayed, total: {}, failed: {}", messages.size(), failed.get());
+        }
+        return failed.get();
+    }
+}
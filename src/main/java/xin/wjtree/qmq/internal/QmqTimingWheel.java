@@ -0,0 +1,348 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的分层时间轮，用于在本地保存短延迟消息，到期后再发送
+ * <ul>
+ *     <li>共 4 层，每层 64 个槽位，第 n 层每个槽位跨越 64^n 个刻度；任务按剩余刻度放入对应的层，
+ *     低一层转满一圈时将高一层的当前槽位降级重新放置，添加及到期均为 O(1)</li>
+ *     <li>只有一个工作线程访问时间轮，其他线程添加的任务先放入无锁队列，由工作线程在下一个刻度放入时间轮</li>
+ *     <li>到期的任务交给单独的执行线程池，任务阻塞（如发送队列已满）不影响时间轮计时，也不影响其他线程中的任务；
+ *     没有任务时工作线程休眠，添加任务时唤醒</li>
+ *     <li>关闭时先等待工作线程退出，再由工作线程将未到期的任务全部交给执行线程池立即执行，由任务自行处理提前执行的情况；
+ *     关闭后添加的任务在调用线程中立即执行</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqTimingWheel implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(QmqTimingWheel.class);
+
+    /**
+     * 每层槽位数量的位数
+     */
+    private static final int WHEEL_BITS = 6;
+
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /**
+     * 层数
+     */
+    private static final int LEVELS = 4;
+
+    /**
+     * 关闭时等待执行线程池执行完剩余任务的时间，单位：毫秒
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000L;
+
+    /**
+     * 每个刻度的时长，单位：纳秒
+     */
+    private final long tickNanos;
+
+    /**
+     * 时间轮的起始时间，单位：纳秒
+     */
+    private final long startNanos;
+
+    /**
+     * 各层的槽位，只在工作线程中访问
+     */
+    private final ArrayDeque<Timeout>[][] buckets;
+
+    /**
+     * 其他线程添加的任务，等待放入时间轮
+     */
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 未到期的任务数量
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * 工作线程是否正在无限期休眠
+     */
+    private final AtomicBoolean idle = new AtomicBoolean();
+
+    private final Thread worker;
+
+    /**
+     * 执行到期任务的线程池，队列无界，工作线程提交任务时不会阻塞；空闲的线程超时后退出
+     */
+    private final ExecutorService executor;
+
+    private volatile boolean closed;
+
+    /**
+     * 当前刻度，只在工作线程中访问
+     */
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public QmqTimingWheel(long tickMillis, String threadName) {
+        if (tickMillis <= 0) {
+            throw new QmqException("QMQ 时间轮刻度必须大于 0");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.startNanos = System.nanoTime();
+        this.buckets = new ArrayDeque[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                buckets[level][i] = new ArrayDeque<>();
+            }
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-executor-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 添加延迟任务，时间轮已关闭时在当前线程中立即执行
+     * @param task 任务
+     * @param delayMillis 延迟时间，单位：毫秒
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        if (closed) {
+            execute(task);
+            return;
+        }
+        pending.incrementAndGet();
+        incoming.offer(new Timeout(task, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+        if (idle.compareAndSet(true, false)) {
+            LockSupport.unpark(worker);
+        }
+        // 关闭过程中添加的任务可能未被取出，再次检查并立即执行
+        if (closed) {
+            drainIncoming();
+        }
+    }
+
+    /**
+     * 是否已关闭，关闭过程中执行的任务可据此判断是否被提前执行
+     * @return true or false
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 获取未到期的任务数量
+     * @return 任务数量
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * 停止工作线程，等待工作线程将全部未到期的任务交给执行线程池，再等待执行完毕
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(worker);
+        // 工作线程只做不阻塞的操作，必然退出；必须等其退出后才能取出槽位中的任务
+        boolean interrupted = false;
+        while (worker.isAlive()) {
+            try {
+                worker.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("QMQ timing wheel closed, drained tasks still running after {} ms", CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException ex) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            tick();
+        } finally {
+            drain();
+        }
+    }
+
+    private void tick() {
+        while (!closed) {
+            long elapsedTicks = (System.nanoTime() - startNanos) / tickNanos;
+            if (pending.get() == 0 && incoming.isEmpty()) {
+                // 时间轮为空时直接对齐到当前刻度，无限期休眠直到添加任务
+                currentTick = elapsedTicks;
+                idle.set(true);
+                if (incoming.isEmpty() && !closed) {
+                    LockSupport.park(this);
+                }
+                idle.set(false);
+                continue;
+            }
+
+            transferIncoming();
+            while (currentTick < elapsedTicks && !closed) {
+                advance();
+            }
+            long nextTickNanos = startNanos + (currentTick + 1) * tickNanos;
+            LockSupport.parkNanos(this, nextTickNanos - System.nanoTime());
+        }
+    }
+
+    /**
+     * 关闭时在工作线程中将全部未到期的任务交给执行线程池
+     */
+    private void drain() {
+        int drained = 0;
+        for (ArrayDeque<Timeout>[] level : buckets) {
+            for (ArrayDeque<Timeout> bucket : level) {
+                Timeout timeout;
+                while ((timeout = bucket.poll()) != null) {
+                    expire(timeout);
+                    drained++;
+                }
+            }
+        }
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            expire(timeout);
+            drained++;
+        }
+        if (drained > 0) {
+            log.info("QMQ timing wheel closed, {} pending tasks drained", drained);
+        }
+    }
+
+    /**
+     * 前进一个刻度，必要时将高层的槽位降级，并执行第 0 层当前槽位中的任务
+     */
+    private void advance() {
+        currentTick++;
+        // 低层转满一圈时，从最高的需要降级的层开始依次降级
+        int level = 0;
+        while (level < LEVELS - 1 && ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            ArrayDeque<Timeout> bucket = buckets[level][(int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK)];
+            Timeout timeout;
+            while ((timeout = bucket.poll()) != null) {
+                place(timeout);
+            }
+        }
+
+        ArrayDeque<Timeout> bucket = buckets[0][(int) (currentTick & WHEEL_MASK)];
+        Timeout timeout;
+        while ((timeout = bucket.poll()) != null) {
+            expire(timeout);
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            place(timeout);
+        }
+    }
+
+    /**
+     * 关闭后在调用线程中执行仍留在队列中的任务
+     */
+    private void drainIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            pending.decrementAndGet();
+            execute(timeout.task);
+        }
+    }
+
+    /**
+     * 按剩余刻度放入对应的层，已到期时立即执行
+     * @param timeout 延迟任务
+     */
+    private void place(Timeout timeout) {
+        long deadlineTick = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+        long remaining = deadlineTick - currentTick;
+        if (remaining <= 0) {
+            expire(timeout);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (remaining < 1L << (WHEEL_BITS * (level + 1)) || level == LEVELS - 1) {
+                // 超出最高层范围的任务放在最高层最远的槽位，降级时重新计算
+                long tick = level == LEVELS - 1 ? Math.min(deadlineTick, currentTick + (1L << (WHEEL_BITS * LEVELS)) - 1) :
+                        deadlineTick;
+                buckets[level][(int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK)].add(timeout);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 将到期的任务交给执行线程池
+     * @param timeout 延迟任务
+     */
+    private void expire(Timeout timeout) {
+        pending.decrementAndGet();
+        executor.execute(() -> execute(timeout.task));
+    }
+
+    private static void execute(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            log.error("QMQ timing wheel task failed", ex);
+        }
+    }
+
+    /**
+     * 延迟任务
+     */
+    private static final class Timeout {
+        private final Runnable task;
+
+        /**
+         * 到期时间，单位：纳秒
+         */
+        private final long deadlineNanos;
+
+        Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
@@ -3,13 +3,16 @@ package xin.wjtree.qmq.internal;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.constant.QmqHelper;
 
-import java.lang.reflect.Field;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Date;
+import java.util.Map;
 
 /**
  * QMQ 内部工具类
@@ -20,117 +23,123 @@ public class QmqUtil {
      * 将 Object 转换为 Map
      * @param bean 消息对象
      * @return Map
+     * @see QmqBeanCodec#toMap(Object)
      */
     public static Map<String, Object> beanToMap(Object bean) {
         // 参数校验，Object 不能是基础数据类型或 Map
         if (ObjectUtils.isEmpty(bean)) {
             throw new QmqException("QMQ 消息对象 bean 不能为空");
         }
-        if (bean.getClass().isPrimitive() || bean instanceof Map) {
-            throw new QmqException("QMQ 消息对象 bean 不能是基本数据类型或 Map 类型");
-        }
 
-        // 获取指定实体类的所有属性
-        List<Field> fields = getFieldsExcludeIgnore(bean.getClass());
-        if (CollectionUtils.isEmpty(fields)) {
-            throw new QmqException("QMQ 消息对象 Object 不是标准的 JavaBean 或者属性为空");
-        }
-        Map<String, Object> map = new HashMap<>(fields.size());
-        // 遍历装载每个属性的名称和值，返回 Map
-        fields.forEach(f -> map.put(getName(f), getValue(f, bean)));
+        // 使用按类缓存的编码器读取属性
+        Map<String, Object> map = QmqBeanCodec.forClass(bean.getClass()).toMap(bean);
 
         // 如果 Map 为空，则返回空
         return CollectionUtils.isEmpty(map) ? null : map;
     }
 
     /**
-     * 获取属性名称
-     * @param field 实体类属性
-     * @return String
+     * 将消息转换为实体类，按消息中记录的编解码器读取，未记录时逐个读取消息属性
+     * @param message QMQ 消息
+     * @param type 实体类类型
+     * @param <T> 实体类类型
+     * @return 实体类
+     * @see QmqPayloadCodecs#decode(Message, Class)
      */
-    private static String getName(Field field) {
-        // 如果属性有别名修饰，则使用设置的属性别名
-        if (field.isAnnotationPresent(QmqAlias.class)) {
-            String value = field.getDeclaredAnnotation(QmqAlias.class).value();
-            return StringUtils.hasText(value) ? value : field.getName();
-        }
-
-        return field.getName();
+    public static <T> T messageToBean(Message message, Class<T> type) {
+        return QmqPayloadCodecs.decode(message, type);
     }
 
     /**
-     * 获取属性值
-     * @param field 实体类属性
-     * @param bean 实体类对象实例
-     * @return Object
+     * 比较字符串大小是否超过32K
+     * <ul>
+     *     <li>QMQ的Message.setProperty(key, value)如果value是字符串，则value的大小默认不能超过32K</li>
+     *     <li>如果你需要传输超大的字符串，请务必使用message.setLargeString(key, value)，这样你甚至可以传输十几兆的内容了</li>
+     *     <li>但是消费消息的时候也需要使用message.getLargeString(key)</li>
+     * </ul>
+     * @param str 字符串
+     * @param charset 字符编码
+     * @return true or false
      */
-    private static Object getValue(Field field, Object bean) {
-        try {
-            // 读取私有属性必须设置为 true
-            field.setAccessible(true);
-            return field.get(bean);
-        } catch (IllegalAccessException ex) {
-            throw new QmqException("QMQ 实体类转换 Map 出错", ex);
+    public static boolean isLargeString(String str, Charset charset) {
+        // 字符串为空，直接返回 false，即使用 Message.setProperty(key, value)
+        if (!StringUtils.hasLength(str)) {
+            return false;
         }
+        // UTF-8 编码直接统计字节数，不生成字节数组
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return isLargeString(str);
+        }
+        // 使用指定编码，计算出字节数
+        return str.getBytes(charset).length >= QmqHelper.LARGE_STRING_BYTES;
     }
 
     /**
-     * 获取指定类及其父类的所有属性，包括私有属性，并过滤 QmqIgnore 注解修饰的属性
-     * @param type 类型
-     * @return 类的所有属性
+     * 比较字符串按 UTF-8 编码后的大小是否超过32K，不生成字节数组
+     * <ul>
+     *     <li>字符数达到 32K 时一定超过</li>
+     *     <li>UTF-8 编码中每个字符占 1 ~ 3 个字节（代理对共 4 个字节），字符数不足 32K / 3 时一定不超过</li>
+     *     <li>其余情况逐个字符累计字节数，达到 32K 时立即返回</li>
+     * </ul>
+     * @param str 字符串
+     * @return true or false
      */
-    private static List<Field> getFieldsExcludeIgnore(Class type) {
-        // 获取指定类所有属性
-        List<Field> fields = getDeclaredFields(type);
-        if (CollectionUtils.isEmpty(fields)) {
-            return null;
+    public static boolean isLargeString(CharSequence str) {
+        if (str == null) {
+            return false;
+        }
+        int length = str.length();
+        // 先判断字符数是否达到上限，此后 length * 3 不会溢出
+        if (length >= QmqHelper.LARGE_STRING_BYTES) {
+            return true;
         }
-        // 过滤掉 QmqIgnore 注解修饰的属性
-        return fields.stream().filter(field -> !field.isAnnotationPresent(QmqIgnore.class))
-                .collect(Collectors.toList());
+        if (length * 3 < QmqHelper.LARGE_STRING_BYTES) {
+            return false;
+        }
+        return utf8Length(str, QmqHelper.LARGE_STRING_BYTES) >= QmqHelper.LARGE_STRING_BYTES;
     }
 
     /**
-     * 获取指定类及其父类的所有属性，包括私有属性
-     * @param type 类型
-     * @return 类的所有属性
+     * 计算字符串按 UTF-8 编码后的字节数，累计达到上限时提前返回
+     * <p>不成对的代理字符按 {@link String#getBytes(Charset)} 的替换规则计为 1 个字节</p>
+     * @param str 字符串
+     * @param limit 字节数上限
+     * @return 字节数，超过上限时返回的值不小于 limit
      */
-    private static List<Field> getDeclaredFields(Class type) {
-        if (type == null) {
-            return null;
+    public static int utf8Length(CharSequence str, int limit) {
+        int bytes = 0;
+        int length = str.length();
+        for (int i = 0; i < length && bytes < limit; i++) {
+            char ch = str.charAt(i);
+            if (ch < 0x80) {
+                bytes++;
+            } else if (ch < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(ch) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))) {
+                // 代理对表示一个增补字符，共 4 个字节
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(ch)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
         }
-
-        Class tempClass = type;
-        List<Field> fields = new ArrayList<>();
-        // 遍历父类
-        while (tempClass != null) {
-            // 获取当前类的所有属性，包括私有属性
-            fields.addAll(Arrays.asList(tempClass.getDeclaredFields()));
-            // 重置为父类的类型
-            tempClass = tempClass.getSuperclass();
-        }
-        return fields;
+        return bytes;
     }
 
     /**
-     * 比较字符串大小是否超过32K
-     * <ul>
-     *     <li>QMQ的Message.setProperty(key, value)如果value是字符串，则value的大小默认不能超过32K</li>
-     *     <li>如果你需要传输超大的字符串，请务必使用message.setLargeString(key, value)，这样你甚至可以传输十几兆的内容了</li>
-     *     <li>但是消费消息的时候也需要使用message.getLargeString(key)</li>
-     * </ul>
-     * @param str 字符串
-     * @param charset 字符编码
-     * @return true or false
+     * 估算消息属性的大小，字符串按字符数计算，其他类型按 8 个字符计算
+     * @param message 消息对象
+     * @return 消息属性的估算大小，单位：字符
      */
-    public static boolean isLargeString(String str, Charset charset) {
-        // 字符串为空，直接返回 false，即使用 Message.setProperty(key, value)
-        if (StringUtils.isEmpty(str)) {
-            return false;
+    public static int estimatePayloadSize(BaseMessage message) {
+        int size = 0;
+        for (Map.Entry<String, Object> entry : message.getAttrs().entrySet()) {
+            Object value = entry.getValue();
+            size += entry.getKey().length() + (value instanceof CharSequence ? ((CharSequence) value).length() : 8);
         }
-        // 使用指定编码，计算出字节数
-        // 将 32k 转换为字节，1 KB = 1024 bytes
-        return str.getBytes(charset).length >= 32 * 1024;
+        return size;
     }
 
     /**
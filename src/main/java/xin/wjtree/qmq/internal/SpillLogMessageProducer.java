@@ -0,0 +1,122 @@
+package xin.wjtree.qmq.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+
+/**
+ * 发送失败时保存到本地溢出日志的消息发送者
+ * <ul>
+ *     <li>QMQ 重试 sendTryCount 次仍失败，或提交时抛出异常，消息写入 {@link QmqSpillLog}，由后台补发</li>
+ *     <li>提交时的异常不再抛给调用方，调用线程不会被阻塞</li>
+ *     <li>写入溢出日志成功后消息最终会被投递，默认通知监听器发送成功，避免调用方按失败重试产生重复消息；
+ *     写入失败时才通知发送失败。补发使用的实例通知发送失败，以便补发线程判断服务端是否可用</li>
+ * </ul>
+ * @author Wang
+ */
+public class SpillLogMessageProducer implements MessageProducer {
+    private static final Logger log = LoggerFactory.getLogger(SpillLogMessageProducer.class);
+
+    /**
+     * 实际的消息发送者
+     */
+    private final MessageProducer delegate;
+
+    /**
+     * 本地溢出日志
+     */
+    private final QmqSpillLog spillLog;
+
+    /**
+     * 写入溢出日志成功时是否通知监听器发送成功
+     */
+    private final boolean spilledAsSuccess;
+
+    public SpillLogMessageProducer(MessageProducer delegate, QmqSpillLog spillLog) {
+        this(delegate, spillLog, true);
+    }
+
+    /**
+     * @param delegate 实际的消息发送者
+     * @param spillLog 本地溢出日志
+     * @param spilledAsSuccess 写入溢出日志成功时是否通知监听器发送成功，为 false 时通知发送失败
+     */
+    public SpillLogMessageProducer(MessageProducer delegate, QmqSpillLog spillLog, boolean spilledAsSuccess) {
+        this.delegate = delegate;
+        this.spillLog = spillLog;
+        this.spilledAsSuccess = spilledAsSuccess;
+    }
+
+    @Override
+    public Message generateMessage(String subject) {
+        return delegate.generateMessage(subject);
+    }
+
+    @Override
+    public void sendMessage(Message message) {
+        sendMessage(message, null);
+    }
+
+    @Override
+    public void sendMessage(Message message, MessageSendStateListener listener) {
+        try {
+            delegate.sendMessage(message, new SpillingListener(listener));
+        } catch (RuntimeException ex) {
+            log.warn("QMQ send rejected, spill to local log, subject: {}, messageId: {}", message.getSubject(),
+                    message.getMessageId(), ex);
+            spill(message, listener);
+        }
+    }
+
+    public MessageProducer getDelegate() {
+        return delegate;
+    }
+
+    public QmqSpillLog getSpillLog() {
+        return spillLog;
+    }
+
+    /**
+     * 写入溢出日志，并按写入结果通知监听器
+     */
+    private void spill(Message message, MessageSendStateListener listener) {
+        boolean spilled = spillLog.append(message);
+        if (!spilled) {
+            log.error("QMQ spill log append failed, message lost, subject: {}, messageId: {}", message.getSubject(),
+                    message.getMessageId());
+        }
+        if (listener == null) {
+            return;
+        }
+        if (spilled && spilledAsSuccess) {
+            listener.onSuccess(message);
+        } else {
+            listener.onFailed(message);
+        }
+    }
+
+    /**
+     * 收到发送失败回调时保存到本地溢出日志
+     */
+    private final class SpillingListener implements MessageSendStateListener {
+        private final MessageSendStateListener listener;
+
+        SpillingListener(MessageSendStateListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(Message message) {
+            if (listener != null) {
+                listener.onSuccess(message);
+            }
+        }
+
+        @Override
+        public void onFailed(Message message) {
+            spill(message, listener);
+        }
+    }
+}
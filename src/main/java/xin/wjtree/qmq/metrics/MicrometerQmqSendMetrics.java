@@ -0,0 +1,158 @@
+package xin.wjtree.qmq.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageSendStateListener;
+import xin.wjtree.qmq.constant.QmqHelper;
+import xin.wjtree.qmq.internal.QmqSendMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 Micrometer 的消息发送指标记录器
+ * <p>所有指标均带有 subject 和 tag 标签，没有消息标签时 tag 为 none；
+ * 主题数量超过 {@link QmqHelper#MAX_METER_SUBJECTS} 后，新的主题统一记录为 subject=other，避免动态主题名称使指标无限增长：</p>
+ * <ul>
+ *     <li>qmq.producer.send：提交发送的消息数量</li>
+ *     <li>qmq.producer.send.failed：发送失败的消息数量</li>
+ *     <li>qmq.producer.send.rejected：提交发送时被拒绝的消息数量</li>
+ *     <li>qmq.producer.encode：生成消息及装载属性的耗时</li>
+ *     <li>qmq.producer.ack：从提交发送到收到回调的耗时，按 result 标签区分成功和失败</li>
+ *     <li>qmq.producer.payload.size：消息属性的估算大小</li>
+ *     <li>qmq.producer.in.flight：未收到回调的消息数量</li>
+ * </ul>
+ * @author Wang
+ */
+public class MicrometerQmqSendMetrics implements QmqSendMetrics {
+    /**
+     * 没有消息标签时使用的标签值
+     */
+    private static final String NO_TAG = "none";
+
+    private final MeterRegistry registry;
+
+    /**
+     * 按主题和标签缓存的指标，避免每次发送都创建标签
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, SendMeters>> meters = new ConcurrentHashMap<>();
+
+    public MicrometerQmqSendMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordEncode(String subject, String tag, long encodeNanos, int payloadSize) {
+        SendMeters sendMeters = getMeters(subject, tag);
+        sendMeters.encode.record(encodeNanos, TimeUnit.NANOSECONDS);
+        sendMeters.payloadSize.record(payloadSize);
+    }
+
+    @Override
+    public MessageSendStateListener instrument(String subject, String tag, MessageSendStateListener listener) {
+        SendMeters sendMeters = getMeters(subject, tag);
+        sendMeters.send.increment();
+        sendMeters.inFlight.incrementAndGet();
+        return new TimingListener(sendMeters, listener);
+    }
+
+    @Override
+    public void recordRejected(String subject, String tag) {
+        SendMeters sendMeters = getMeters(subject, tag);
+        sendMeters.rejected.increment();
+        sendMeters.inFlight.decrementAndGet();
+    }
+
+    private SendMeters getMeters(String subject, String tag) {
+        String tagValue = tag != null ? tag : NO_TAG;
+        String subjectValue = subject;
+        ConcurrentMap<String, SendMeters> subjectMeters = meters.get(subject);
+        if (subjectMeters == null) {
+            if (meters.size() >= QmqHelper.MAX_METER_SUBJECTS) {
+                subjectValue = QmqHelper.OTHER_METER_SUBJECT;
+            }
+            subjectMeters = meters.computeIfAbsent(subjectValue, key -> new ConcurrentHashMap<>());
+        }
+        String meterSubject = subjectValue;
+        return subjectMeters.computeIfAbsent(tagValue, key -> new SendMeters(registry, meterSubject, tagValue));
+    }
+
+    /**
+     * 单个主题和标签对应的指标
+     */
+    private static final class SendMeters {
+        private final Counter send;
+        private final Counter failed;
+        private final Counter rejected;
+        private final Timer encode;
+        private final Timer ackSuccess;
+        private final Timer ackFailed;
+        private final DistributionSummary payloadSize;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        SendMeters(MeterRegistry registry, String subject, String tag) {
+            Tags tags = Tags.of("subject", subject, "tag", tag);
+            this.send = Counter.builder("qmq.producer.send").description("QMQ 提交发送的消息数量").tags(tags)
+                    .register(registry);
+            this.failed = Counter.builder("qmq.producer.send.failed").description("QMQ 发送失败的消息数量").tags(tags)
+                    .register(registry);
+            this.rejected = Counter.builder("qmq.producer.send.rejected").description("QMQ 提交发送时被拒绝的消息数量")
+                    .tags(tags).register(registry);
+            this.encode = Timer.builder("qmq.producer.encode").description("QMQ 生成消息及装载属性的耗时").tags(tags)
+                    .register(registry);
+            this.ackSuccess = Timer.builder("qmq.producer.ack").description("QMQ 从提交发送到收到回调的耗时").tags(tags)
+                    .tag("result", "success").publishPercentileHistogram().register(registry);
+            this.ackFailed = Timer.builder("qmq.producer.ack").description("QMQ 从提交发送到收到回调的耗时").tags(tags)
+                    .tag("result", "failed").publishPercentileHistogram().register(registry);
+            this.payloadSize = DistributionSummary.builder("qmq.producer.payload.size").description("QMQ 消息属性的估算大小")
+                    .baseUnit("chars").tags(tags).publishPercentileHistogram().register(registry);
+            Gauge.builder("qmq.producer.in.flight", inFlight, AtomicInteger::get).description("QMQ 未收到回调的消息数量")
+                    .tags(tags).register(registry);
+        }
+    }
+
+    /**
+     * 记录提交发送到收到回调耗时的监听器
+     */
+    private static final class TimingListener implements MessageSendStateListener {
+        private final SendMeters sendMeters;
+        private final MessageSendStateListener listener;
+        private final long startNanos = System.nanoTime();
+
+        TimingListener(SendMeters sendMeters, MessageSendStateListener listener) {
+            this.sendMeters = sendMeters;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(Message message) {
+            sendMeters.ackSuccess.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            sendMeters.inFlight.decrementAndGet();
+            if (listener != null) {
+                listener.onSuccess(message);
+            }
+        }
+
+        @Override
+        public void onFailed(Message message) {
+            sendMeters.ackFailed.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            sendMeters.failed.increment();
+            sendMeters.inFlight.decrementAndGet();
+            if (listener != null) {
+                listener.onFailed(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package xin.wjtree.qmq.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import xin.wjtree.qmq.consumer.QmqConsumerExecutor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QMQ 消费线程池指标，均带有 name 标签，值为线程池的 BeanName：
+ * <ul>
+ *     <li>qmq.consumer.executor.active：正在执行任务的线程数</li>
+ *     <li>qmq.consumer.executor.pool.size / pool.core / pool.max：当前、核心及最大线程数</li>
+ *     <li>qmq.consumer.executor.queued / queue.remaining：排队中的任务数及队列剩余容量</li>
+ *     <li>qmq.consumer.executor.completed / rejected：执行完成及被拒绝的任务数</li>
+ *     <li>qmq.consumer.executor.wait / execution：任务排队耗时及执行耗时</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqConsumerExecutorMetrics implements MeterBinder {
+    private final String name;
+
+    private final QmqConsumerExecutor executor;
+
+    public QmqConsumerExecutorMetrics(String name, QmqConsumerExecutor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("name", name);
+        Gauge.builder("qmq.consumer.executor.active", executor, QmqConsumerExecutor::getActiveCount)
+                .description("QMQ 消费线程池正在执行任务的线程数").tags(tags).register(registry);
+        Gauge.builder("qmq.consumer.executor.pool.size", executor, QmqConsumerExecutor::getPoolSize)
+                .description("QMQ 消费线程池当前线程数").tags(tags).register(registry);
+        Gauge.builder("qmq.consumer.executor.pool.core", executor, QmqConsumerExecutor::getCorePoolSize)
+                .description("QMQ 消费线程池核心线程数").tags(tags).register(registry);
+        Gauge.builder("qmq.consumer.executor.pool.max", executor, QmqConsumerExecutor::getMaximumPoolSize)
+                .description("QMQ 消费线程池最大线程数").tags(tags).register(registry);
+        Gauge.builder("qmq.consumer.executor.queued", executor, e -> e.getQueue().size())
+                .description("QMQ 消费线程池排队中的任务数").tags(tags).register(registry);
+        Gauge.builder("qmq.consumer.executor.queue.remaining", executor, e -> e.getQueue().remainingCapacity())
+                .description("QMQ 消费线程池队列剩余容量").tags(tags).register(registry);
+        FunctionCounter.builder("qmq.consumer.executor.completed", executor, QmqConsumerExecutor::getCompletedTaskCount)
+                .description("QMQ 消费线程池执行完成的任务数").tags(tags).register(registry);
+        FunctionCounter.builder("qmq.consumer.executor.rejected", executor, QmqConsumerExecutor::getRejectedCount)
+                .description("QMQ 消费线程池被拒绝的任务数").tags(tags).register(registry);
+        FunctionTimer.builder("qmq.consumer.executor.wait", executor, QmqConsumerExecutor::getTimedCount,
+                QmqConsumerExecutor::getWaitNanos, TimeUnit.NANOSECONDS).description("QMQ 消费任务排队耗时").tags(tags)
+                .register(registry);
+        FunctionTimer.builder("qmq.consumer.executor.execution", executor, QmqConsumerExecutor::getTimedCount,
+                QmqConsumerExecutor::getExecutionNanos, TimeUnit.NANOSECONDS).description("QMQ 消费任务执行耗时")
+                .tags(tags).register(registry);
+    }
+}
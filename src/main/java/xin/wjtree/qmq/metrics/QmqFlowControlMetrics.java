@@ -0,0 +1,45 @@
+package xin.wjtree.qmq.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import xin.wjtree.qmq.internal.FlowControlMessageProducer;
+import xin.wjtree.qmq.internal.QmqAdaptiveLimit;
+
+/**
+ * QMQ 发送流量控制指标，均带有 pool 标签，值为消息发送者池名称，默认的消息发送者为 default：
+ * <ul>
+ *     <li>qmq.producer.flow.limit：当前的未收到回调消息数量上限，启用自适应流量控制时随回调调整</li>
+ *     <li>qmq.producer.flow.in.flight：未收到回调的消息数量</li>
+ *     <li>qmq.producer.flow.spilled：溢出队列中等待补发的消息数量</li>
+ *     <li>qmq.producer.flow.ack.latency：提交到回调的平均耗时，仅启用自适应流量控制时注册</li>
+ * </ul>
+ * @author Wang
+ */
+public class QmqFlowControlMetrics implements MeterBinder {
+    private final String pool;
+
+    private final FlowControlMessageProducer flowControl;
+
+    public QmqFlowControlMetrics(String pool, FlowControlMessageProducer flowControl) {
+        this.pool = pool;
+        this.flowControl = flowControl;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("pool", pool);
+        Gauge.builder("qmq.producer.flow.limit", flowControl, FlowControlMessageProducer::getLimit)
+                .description("QMQ 未收到回调的消息数量上限").tags(tags).register(registry);
+        Gauge.builder("qmq.producer.flow.in.flight", flowControl, FlowControlMessageProducer::getInFlight)
+                .description("QMQ 流量控制中未收到回调的消息数量").tags(tags).register(registry);
+        Gauge.builder("qmq.producer.flow.spilled", flowControl, FlowControlMessageProducer::getSpilled)
+                .description("QMQ 溢出队列中等待补发的消息数量").tags(tags).register(registry);
+        QmqAdaptiveLimit adaptiveLimit = flowControl.getAdaptiveLimit();
+        if (adaptiveLimit != null) {
+            Gauge.builder("qmq.producer.flow.ack.latency", adaptiveLimit, QmqAdaptiveLimit::getSmoothedLatencyMillis)
+                    .description("QMQ 提交到回调的平均耗时").baseUnit("milliseconds").tags(tags).register(registry);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+CREATE TABLE IF NOT EXISTS qmq_outbox
+(
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    subject     VARCHAR(255) NOT NULL,
+    message_id  VARCHAR(64)  NOT NULL,
+    content     BLOB         NOT NULL,
+    attempts    INT          NOT NULL DEFAULT 0,
+    next_retry_millis BIGINT NOT NULL DEFAULT 0,
+    create_time TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_qmq_outbox_attempts_id ON qmq_outbox (attempts, id);
+
+CREATE TABLE IF NOT EXISTS qmq_outbox_dead_letter
+(
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    subject     VARCHAR(255) NOT NULL,
+    message_id  VARCHAR(64)  NOT NULL,
+    content     BLOB         NOT NULL,
+    attempts    INT          NOT NULL DEFAULT 0,
+    create_time TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,25 @@
+CREATE TABLE IF NOT EXISTS qmq_outbox
+(
+    id          BIGINT       NOT NULL AUTO_INCREMENT COMMENT '自增主键，按写入顺序转发',
+    subject     VARCHAR(255) NOT NULL COMMENT '消息主题',
+    message_id  VARCHAR(64)  NOT NULL COMMENT '消息ID',
+    content     MEDIUMBLOB   NOT NULL COMMENT '序列化后的消息',
+    attempts    INT          NOT NULL DEFAULT 0 COMMENT '转发失败次数',
+    next_retry_millis BIGINT NOT NULL DEFAULT 0 COMMENT '下次重试的时间戳，单位：毫秒',
+    create_time TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '写入时间',
+    PRIMARY KEY (id),
+    KEY idx_attempts_id (attempts, id)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='QMQ 事务发件箱';
+
+CREATE TABLE IF NOT EXISTS qmq_outbox_dead_letter
+(
+    id          BIGINT       NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+    subject     VARCHAR(255) NOT NULL COMMENT '消息主题',
+    message_id  VARCHAR(64)  NOT NULL COMMENT '消息ID',
+    content     MEDIUMBLOB   NOT NULL COMMENT '序列化后的消息',
+    attempts    INT          NOT NULL DEFAULT 0 COMMENT '转发失败次数',
+    create_time TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '写入发件箱的时间',
+    PRIMARY KEY (id)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='QMQ 事务发件箱死信表';
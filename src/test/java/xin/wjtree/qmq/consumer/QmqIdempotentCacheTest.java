@@ -0,0 +1,129 @@
+package xin.wjtree.qmq.consumer;
+
+import org.junit.jupiter.api.Test;
+import xin.wjtree.qmq.internal.QmqException;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 消费幂等缓存测试，覆盖命中、过期、容量不足时的覆盖及持久化存储回查
+ * @author Wang
+ */
+class QmqIdempotentCacheTest {
+    @Test
+    void remembersProcessedMessages() {
+        QmqIdempotentCache cache = new QmqIdempotentCache(1000, 60000L);
+        assertFalse(cache.isProcessed("sub", "group", "id-1"));
+        cache.markProcessed("sub", "group", "id-1");
+
+        assertTrue(cache.isProcessed("sub", "group", "id-1"));
+        // 主题、消费分组、消息ID 任一不同都视为不同的消息
+        assertFalse(cache.isProcessed("sub", "other", "id-1"));
+        assertFalse(cache.isProcessed("other", "group", "id-1"));
+        assertFalse(cache.isProcessed("sub", "group", "id-2"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    void distinguishesConcatenations() {
+        assertNotEquals(QmqIdempotentCache.fingerprint("ab", "c", "id"),
+                QmqIdempotentCache.fingerprint("a", "bc", "id"));
+        assertNotEquals(QmqIdempotentCache.fingerprint(null, "", "id"),
+                QmqIdempotentCache.fingerprint("", null, "id"));
+        assertNotEquals(0L, QmqIdempotentCache.fingerprint("", "", ""));
+    }
+
+    @Test
+    void expiresAfterTtl() throws InterruptedException {
+        QmqIdempotentCache cache = new QmqIdempotentCache(100, 50L);
+        cache.markProcessed("sub", "group", "id-1");
+        assertTrue(cache.isProcessed("sub", "group", "id-1"));
+
+        Thread.sleep(100L);
+        assertFalse(cache.isProcessed("sub", "group", "id-1"));
+    }
+
+    @Test
+    void evictsOldestWhenFull() {
+        int maxSize = 64;
+        QmqIdempotentCache cache = new QmqIdempotentCache(maxSize, 60000L);
+        int capacity = cache.getCapacity();
+        assertTrue(capacity >= maxSize * 2 - 16, "capacity " + capacity);
+
+        // 写入远超位置数量的记录，探测窗口占满后覆盖未过期的记录
+        int count = capacity * 4;
+        for (int i = 0; i < count; i++) {
+            cache.markProcessed("sub", "group", "id-" + i);
+        }
+        assertTrue(cache.getEvictionCount() >= count - capacity,
+                "evictions " + cache.getEvictionCount());
+
+        int retained = 0;
+        for (int i = 0; i < count; i++) {
+            if (cache.isProcessed("sub", "group", "id-" + i)) {
+                retained++;
+            }
+        }
+        assertTrue(retained > 0 && retained <= capacity, "retained " + retained);
+        // 最后写入的记录不会被之前的记录覆盖
+        assertTrue(cache.isProcessed("sub", "group", "id-" + (count - 1)));
+    }
+
+    @Test
+    void overwritesExpiredWithoutEviction() throws InterruptedException {
+        QmqIdempotentCache cache = new QmqIdempotentCache(16, 20L);
+        int count = cache.getCapacity() * 4;
+        for (int i = 0; i < count / 2; i++) {
+            cache.markProcessed("sub", "group", "old-" + i);
+        }
+        long evictions = cache.getEvictionCount();
+        Thread.sleep(50L);
+
+        // 全部过期后再写入，覆盖过期记录不计入 evictionCount
+        for (int i = 0; i < cache.getCapacity() / 4; i++) {
+            cache.markProcessed("sub", "group", "new-" + i);
+        }
+        assertEquals(evictions, cache.getEvictionCount());
+    }
+
+    @Test
+    void fallsBackToStore() {
+        Set<String> stored = ConcurrentHashMap.newKeySet();
+        QmqIdempotentStore store = new QmqIdempotentStore() {
+            @Override
+            public boolean isProcessed(String subject, String group, String messageId) {
+                return stored.contains(messageId);
+            }
+
+            @Override
+            public void markProcessed(String subject, String group, String messageId) {
+                stored.add(messageId);
+            }
+        };
+        QmqIdempotentCache cache = new QmqIdempotentCache(100, 60000L, store);
+        cache.markProcessed("sub", "group", "id-1");
+        assertTrue(stored.contains("id-1"));
+
+        // 其他实例处理过的消息从存储查到后写回缓存
+        stored.add("id-2");
+        assertTrue(cache.isProcessed("sub", "group", "id-2"));
+        assertEquals(1, cache.getStoreHitCount());
+        stored.clear();
+        assertTrue(cache.isProcessed("sub", "group", "id-2"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void rejectsInvalidSize() {
+        assertThrows(QmqException.class, () -> new QmqIdempotentCache(0, 1000L));
+        assertThrows(QmqException.class, () -> new QmqIdempotentCache(100, 0L));
+    }
+}
@@ -0,0 +1,237 @@
+package xin.wjtree.qmq.internal;
+
+import org.junit.jupiter.api.Test;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 紧凑二进制编解码器测试，覆盖各类属性类型、嵌套对象、集合及实体类版本兼容
+ * @author Wang
+ */
+class QmqBinaryPayloadCodecTest {
+    private final QmqBinaryPayloadCodec codec = new QmqBinaryPayloadCodec();
+
+    @Test
+    void roundTripsScalarTypes() {
+        Scalars source = new Scalars();
+        source.intValue = -123456;
+        source.longValue = Long.MIN_VALUE;
+        source.shortValue = Short.MAX_VALUE;
+        source.byteValue = Byte.MIN_VALUE;
+        source.doubleValue = Math.PI;
+        source.floatValue = -1.5F;
+        source.booleanValue = true;
+        source.charValue = '中';
+        source.boxed = 42;
+        source.string = "hello, 世界";
+        source.status = Status.ACTIVE;
+        source.date = new Date(1234567890123L);
+        source.bigDecimal = new BigDecimal("12345678901234567890.0123456789");
+        source.bigInteger = new BigInteger("-98765432109876543210");
+        source.uuid = UUID.randomUUID();
+        source.localDateTime = LocalDateTime.of(2021, 8, 1, 12, 30, 45, 123000000);
+        source.instant = Instant.ofEpochSecond(1627790000L, 987654321);
+        source.localDate = LocalDate.of(2021, 8, 1);
+        source.bytes = new byte[]{0, 1, -1, 127, -128};
+        source.skipped = "transient";
+        source.ignored = "ignored";
+
+        Scalars target = codec.fromBytes(codec.toBytes(source), Scalars.class);
+        assertEquals(source.intValue, target.intValue);
+        assertEquals(source.longValue, target.longValue);
+        assertEquals(source.shortValue, target.shortValue);
+        assertEquals(source.byteValue, target.byteValue);
+        assertEquals(source.doubleValue, target.doubleValue);
+        assertEquals(source.floatValue, target.floatValue);
+        assertEquals(source.booleanValue, target.booleanValue);
+        assertEquals(source.charValue, target.charValue);
+        assertEquals(source.boxed, target.boxed);
+        assertEquals(source.string, target.string);
+        assertEquals(source.status, target.status);
+        assertEquals(source.date, target.date);
+        assertEquals(source.bigDecimal, target.bigDecimal);
+        assertEquals(source.bigInteger, target.bigInteger);
+        assertEquals(source.uuid, target.uuid);
+        assertEquals(source.localDateTime, target.localDateTime);
+        assertEquals(source.instant, target.instant);
+        assertEquals(source.localDate, target.localDate);
+        assertArrayEquals(source.bytes, target.bytes);
+        assertNull(target.ignored);
+        assertNull(target.skipped);
+    }
+
+    @Test
+    void roundTripsNestedObjectsAndCollections() {
+        Order source = new Order();
+        source.id = 1001L;
+        source.customer = new Customer("Wang", 30);
+        source.items = Arrays.asList(new Item("apple", 3), new Item("pear", 5));
+        source.tags = new TreeSet<>(Arrays.asList("b", "a", "c"));
+        source.prices = new LinkedHashMap<>();
+        source.prices.put("apple", new BigDecimal("1.20"));
+        source.prices.put("pear", null);
+        source.matrix = new int[][]{{1, 2}, {3}};
+        source.sorted = new TreeMap<>(Collections.singletonMap(2, Arrays.asList(1L, 2L)));
+
+        Order target = codec.fromBytes(codec.toBytes(source), Order.class);
+        assertEquals(source.id, target.id);
+        assertEquals("Wang", target.customer.name);
+        assertEquals(30, target.customer.age);
+        assertEquals(2, target.items.size());
+        assertEquals("pear", target.items.get(1).name);
+        assertEquals(5, target.items.get(1).quantity);
+        assertEquals(source.tags, target.tags);
+        assertTrue(target.tags instanceof TreeSet);
+        assertEquals(source.prices, target.prices);
+        assertArrayEquals(source.matrix[0], target.matrix[0]);
+        assertArrayEquals(source.matrix[1], target.matrix[1]);
+        assertEquals(source.sorted, target.sorted);
+    }
+
+    @Test
+    void convertsBetweenCollectionAndArray() {
+        // 集合与数组按声明类型互相还原
+        CodeList list = new CodeList();
+        list.codes = Arrays.asList(1, 2, 3);
+        assertArrayEquals(new Integer[]{1, 2, 3}, codec.fromBytes(codec.toBytes(list), CodeArray.class).codes);
+
+        CodeArray array = new CodeArray();
+        array.codes = new Integer[]{4, 5};
+        assertEquals(Arrays.asList(4, 5), codec.fromBytes(codec.toBytes(array), CodeList.class).codes);
+    }
+
+    @Test
+    void roundTripsThroughMessage() {
+        Customer source = new Customer("Li", 18);
+        BaseMessage message = new BaseMessage("binary-id", "binary_subject");
+        codec.encode(source, message);
+
+        Customer target = codec.decode(message, Customer.class);
+        assertEquals(source.name, target.name);
+        assertEquals(source.age, target.age);
+    }
+
+    @Test
+    void readsNewerAndOlderBeanVersions() {
+        CustomerV2 newer = new CustomerV2();
+        newer.name = "Zhang";
+        newer.age = 40;
+        newer.email = "zhang@example.com";
+
+        // 旧版本消费者跳过新增的属性
+        Customer older = codec.fromBytes(codec.toBytes(newer), Customer.class);
+        assertEquals("Zhang", older.name);
+        assertEquals(40, older.age);
+
+        // 新版本消费者读取旧消息时新增的属性为空
+        CustomerV2 upgraded = codec.fromBytes(codec.toBytes(new Customer("Zhao", 20)), CustomerV2.class);
+        assertEquals("Zhao", upgraded.name);
+        assertNull(upgraded.email);
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        assertThrows(QmqException.class, () -> codec.fromBytes(new byte[]{99}, Customer.class));
+        assertThrows(QmqException.class, () -> codec.fromBytes(new byte[0], Customer.class));
+    }
+
+    enum Status {
+        ACTIVE, DISABLED
+    }
+
+    static class Scalars {
+        static String constant;
+        int intValue;
+        long longValue;
+        short shortValue;
+        byte byteValue;
+        double doubleValue;
+        float floatValue;
+        boolean booleanValue;
+        char charValue;
+        Integer boxed;
+        String string;
+        Status status;
+        Date date;
+        BigDecimal bigDecimal;
+        BigInteger bigInteger;
+        UUID uuid;
+        LocalDateTime localDateTime;
+        Instant instant;
+        LocalDate localDate;
+        byte[] bytes;
+        transient String skipped;
+        @QmqIgnore
+        String ignored;
+    }
+
+    static class Customer {
+        String name;
+        int age;
+
+        Customer() {
+        }
+
+        Customer(String name, int age) {
+            this.name = name;
+            this.age = age;
+        }
+    }
+
+    static class CustomerV2 extends Customer {
+        String email;
+    }
+
+    static class Item {
+        String name;
+        int quantity;
+
+        Item() {
+        }
+
+        Item(String name, int quantity) {
+            this.name = name;
+            this.quantity = quantity;
+        }
+    }
+
+    static class Order {
+        long id;
+        Customer customer;
+        List<Item> items;
+        SortedSet<String> tags;
+        Map<String, BigDecimal> prices;
+        int[][] matrix;
+        SortedMap<Integer, List<Long>> sorted;
+    }
+
+    static class CodeList {
+        List<Integer> codes;
+    }
+
+    static class CodeArray {
+        Integer[] codes;
+    }
+}
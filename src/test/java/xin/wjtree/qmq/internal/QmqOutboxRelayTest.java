@@ -0,0 +1,322 @@
+package xin.wjtree.qmq.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.base.BaseMessage;
+import xin.wjtree.qmq.autoconfigure.QmqProperties;
+import xin.wjtree.qmq.embedded.QmqEmbeddedBroker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 事务发件箱测试，使用内嵌 H2 数据库及内嵌代理，覆盖提交后转发、回滚、退避重试、死信表及超时未回调的记录
+ * @author Wang
+ */
+class QmqOutboxRelayTest {
+    private static final String TABLE = "qmq_outbox";
+
+    private static final String DEAD_LETTER_TABLE = "qmq_outbox_dead_letter";
+
+    private static final String SUBJECT = "outbox_subject";
+
+    /**
+     * 转发间隔足够长，测试中由事务提交唤醒或直接调用 relay
+     */
+    private static final long INTERVAL_MILLIS = 60000L;
+
+    private static final long MAX_BACKOFF_MILLIS = INTERVAL_MILLIS * 4;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private QmqEmbeddedBroker broker;
+
+    private final List<QmqOutboxRelay> relays = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScript("classpath:META-INF/qmq/outbox-schema-h2.sql").build();
+        jdbcTemplate = new JdbcTemplate(database);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database));
+        broker = new QmqEmbeddedBroker(new QmqProperties.Embedded(), 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        relays.forEach(QmqOutboxRelay::destroy);
+        broker.close();
+        database.shutdown();
+    }
+
+    @Test
+    void relaysAfterCommit() throws InterruptedException {
+        QmqOutboxRelay relay = relay(new QmqOutbox(jdbcTemplate, TABLE), broker.getProducer(), 5000L, 10);
+        OutboxMessageProducer producer = new OutboxMessageProducer(broker.getProducer(), relay);
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        broker.addListener(SUBJECT, "group", message -> {
+            received.add(message.getMessageId());
+            delivered.countDown();
+        }, Runnable::run);
+
+        RecordingListener listener = new RecordingListener();
+        BaseMessage message = message("commit-1");
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(producer.isTransactional());
+            producer.sendMessage(message, listener);
+            // 提交前只写入发件箱，不回调发送结果
+            assertEquals(1, count(TABLE));
+            assertEquals(0, listener.success.get());
+        });
+        assertEquals(1, listener.success.get());
+        assertEquals(0, listener.failed.get());
+
+        // 提交后唤醒转发，保留原消息ID
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals("commit-1", received.peek());
+        awaitCount(TABLE, 0);
+    }
+
+    @Test
+    void discardsOnRollback() {
+        QmqOutboxRelay relay = relay(new QmqOutbox(jdbcTemplate, TABLE), broker.getProducer(), 5000L, 10);
+        OutboxMessageProducer producer = new OutboxMessageProducer(broker.getProducer(), relay);
+        RecordingListener listener = new RecordingListener();
+        transactionTemplate.executeWithoutResult(status -> {
+            producer.sendMessage(message("rollback-1"), listener);
+            status.setRollbackOnly();
+        });
+        assertEquals(0, listener.success.get());
+        assertEquals(1, listener.failed.get());
+        assertEquals(0, count(TABLE));
+
+        relay.relay();
+        assertEquals(0, broker.getSentCount());
+    }
+
+    @Test
+    void sendsDirectlyWithoutTransaction() {
+        QmqOutboxRelay relay = relay(new QmqOutbox(jdbcTemplate, TABLE), broker.getProducer(), 5000L, 10);
+        OutboxMessageProducer producer = new OutboxMessageProducer(broker.getProducer(), relay);
+        assertFalse(producer.isTransactional());
+        producer.sendMessage(message("direct-1"), new RecordingListener());
+        assertEquals(0, count(TABLE));
+    }
+
+    @Test
+    void keepsFailedRowsWithoutDeadLetterTable() {
+        CountingProducer producer = new CountingProducer(false);
+        QmqOutboxRelay relay = relay(new QmqOutbox(jdbcTemplate, TABLE), producer, 5000L, 2);
+        new QmqOutbox(jdbcTemplate, TABLE).append(message("fail-1"));
+        insertUndecodable();
+
+        // 超过最大转发次数后仍保留，不会删除已提交的消息
+        for (int i = 0; i < 5; i++) {
+            resetRetryTime();
+            relay.relay();
+        }
+        assertEquals(5, producer.sends.get());
+        assertEquals(2, count(TABLE));
+        assertEquals(0, count(DEAD_LETTER_TABLE));
+        assertEquals(5, (int) jdbcTemplate.queryForObject("select min(attempts) from " + TABLE, Integer.class));
+    }
+
+    @Test
+    void movesExhaustedRowsToDeadLetterTable() {
+        CountingProducer producer = new CountingProducer(false);
+        QmqOutbox outbox = new QmqOutbox(jdbcTemplate, TABLE, DEAD_LETTER_TABLE);
+        QmqOutboxRelay relay = relay(outbox, producer, 5000L, 2);
+        outbox.append(message("dead-1"));
+        insertUndecodable();
+
+        relay.relay();
+        // 无法反序列化的记录直接移入死信表，其余记录第一次失败后退避
+        assertEquals(1, count(TABLE));
+        assertEquals(1, count(DEAD_LETTER_TABLE));
+
+        resetRetryTime();
+        relay.relay();
+        assertEquals(0, count(TABLE));
+        assertEquals(2, count(DEAD_LETTER_TABLE));
+        assertEquals(2, (int) jdbcTemplate.queryForObject("select attempts from " + DEAD_LETTER_TABLE
+                + " where message_id = 'dead-1'", Integer.class));
+    }
+
+    @Test
+    void backsOffFailedRows() {
+        CountingProducer producer = new CountingProducer(false);
+        QmqOutboxRelay relay = relay(new QmqOutbox(jdbcTemplate, TABLE), producer, 5000L, 10);
+        new QmqOutbox(jdbcTemplate, TABLE).append(message("backoff-1"));
+
+        long before = System.currentTimeMillis();
+        relay.relay();
+        relay.relay();
+        // 未到重试时间的记录不会再次转发
+        assertEquals(1, producer.sends.get());
+        long nextRetry = jdbcTemplate.queryForObject("select next_retry_millis from " + TABLE, Long.class);
+        assertTrue(nextRetry >= before + INTERVAL_MILLIS);
+
+        assertEquals(INTERVAL_MILLIS, relay.backoffMillis(0));
+        assertEquals(INTERVAL_MILLIS * 2, relay.backoffMillis(1));
+        assertEquals(MAX_BACKOFF_MILLIS, relay.backoffMillis(10));
+        assertEquals(MAX_BACKOFF_MILLIS, relay.backoffMillis(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void keepsUnackedRowsInFlight() {
+        HoldingProducer producer = new HoldingProducer();
+        QmqOutboxRelay relay = relay(new QmqOutbox(jdbcTemplate, TABLE), producer, 50L, 10);
+        new QmqOutbox(jdbcTemplate, TABLE).append(message("unacked-1"));
+
+        relay.relay();
+        relay.relay();
+        // 超时未回调的记录不计失败次数，也不重复转发
+        assertEquals(1, producer.held.size());
+        assertEquals(0, (int) jdbcTemplate.queryForObject("select attempts from " + TABLE, Integer.class));
+
+        // 超时后到达的回调在下一轮处理
+        producer.ackAll();
+        relay.relay();
+        assertEquals(0, count(TABLE));
+        assertEquals(1, producer.held.size());
+    }
+
+    @Test
+    void rejectsInvalidTableName() {
+        assertThrows(QmqException.class, () -> new QmqOutbox(jdbcTemplate, "qmq_outbox; drop table x"));
+        assertThrows(QmqException.class, () -> new QmqOutbox(jdbcTemplate, TABLE, "dead letter"));
+    }
+
+    private QmqOutboxRelay relay(QmqOutbox outbox, MessageProducer producer, long timeoutMillis, int maxAttempts) {
+        QmqOutboxRelay relay = new QmqOutboxRelay(outbox, producer, 100, INTERVAL_MILLIS, timeoutMillis, maxAttempts,
+                MAX_BACKOFF_MILLIS);
+        relays.add(relay);
+        return relay;
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Integer.class);
+    }
+
+    private void awaitCount(String table, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (count(table) != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(expected, count(table));
+    }
+
+    private void resetRetryTime() {
+        jdbcTemplate.update("update " + TABLE + " set next_retry_millis = 0");
+    }
+
+    private void insertUndecodable() {
+        jdbcTemplate.update("insert into " + TABLE + " (subject, message_id, content) values (?, ?, ?)", SUBJECT,
+                "undecodable", new byte[]{0});
+    }
+
+    private static BaseMessage message(String messageId) {
+        BaseMessage message = new BaseMessage(messageId, SUBJECT);
+        message.setProperty("name", messageId);
+        return message;
+    }
+
+    private static final class RecordingListener implements MessageSendStateListener {
+        private final AtomicInteger success = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        @Override
+        public void onSuccess(Message message) {
+            success.incrementAndGet();
+        }
+
+        @Override
+        public void onFailed(Message message) {
+            failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * 立即回调固定结果的消息发送者
+     */
+    private static class CountingProducer implements MessageProducer {
+        private final boolean success;
+
+        final AtomicInteger sends = new AtomicInteger();
+
+        CountingProducer(boolean success) {
+            this.success = success;
+        }
+
+        @Override
+        public Message generateMessage(String subject) {
+            return new BaseMessage(subject + "-" + sends.get(), subject);
+        }
+
+        @Override
+        public void sendMessage(Message message) {
+            sendMessage(message, null);
+        }
+
+        @Override
+        public void sendMessage(Message message, MessageSendStateListener listener) {
+            sends.incrementAndGet();
+            if (success) {
+                listener.onSuccess(message);
+            } else {
+                listener.onFailed(message);
+            }
+        }
+    }
+
+    /**
+     * 不回调的消息发送者，由测试决定回调时机
+     */
+    private static final class HoldingProducer extends CountingProducer {
+        private final List<Message> held = new ArrayList<>();
+
+        private final List<MessageSendStateListener> listeners = new ArrayList<>();
+
+        HoldingProducer() {
+            super(true);
+        }
+
+        @Override
+        public synchronized void sendMessage(Message message, MessageSendStateListener listener) {
+            held.add(message);
+            listeners.add(listener);
+        }
+
+        synchronized void ackAll() {
+            for (int i = 0; i < held.size(); i++) {
+                listeners.get(i).onSuccess(held.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package xin.wjtree.qmq.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地消息溢出日志测试，覆盖分段滚动、重启恢复及损坏记录的处理
+ * @author Wang
+ */
+class QmqSpillLogTest {
+    /**
+     * 分段文件头大小，与 QmqSpillLog 保持一致
+     */
+    private static final int HEADER_BYTES = 16;
+
+    private static final int SEGMENT_BYTES = 1024;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void appendsAndReadsInOrder() {
+        try (QmqSpillLog spillLog = open()) {
+            for (int i = 0; i < 5; i++) {
+                assertTrue(spillLog.append(message(i)));
+            }
+
+            QmqSpillLog.Batch batch = spillLog.read(3);
+            assertEquals(ids(0, 3), messageIds(batch));
+            // 未确认的批次再次读取时返回相同的消息
+            assertEquals(ids(0, 3), messageIds(spillLog.read(3)));
+
+            spillLog.commit(batch);
+            QmqSpillLog.Batch rest = spillLog.read(10);
+            assertEquals(ids(3, 5), messageIds(rest));
+            spillLog.commit(rest);
+            assertNull(spillLog.read(10));
+            assertEquals(0, spillLog.getPendingBytes());
+        }
+    }
+
+    @Test
+    void rollsSegmentsAndDeletesReplayedOnes() {
+        try (QmqSpillLog spillLog = open()) {
+            int count = 40;
+            for (int i = 0; i < count; i++) {
+                assertTrue(spillLog.append(message(i)));
+            }
+            assertTrue(segmentFiles().length > 1, "segments not rolled");
+
+            List<String> replayed = new ArrayList<>();
+            QmqSpillLog.Batch batch;
+            while ((batch = spillLog.read(7)) != null) {
+                replayed.addAll(messageIds(batch));
+                spillLog.commit(batch);
+            }
+            assertEquals(ids(0, count), replayed);
+            // 只保留当前写入的分段
+            assertEquals(1, segmentFiles().length);
+        }
+    }
+
+    @Test
+    void recoversFromCommittedPositionAfterReopen() {
+        try (QmqSpillLog spillLog = open()) {
+            for (int i = 0; i < 30; i++) {
+                assertTrue(spillLog.append(message(i)));
+            }
+            spillLog.commit(spillLog.read(4));
+        }
+
+        List<String> replayed = new ArrayList<>();
+        try (QmqSpillLog spillLog = open()) {
+            assertTrue(spillLog.getPendingBytes() > 0);
+            // 重启后继续追加写入新的消息
+            assertTrue(spillLog.append(message(30)));
+            QmqSpillLog.Batch batch;
+            while ((batch = spillLog.read(10)) != null) {
+                replayed.addAll(messageIds(batch));
+                spillLog.commit(batch);
+            }
+        }
+        assertEquals(ids(4, 31), replayed);
+    }
+
+    @Test
+    void skipsSegmentWithCorruptedLength() throws IOException {
+        try (QmqSpillLog spillLog = open()) {
+            assertTrue(spillLog.append(message(0)));
+            assertTrue(spillLog.append(message(1)));
+        }
+        // 第一条记录的长度改为接近 Integer.MAX_VALUE，不能因溢出越界读取
+        try (RandomAccessFile file = new RandomAccessFile(segmentFiles()[0], "rw")) {
+            file.seek(HEADER_BYTES);
+            file.writeInt(Integer.MAX_VALUE - 2);
+        }
+
+        try (QmqSpillLog spillLog = open()) {
+            QmqSpillLog.Batch batch = spillLog.read(10);
+            assertTrue(batch.getMessages().isEmpty());
+            spillLog.commit(batch);
+            assertEquals(0, spillLog.getPendingBytes());
+
+            assertTrue(spillLog.append(message(2)));
+            assertEquals(ids(2, 3), messageIds(spillLog.read(10)));
+        }
+    }
+
+    @Test
+    void ignoresInvalidSegmentFile() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, String.format("spill-%020d.log", 0)),
+                "rw")) {
+            file.setLength(SEGMENT_BYTES);
+        }
+        try (QmqSpillLog spillLog = open()) {
+            assertNull(spillLog.read(10));
+            assertTrue(spillLog.append(message(0)));
+            assertEquals(ids(0, 1), messageIds(spillLog.read(10)));
+        }
+    }
+
+    @Test
+    void rejectsRecordLargerThanSegment() {
+        try (QmqSpillLog spillLog = open()) {
+            BaseMessage message = message(0);
+            StringBuilder builder = new StringBuilder(SEGMENT_BYTES);
+            for (int i = 0; i < SEGMENT_BYTES; i++) {
+                builder.append('x');
+            }
+            message.setProperty("payload", builder.toString());
+            assertFalse(spillLog.append(message));
+            assertNull(spillLog.read(10));
+        }
+    }
+
+    private QmqSpillLog open() {
+        return new QmqSpillLog(directory.getAbsolutePath(), SEGMENT_BYTES);
+    }
+
+    private File[] segmentFiles() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("spill-") && name.endsWith(".log"));
+        return files != null ? files : new File[0];
+    }
+
+    private static BaseMessage message(int index) {
+        BaseMessage message = new BaseMessage("id-" + index, "spill_subject");
+        message.setProperty("name", "message-" + index);
+        return message;
+    }
+
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ids.add("id-" + i);
+        }
+        return ids;
+    }
+
+    private static List<String> messageIds(QmqSpillLog.Batch batch) {
+        List<String> ids = new ArrayList<>(batch.getMessages().size());
+        for (BaseMessage message : batch.getMessages()) {
+            ids.add(message.getMessageId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,116 @@
+package xin.wjtree.qmq.internal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层时间轮测试，刻度 1 毫秒，延迟覆盖第 0、1、2 层及层与层之间的降级边界
+ * @author Wang
+ */
+class QmqTimingWheelTest {
+    /**
+     * 到期时间允许的最大延后，单位：毫秒
+     */
+    private static final long TOLERANCE_MILLIS = 500L;
+
+    private QmqTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new QmqTimingWheel(1L, "qmq-timing-wheel-test");
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    void expiresTasksAcrossLevels() throws InterruptedException {
+        // 第 0 层：1 ~ 63；第 1 层：64 ~ 4095，其中 64、65、128 位于槽位边界；第 2 层：4096 及以上
+        long[] delays = {1, 10, 63, 64, 65, 128, 130, 1000, 4095, 4096, 4100};
+        AtomicLongArray elapsed = new AtomicLongArray(delays.length);
+        CountDownLatch latch = new CountDownLatch(delays.length);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            wheel.schedule(() -> {
+                elapsed.set(index, System.nanoTime() - startNanos);
+                latch.countDown();
+            }, delays[i]);
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS), "tasks not expired");
+        for (int i = 0; i < delays.length; i++) {
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsed.get(i));
+            assertTrue(elapsedMillis >= delays[i], "delay " + delays[i] + " expired early at " + elapsedMillis);
+            assertTrue(elapsedMillis < delays[i] + TOLERANCE_MILLIS,
+                    "delay " + delays[i] + " expired late at " + elapsedMillis);
+        }
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void expiresTasksScheduledWhileRunning() throws InterruptedException {
+        // 时间轮已前进若干刻度后添加的任务，按当前刻度计算剩余刻度
+        CountDownLatch first = new CountDownLatch(1);
+        wheel.schedule(first::countDown, 100L);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch second = new CountDownLatch(1);
+        long startNanos = System.nanoTime();
+        wheel.schedule(second::countDown, 70L);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 70L);
+    }
+
+    @Test
+    void runsZeroDelayImmediately() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        wheel.schedule(latch::countDown, 0L);
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void drainsPendingTasksOnClose() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicBoolean closedWhenRun = new AtomicBoolean();
+        wheel.schedule(() -> {
+            closedWhenRun.set(wheel.isClosed());
+            latch.countDown();
+        }, TimeUnit.HOURS.toMillis(1));
+        // 超出最高层范围的任务同样在关闭时执行
+        wheel.schedule(latch::countDown, TimeUnit.DAYS.toMillis(30));
+        assertEquals(2, wheel.getPendingCount());
+
+        wheel.close();
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(closedWhenRun.get());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void runsInCallerThreadAfterClose() {
+        wheel.close();
+        Thread caller = Thread.currentThread();
+        Thread[] ran = new Thread[1];
+        wheel.schedule(() -> ran[0] = Thread.currentThread(), 1000L);
+        assertSame(caller, ran[0]);
+    }
+
+    @Test
+    void rejectsNonPositiveTick() {
+        assertThrows(QmqException.class, () -> new QmqTimingWheel(0L, "qmq-timing-wheel-invalid"));
+    }
+}